@@ -0,0 +1,109 @@
+package com.trevizan.javacoreplayground.controller;
+
+import com.trevizan.javacoreplayground.controller.dto.UserPageResponse;
+import com.trevizan.javacoreplayground.controller.dto.UserResponse;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserPage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tools.jackson.databind.ObjectMapper;
+
+/*
+ * response bodies of the user reads, written to a null stream:
+ * - jackson: the previous path, UserResponse / UserPageResponse built and serialized per request
+ * - cached: UserJsonCache fragments written as they are (every user cached after the first iteration)
+ * - single = GET /users/{id}, page = GET /users?limit=100
+ *
+ * latency is the score; allocation per operation comes from the gc profiler (gc.alloc.rate.norm):
+ *
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="UserJsonBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserJsonBenchmark {
+
+    private static final int USERS = 10_000;
+    private static final int PAGE_SIZE = 100;
+    private static final byte[] PAGE_ITEMS = "{\"items\":".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"jackson", "cached"})
+    private String path;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OutputStream sink = OutputStream.nullOutputStream();
+    private UserJsonCache cache;
+    private User[] users;
+    private boolean cached;
+
+    @Setup
+    public void setUp() {
+        cache = new UserJsonCache(objectMapper, USERS);
+        cached = path.equals("cached");
+        users = new User[USERS];
+        for (int i = 0; i < USERS; i++) {
+            users[i] = new User((long) i + 1, "User Name " + i, "user.name" + i + "@domain" + (i % 1000) + ".com", 1L);
+        }
+    }
+
+    @Benchmark
+    public void single() throws IOException {
+        User user = users[ThreadLocalRandom.current().nextInt(USERS)];
+        if (cached) {
+            sink.write(cache.json(user));
+        } else {
+            sink.write(objectMapper.writeValueAsBytes(UserResponse.from(user)));
+        }
+    }
+
+    @Benchmark
+    public void page() throws IOException {
+        int from = ThreadLocalRandom.current().nextInt(USERS - PAGE_SIZE);
+        List<User> page = new ArrayList<>(PAGE_SIZE);
+        for (int i = from; i < from + PAGE_SIZE; i++) {
+            page.add(users[i]);
+        }
+        if (!cached) {
+            objectMapper.writeValue(sink, UserPageResponse.from(new UserPage(page, page.getLast().getId())));
+            return;
+        }
+        // what UserController.getUsersPage writes, minus the servlet response
+        byte[][] fragments = new byte[page.size()][];
+        for (int i = 0; i < fragments.length; i++) {
+            fragments[i] = cache.json(page.get(i));
+        }
+        sink.write(PAGE_ITEMS);
+        sink.write('[');
+        for (int i = 0; i < fragments.length; i++) {
+            if (i > 0) {
+                sink.write(',');
+            }
+            sink.write(fragments[i]);
+        }
+        sink.write(']');
+        sink.write((",\"nextCursor\":" + page.getLast().getId() + "}").getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.trevizan.javacoreplayground.core.concurrency;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * one shared counter, every thread incrementing it:
+ * - synchronized: one monitor, threads queue on it under contention
+ * - atomic: one CAS'd value, threads retry on the same cache line
+ * - volatileBroken: as fast as a plain write and wrong, the lost updates are the point (see get() after a run)
+ * - longAdder / striped: threads spread over cells, the sum is paid on read
+ *
+ * the same benchmarks run at 1, 4 and all-cores threads (nested classes), contention is what separates them:
+ *
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="CounterBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class CounterBenchmark {
+
+    private SynchronizedCounter synchronizedCounter;
+    private AtomicCounter atomicCounter;
+    private VolatileCounterBroken volatileCounter;
+    private LongAdder longAdder;
+    private StripedCounter stripedCounter;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        synchronizedCounter = new SynchronizedCounter();
+        atomicCounter = new AtomicCounter();
+        volatileCounter = new VolatileCounterBroken();
+        longAdder = new LongAdder();
+        stripedCounter = new StripedCounter(Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public void synchronizedIncrement() {
+        synchronizedCounter.increment();
+    }
+
+    @Benchmark
+    public void atomicIncrement() {
+        atomicCounter.increment();
+    }
+
+    @Benchmark
+    public void volatileBrokenIncrement() {
+        volatileCounter.increment();
+    }
+
+    @Benchmark
+    public void longAdderIncrement() {
+        longAdder.increment();
+    }
+
+    @Benchmark
+    public void stripedIncrement() {
+        stripedCounter.increment();
+    }
+
+    @Threads(1)
+    public static class OneThread extends CounterBenchmark { }
+
+    @Threads(4)
+    public static class FourThreads extends CounterBenchmark { }
+
+    @Threads(Threads.MAX)
+    public static class AllCores extends CounterBenchmark { }
+
+}
@@ -0,0 +1,104 @@
+package com.trevizan.javacoreplayground.core.metrics;
+
+import com.trevizan.javacoreplayground.core.concurrency.AtomicCounter;
+import com.trevizan.javacoreplayground.core.concurrency.SynchronizedCounter;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * the core/metrics hot paths next to the core/concurrency demos they grew out of:
+ * - counters: synchronized and atomic (baselines), LongAdder, StripedLongCounter
+ * - max gauge: one AtomicLong updated with accumulateAndGet vs ShardedGauge
+ * - rate: WindowedRateCounter, to see what the epoch check and the CAS cost over a plain striped add
+ *
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="MetricsBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class MetricsBenchmark {
+
+    private SynchronizedCounter synchronizedCounter;
+    private AtomicCounter atomicCounter;
+    private LongAdder longAdder;
+    private StripedLongCounter stripedCounter;
+    private AtomicLong atomicMax;
+    private ShardedGauge shardedMax;
+    private WindowedRateCounter rateCounter;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        synchronizedCounter = new SynchronizedCounter();
+        atomicCounter = new AtomicCounter();
+        longAdder = new LongAdder();
+        stripedCounter = new StripedLongCounter();
+        atomicMax = new AtomicLong(Long.MIN_VALUE);
+        shardedMax = ShardedGauge.max(0);
+        rateCounter = new WindowedRateCounter(Duration.ofSeconds(10), 10);
+    }
+
+    @Benchmark
+    public void synchronizedCounter() {
+        synchronizedCounter.increment();
+    }
+
+    @Benchmark
+    public void atomicCounter() {
+        atomicCounter.increment();
+    }
+
+    @Benchmark
+    public void longAdder() {
+        longAdder.increment();
+    }
+
+    @Benchmark
+    public void stripedLongCounter() {
+        stripedCounter.increment();
+    }
+
+    @Benchmark
+    public long atomicMax() {
+        return atomicMax.accumulateAndGet(ThreadLocalRandom.current().nextLong(1_000_000), Math::max);
+    }
+
+    @Benchmark
+    public void shardedMax() {
+        shardedMax.record(ThreadLocalRandom.current().nextLong(1_000_000));
+    }
+
+    @Benchmark
+    public void windowedRate() {
+        rateCounter.increment();
+    }
+
+    @Threads(1)
+    public static class OneThread extends MetricsBenchmark { }
+
+    @Threads(4)
+    public static class FourThreads extends MetricsBenchmark { }
+
+    @Threads(Threads.MAX)
+    public static class AllCores extends MetricsBenchmark { }
+
+}
@@ -0,0 +1,97 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * scaling of the store modes from 1 to 64 threads, on a store of 200k users:
+ * - mixed: 90% findById, 5% update, 5% save; the single map (memory) against its shards (sharded) and one
+ *   read-write lock (compact)
+ * - findAll: a full scan per call, one fork-join task per shard in sharded mode
+ * - sharded only pays off with cores to spread on: run it on the target box, at least 16 cores for the 64 threads
+ *
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="ShardedUserRepositoryBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public abstract class ShardedUserRepositoryBenchmark {
+
+    private static final int USERS = 200_000;
+
+    @Param({"memory", "compact", "sharded"})
+    private String mode;
+
+    private UserRepository repository;
+    private final AtomicLong newUsers = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        repository = switch (mode) {
+            case "compact" -> new CompactUserRepository();
+            case "sharded" -> new ShardedUserRepository(16);
+            default -> new InMemoryUserRepository();
+        };
+        for (int i = 0; i < USERS; i++) {
+            repository.save(new User(null, "User Name " + i, email(i)));
+        }
+    }
+
+    @Benchmark
+    public Object mixed() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int user = random.nextInt(USERS);
+        int operation = random.nextInt(100);
+        if (operation < 90) {
+            return repository.findById(user + 1L);
+        }
+        if (operation < 95) {
+            // same email: measures the update path, not email index churn
+            return repository.update(user + 1L, new User(null, "Updated " + user, email(user)));
+        }
+        return repository.save(new User(null, "New User", "new" + newUsers.incrementAndGet() + "@bench.io"));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public List<User> findAll() {
+        return repository.findAll();
+    }
+
+    private static String email(int user) {
+        return "user.name" + user + "@domain" + (user % 1000) + ".com";
+    }
+
+    @Threads(1)
+    public static class OneThread extends ShardedUserRepositoryBenchmark { }
+
+    @Threads(4)
+    public static class FourThreads extends ShardedUserRepositoryBenchmark { }
+
+    @Threads(16)
+    public static class SixteenThreads extends ShardedUserRepositoryBenchmark { }
+
+    @Threads(64)
+    public static class SixtyFourThreads extends ShardedUserRepositoryBenchmark { }
+
+}
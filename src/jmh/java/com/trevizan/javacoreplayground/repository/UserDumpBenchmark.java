@@ -0,0 +1,93 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * bulk export and import of a million users through a dump file (UserDump), by store
+ * - export reads a snapshot of a loaded store; import loads the dump into an empty store of the same kind
+ * - one call is the whole file: divide the file size (logged at setup) by the time for MB/s
+ *
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="UserDumpBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class UserDumpBenchmark {
+
+    private static final int USERS = 1_000_000;
+    private static final int BATCH_SIZE = 1000;
+
+    @Param({"memory", "compact"})
+    private String mode;
+
+    private UserRepository source;
+    private UserRepository target;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        source = newRepository();
+        for (int i = 0; i < USERS; i++) {
+            source.save(new User(null, "User Name " + i, "user.name" + i + "@domain" + (i % 1000) + ".com"));
+        }
+        file = Files.createTempFile("users", ".dump");
+        export();
+        System.out.printf("%n%s: %d MB dump%n", mode, Files.size(file) >> 20);
+    }
+
+    @Setup(Level.Invocation)
+    public void emptyTarget() {
+        target = newRepository();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long export() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             UserSnapshot snapshot = source.snapshot();
+             Stream<User> users = snapshot.streamAll()) {
+            return UserDump.write(users.iterator(), channel);
+        }
+    }
+
+    @Benchmark
+    public long importAll() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return UserDump.read(channel, BATCH_SIZE, target::importAll);
+        }
+    }
+
+    private UserRepository newRepository() {
+        return "compact".equals(mode) ? new CompactUserRepository() : new InMemoryUserRepository();
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.trevizan.javacoreplayground.repository;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * sequential is the original single AtomicLong incrementAndGet; striped spreads threads over id blocks.
+ * the gap grows with the thread count, so run it with the core count of the target box:
+ *
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="UserIdAllocator -t 64"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class UserIdAllocatorBenchmark {
+
+    @Param({"sequential", "striped"})
+    private String strategy;
+
+    @Param({"1024"})
+    private int blockSize;
+
+    private UserIdAllocator allocator;
+
+    @Setup
+    public void setUp() {
+        allocator = switch (strategy) {
+            case "sequential" -> new SequentialIdAllocator();
+            case "striped" -> new StripedIdAllocator(blockSize);
+            default -> throw new IllegalArgumentException("Unknown strategy: " + strategy);
+        };
+    }
+
+    @Benchmark
+    public long nextId() {
+        return allocator.next();
+    }
+
+}
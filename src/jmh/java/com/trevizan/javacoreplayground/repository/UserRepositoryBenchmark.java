@@ -0,0 +1,120 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.service.UserChangeLog;
+import com.trevizan.javacoreplayground.service.UserService;
+import com.trevizan.javacoreplayground.service.UserSnapshots;
+
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * the in-memory store without spring, per store size and thread count:
+ * - layer = repository: the store alone; service: through UserService (validation, Optional to exception)
+ * - size: users seeded before each iteration, save() grows the store from there
+ * - findAll copies the whole store, so it scales with size, the others should not
+ *
+ * the same benchmarks run at 1, 8 and all-cores threads (nested classes):
+ *
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="UserRepositoryBenchmark"
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="UserRepositoryBenchmark.EightThreads.findById -p size=100000"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public abstract class UserRepositoryBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    @Param({"repository", "service"})
+    private String layer;
+
+    private UserRepository repository;
+    private UserService service;
+    private boolean throughService;
+    private long[] ids;
+    private User[] updates;
+    private final AtomicLong emailSequence = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        repository = new InMemoryUserRepository();
+        // a composite without registries hands out no-op meters: nothing is recorded
+        service = new UserService(
+            repository, new UserChangeLog(1024), new UserSnapshots(Duration.ofMinutes(5), 16), new CompositeMeterRegistry()
+        );
+        throughService = layer.equals("service");
+
+        ids = new long[size];
+        updates = new User[size];
+        for (int i = 0; i < size; i++) {
+            User user = newUser();
+            ids[i] = repository.save(user).getId();
+            // same email on purpose: measures the update path, not email index churn
+            updates[i] = new User(null, "updated" + i, user.getEmail());
+        }
+    }
+
+    @Benchmark
+    public User save() {
+        User user = newUser();
+        return throughService ? service.createUser(user) : repository.save(user);
+    }
+
+    @Benchmark
+    public User findById() {
+        long id = ids[ThreadLocalRandom.current().nextInt(size)];
+        return throughService ? service.getUserById(id) : repository.findById(id).orElseThrow();
+    }
+
+    @Benchmark
+    public List<User> findAll() {
+        return throughService ? service.getAllUsers() : repository.findAll();
+    }
+
+    @Benchmark
+    public User update() {
+        int key = ThreadLocalRandom.current().nextInt(size);
+        return throughService
+            ? service.updateUser(ids[key], updates[key])
+            : repository.update(ids[key], updates[key]).orElseThrow();
+    }
+
+    private User newUser() {
+        long n = emailSequence.incrementAndGet();
+        return new User(null, "user" + n, "user" + n + "@bench.io");
+    }
+
+    @Threads(1)
+    public static class OneThread extends UserRepositoryBenchmark { }
+
+    @Threads(8)
+    public static class EightThreads extends UserRepositoryBenchmark { }
+
+    @Threads(Threads.MAX)
+    public static class AllCores extends UserRepositoryBenchmark { }
+
+}
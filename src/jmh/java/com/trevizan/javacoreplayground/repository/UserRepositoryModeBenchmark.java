@@ -0,0 +1,115 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.JavaCorePlaygroundApplication;
+import com.trevizan.javacoreplayground.model.User;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/*
+ * same operations, same interface, one store mode per run:
+ * - memory: the map store, the baseline
+ * - jpa: H2 through hibernate, findById mostly served by the read cache once warm
+ * - compact: primitive columns, users decoded on every read, writes serialized by one lock
+ * - off-heap: compact with the records in direct memory, one extra copy per read
+ *
+ * the application context is booted once per trial, so mode wiring is exactly what production uses
+ *
+ * run with: ./mvnw -Pjmh test-compile exec:exec -Djmh.args="UserRepositoryModeBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class UserRepositoryModeBenchmark {
+
+    private static final int SEEDED_USERS = 10_000;
+    private static final int PAGE_SIZE = 100;
+    private static final int BATCH_SIZE = 500;
+
+    @Param({"memory", "jpa", "compact", "off-heap"})
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+    private UserRepository repository;
+    private long[] seededIds;
+    private final AtomicLong emailSequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(JavaCorePlaygroundApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties("app.user-store.mode=" + mode, "logging.level.root=warn")
+            .run();
+        repository = context.getBean(UserRepository.class);
+
+        seededIds = new long[SEEDED_USERS];
+        for (int i = 0; i < SEEDED_USERS; i++) {
+            seededIds[i] = repository.save(newUser()).getId();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public User save() {
+        return repository.save(newUser());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int insertAll() {
+        long firstId = repository.reserveIds(BATCH_SIZE);
+        User[] users = new User[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            User user = newUser();
+            users[i] = new User(firstId + i, user.getName(), user.getEmail());
+        }
+        return repository.insertAll(List.of(users)).size();
+    }
+
+    @Benchmark
+    public Optional<User> findById() {
+        return repository.findById(seededIds[ThreadLocalRandom.current().nextInt(SEEDED_USERS)]);
+    }
+
+    @Benchmark
+    public List<User> findPage() {
+        long afterId = seededIds[ThreadLocalRandom.current().nextInt(SEEDED_USERS - PAGE_SIZE)];
+        return repository.findPage(afterId, PAGE_SIZE);
+    }
+
+    private User newUser() {
+        long n = emailSequence.incrementAndGet();
+        return new User(null, "user" + n, "user" + n + "@bench.io");
+    }
+
+}
@@ -0,0 +1,79 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.exception.UserVersionConflictException;
+import com.trevizan.javacoreplayground.model.User;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * many writers hammering a small set of hot keys:
+ * - hotKeys = 1 is the worst case, every thread fights over the same bin
+ * - larger values spread writers over more bins, which is where per-key locking pays off
+ *
+ * run with: ./mvnw -Pjmh test-compile exec:exec -Djmh.args="UserRepositoryUpdateContention"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(32)
+public class UserRepositoryUpdateContentionBenchmark {
+
+    @Param({"1", "8", "1024"})
+    private int hotKeys;
+
+    private UserRepository repository;
+    private long[] ids;
+    private User[] updates;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        repository = new InMemoryUserRepository();
+        ids = new long[hotKeys];
+        updates = new User[hotKeys];
+
+        for (int i = 0; i < hotKeys; i++) {
+            String email = "user" + i + "@bench.io";
+            ids[i] = repository.save(new User(null, "user" + i, email)).getId();
+            // same email on purpose: measures the update path, not email index churn
+            updates[i] = new User(null, "updated" + i, email);
+        }
+    }
+
+    @Benchmark
+    public Optional<User> lastWriterWins() {
+        int key = ThreadLocalRandom.current().nextInt(hotKeys);
+        return repository.update(ids[key], updates[key]);
+    }
+
+    @Benchmark
+    public boolean optimisticReadModifyWrite() {
+        int key = ThreadLocalRandom.current().nextInt(hotKeys);
+        long currentVersion = repository.findById(ids[key]).orElseThrow().getVersion();
+        try {
+            return repository.update(ids[key], updates[key], currentVersion).isPresent();
+        } catch (UserVersionConflictException ex) {
+            // a lost race is a valid outcome here, the caller would re-read and retry
+            return false;
+        }
+    }
+
+}
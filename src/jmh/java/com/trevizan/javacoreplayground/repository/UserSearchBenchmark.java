@@ -0,0 +1,77 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * one 50-user search page over a million users, with the index and with the scan that replaces it
+ * (app.user-store.search-index: false):
+ * - prefix: name prefix alone, a range of the name index
+ * - domain: one of 1000 domains, ~1000 matches
+ * - combined: prefix + domain + word, the sets walked together
+ * - index = none scans the whole store per page: expect seconds, not microseconds
+ *
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="UserSearchBenchmark -p index=skip-list"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UserSearchBenchmark {
+
+    private static final int USERS = 1_000_000;
+    private static final int PAGE = 50;
+
+    @Param({"skip-list", "none"})
+    private String index;
+
+    private UserRepository repository;
+    private final UserSearchQuery prefix = UserSearchQuery.of("user12", null, null);
+    private final UserSearchQuery domain = UserSearchQuery.of(null, "domain7.com", null);
+    private final UserSearchQuery combined = UserSearchQuery.of("user1", "domain3.com", "name3003");
+
+    @Setup
+    public void setUp() {
+        UserSearchIndex searchIndex = index.equals("none") ? UserSearchIndex.NONE : new SkipListUserSearchIndex();
+        repository = new InMemoryUserRepository(new SequentialIdAllocator(), UserJournal.NONE, searchIndex);
+        Random random = new Random(42);
+        for (int i = 0; i < USERS; i++) {
+            String name = "User" + random.nextInt(100_000) + " Name" + (i % 5000);
+            repository.save(new User(null, name, "user.name" + i + "@domain" + (i % 1000) + ".com"));
+        }
+    }
+
+    @Benchmark
+    public List<User> prefix() {
+        return repository.search(prefix, null, PAGE);
+    }
+
+    @Benchmark
+    public List<User> domain() {
+        return repository.search(domain, null, PAGE);
+    }
+
+    @Benchmark
+    public List<User> combined() {
+        return repository.search(combined, null, PAGE);
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import java.lang.ref.Reference;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * memory retained per user, by store: a footprint report more than a speed benchmark
+ * - one single-shot load of a million users per fork, used heap read after full GCs before and after
+ * - the result is in the aux counters, next to the load time in the same JSON:
+ *   bytesPerUser / mbPerMillionUsers (heap), offHeapBytesPerUser (reserved slabs), fullGcMillis (one full GC
+ *   with the store loaded: the heap graph the collector has to trace)
+ * - users look like real ones: ~14 char names, ~30 char emails spread over 1000 domains
+ *
+ * ./mvnw -Pjmh test-compile exec:exec -Djmh.args="UserStoreFootprintBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:+UseParallelGC"})
+public class UserStoreFootprintBenchmark {
+
+    private static final int USERS = 1_000_000;
+
+    @Param({"memory", "compact", "off-heap"})
+    private String mode;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Footprint {
+
+        public long bytesPerUser;
+        public long mbPerMillionUsers;
+        public long offHeapBytesPerUser;
+        public long fullGcMillis;
+
+    }
+
+    @Benchmark
+    public int load(Footprint footprint) {
+        long before = usedHeap();
+        UserRepository repository = switch (mode) {
+            case "compact" -> new CompactUserRepository();
+            case "off-heap" -> new OffHeapUserRepository(new SequentialIdAllocator(), 16 << 20);
+            default -> new InMemoryUserRepository();
+        };
+        for (int i = 0; i < USERS; i++) {
+            repository.save(new User(null, "User Name " + i, "user.name" + i + "@domain" + (i % 1000) + ".com"));
+        }
+        long retained = usedHeap() - before;
+        long gcStart = System.nanoTime();
+        System.gc();
+        long gcNanos = System.nanoTime() - gcStart;
+
+        footprint.bytesPerUser = retained / USERS;
+        footprint.mbPerMillionUsers = retained * 1_000_000 / USERS / (1024 * 1024);
+        footprint.fullGcMillis = TimeUnit.NANOSECONDS.toMillis(gcNanos);
+        if (repository instanceof OffHeapUserRepository offHeap) {
+            footprint.offHeapBytesPerUser = offHeap.offHeapBytes() / USERS;
+        }
+        Reference.reachabilityFence(repository);
+        return USERS;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
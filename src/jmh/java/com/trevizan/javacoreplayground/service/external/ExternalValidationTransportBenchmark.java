@@ -0,0 +1,110 @@
+package com.trevizan.javacoreplayground.service.external;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.trevizan.javacoreplayground.JavaCorePlaygroundApplication;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/*
+ * same burst as ExternalValidationLoadBenchmark, one run per transport:
+ * - rest-template: blocking httpclient5 on virtual threads (so the thread pool is not what is measured),
+ *   one pooled connection per in-flight call
+ * - http2: JDK HttpClient, sendAsync, calls multiplexed over a few connections (h2c against WireMock)
+ *
+ * the cache is disabled so every validation is a real call
+ *
+ * run with: ./mvnw -Pjmh test-compile exec:exec -Djmh.args="ExternalValidationTransportBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ExternalValidationTransportBenchmark {
+
+    private static final int BURST = 400;
+    private static final int LATENCY_MILLIS = 50;
+
+    @Param({"rest-template", "http2"})
+    private String transport;
+
+    private WireMockServer validationService;
+    private ConfigurableApplicationContext context;
+    private ExternalUserValidationClient client;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        validationService = new WireMockServer(options()
+            .port(8099)
+            .containerThreads(BURST + 50)
+            .asynchronousResponseEnabled(true)
+            .asynchronousResponseThreads(50));
+        validationService.start();
+        validationService.stubFor(post(urlEqualTo("/api/v1/external/users/validate"))
+            .willReturn(aResponse()
+                .withFixedDelay(LATENCY_MILLIS)
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"valid\": true}")));
+
+        context = new SpringApplicationBuilder(JavaCorePlaygroundApplication.class)
+            .web(WebApplicationType.NONE)
+            .properties(
+                "app.external-validation.transport=" + transport,
+                "spring.threads.virtual.enabled=true",
+                "app.external-validation.cache.max-size=0",
+                // measure the transport, not the load shedding in front of it
+                "resilience4j.bulkhead.instances.external-user-validation.max-concurrent-calls=" + BURST,
+                "resilience4j.ratelimiter.instances.external-user-validation.limit-for-period=1000000",
+                "logging.level.root=warn"
+            )
+            .run();
+        client = context.getBean(ExternalUserValidationClient.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+        validationService.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public boolean burstOfValidations() {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            long n = sequence.incrementAndGet();
+            results[i] = client.validateAsync("user" + n, "user" + n + "@load.io");
+        }
+        CompletableFuture.allOf(results).join();
+        return results[BURST - 1].isDone();
+    }
+
+}
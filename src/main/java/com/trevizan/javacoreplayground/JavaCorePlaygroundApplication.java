@@ -1,13 +1,69 @@
 package com.trevizan.javacoreplayground;
 
+import com.trevizan.javacoreplayground.model.UserImportResult;
+import com.trevizan.javacoreplayground.service.UserService;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.WebApplicationType;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
 public class JavaCorePlaygroundApplication {
 
+	static final String EXPORT_USERS = "export-users";
+	static final String IMPORT_USERS = "import-users";
+
+	private static final Logger log = LoggerFactory.getLogger(JavaCorePlaygroundApplication.class);
+
 	public static void main(String[] args) {
-		SpringApplication.run(JavaCorePlaygroundApplication.class, args);
+		SpringApplication application = new SpringApplication(JavaCorePlaygroundApplication.class);
+		if (isUserDumpCommand(args)) {
+			// one-shot: no web server, exit once the runner is done (non-zero when it failed)
+			application.setWebApplicationType(WebApplicationType.NONE);
+			System.exit(SpringApplication.exit(application.run(args)));
+		}
+		application.run(args);
+	}
+
+	/**
+	 * {@code --export-users=<file>} writes the store to a dump file, {@code --import-users=<file>} loads one;
+	 * import first when both are given. Only useful with a store that outlives the process
+	 * ({@code app.user-store.mode: durable} or {@code jpa}).
+	 */
+	@Bean
+	ApplicationRunner userDumpRunner(UserService userService) {
+		return args -> {
+			if (args.containsOption(IMPORT_USERS)) {
+				for (String file : args.getOptionValues(IMPORT_USERS)) {
+					try (FileChannel channel = FileChannel.open(Path.of(file), StandardOpenOption.READ)) {
+						UserImportResult result = userService.importUsers(channel);
+						log.info("Imported {} users from {} ({} conflicts)", result.created(), file, result.conflicts());
+					}
+				}
+			}
+			if (args.containsOption(EXPORT_USERS)) {
+				for (String file : args.getOptionValues(EXPORT_USERS)) {
+					try (FileChannel channel = FileChannel.open(Path.of(file),
+						StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+						log.info("Exported {} users to {}", userService.exportUsers(channel), file);
+					}
+				}
+			}
+		};
+	}
+
+	private static boolean isUserDumpCommand(String[] args) {
+		return Arrays.stream(args)
+			.anyMatch(arg -> arg.startsWith("--" + EXPORT_USERS + "=") || arg.startsWith("--" + IMPORT_USERS + "="));
 	}
 
 }
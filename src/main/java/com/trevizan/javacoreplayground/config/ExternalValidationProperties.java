@@ -0,0 +1,68 @@
+package com.trevizan.javacoreplayground.config;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+@ConfigurationProperties("app.external-validation")
+public record ExternalValidationProperties(
+    @DefaultValue("rest-template") Transport transport,
+    @DefaultValue("16") int threads,
+    @DefaultValue("200") int maxInFlight,
+    @DefaultValue Pool pool,
+    @DefaultValue Batch batch,
+    @DefaultValue Cache cache,
+    @DefaultValue Latency latency,
+    @DefaultValue Hedge hedge,
+    @DefaultValue Timeout timeout
+) {
+
+    public enum Transport {
+        REST_TEMPLATE,
+        HTTP2
+    }
+
+    public record Pool(
+        @DefaultValue("200") int maxTotal,
+        @DefaultValue("200") int maxPerRoute,
+        @DefaultValue("1s") Duration leaseTimeout,
+        @DefaultValue("30s") Duration keepAlive,
+        @DefaultValue("30s") Duration idleEviction,
+        @DefaultValue("5m") Duration timeToLive,
+        @DefaultValue("2s") Duration validateAfterInactivity
+    ) { }
+
+    public record Batch(
+        @DefaultValue("5ms") Duration window,
+        @DefaultValue("100") int maxSize
+    ) { }
+
+    public record Cache(
+        @DefaultValue("10000") int maxSize,
+        @DefaultValue("10m") Duration ttl,
+        @DefaultValue("1m") Duration negativeTtl
+    ) { }
+
+    public record Latency(
+        @DefaultValue("1024") int window,
+        @DefaultValue("50") int minSamples,
+        @DefaultValue("100ms") Duration refreshInterval
+    ) { }
+
+    public record Hedge(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("0.95") double percentile,
+        @DefaultValue("20ms") Duration minDelay,
+        @DefaultValue("10") int budgetPercent
+    ) { }
+
+    public record Timeout(
+        @DefaultValue("true") boolean adaptive,
+        @DefaultValue("0.99") double percentile,
+        @DefaultValue("3") double multiplier,
+        @DefaultValue("250ms") Duration min,
+        @DefaultValue("2s") Duration max
+    ) { }
+
+}
@@ -1,37 +1,120 @@
 package com.trevizan.javacoreplayground.config;
 
+import com.trevizan.javacoreplayground.service.external.ExternalUserValidationTransport;
+import com.trevizan.javacoreplayground.service.external.HttpClientValidationTransport;
+import com.trevizan.javacoreplayground.service.external.RestTemplateValidationTransport;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+
+import java.time.Duration;
+
 import org.apache.hc.client5.http.config.ConnectionConfig;
 import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.DefaultConnectionKeepAliveStrategy;
 import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
 import org.apache.hc.client5.http.impl.classic.HttpClients;
-import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
-import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
 import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import tools.jackson.databind.ObjectMapper;
+
 @Configuration
+@EnableConfigurationProperties(ExternalValidationProperties.class)
 public class RestClientConfig {
 
+    private static final String POOL_NAME = "external-validation";
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration RESPONSE_TIMEOUT = Duration.ofSeconds(2);
+
     @Bean
-    RestTemplate restTemplate() {
-        RequestConfig requestConfig = RequestConfig.custom()
-            .setResponseTimeout(Timeout.ofSeconds(2))
-            .build();
+    @ConditionalOnProperty(name = "app.external-validation.transport", havingValue = "http2")
+    HttpClientValidationTransport httpClientValidationTransport(
+        ObjectMapper objectMapper,
+        ExternalValidationProperties properties
+    ) {
+        return new HttpClientValidationTransport(
+            objectMapper, CONNECT_TIMEOUT, RESPONSE_TIMEOUT, properties.maxInFlight());
+    }
+
+    // declared after the http2 transport so the missing-bean check sees it
+    @Bean
+    @ConditionalOnMissingBean(ExternalUserValidationTransport.class)
+    RestTemplateValidationTransport restTemplateValidationTransport(
+        RestTemplate restTemplate,
+        ExternalValidationProperties properties,
+        @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads
+    ) {
+        return new RestTemplateValidationTransport(restTemplate, properties.threads(), virtualThreads);
+    }
+
+    @Bean
+    TimedPoolingConnectionManager externalValidationConnectionManager(ExternalValidationProperties properties) {
+        ExternalValidationProperties.Pool pool = properties.pool();
 
         ConnectionConfig connectionConfig = ConnectionConfig.custom()
-            .setConnectTimeout(Timeout.ofSeconds(2))
+            .setConnectTimeout(Timeout.of(CONNECT_TIMEOUT))
+            // recycle connections now and then, so DNS or load balancer changes are picked up
+            .setTimeToLive(timeValue(pool.timeToLive()))
+            .setValidateAfterInactivity(timeValue(pool.validateAfterInactivity()))
             .build();
 
-        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
-            .setDefaultConnectionConfig(connectionConfig)
+        TimedPoolingConnectionManager connectionManager = new TimedPoolingConnectionManager(POOL_NAME);
+        connectionManager.setDefaultConnectionConfig(connectionConfig);
+        // one route (the validation service): with virtual threads the pool, not a thread pool,
+        // is what bounds concurrent calls, the defaults (5 per route) would serialize them
+        connectionManager.setMaxTotal(pool.maxTotal());
+        connectionManager.setDefaultMaxPerRoute(pool.maxPerRoute());
+        return connectionManager;
+    }
+
+    // resilience4j's metrics auto-configuration orders itself after Boot 3 class names that Boot 4 moved, so its
+    // MeterRegistry condition runs too early and never binds: resilience4j.circuitbreaker.state is bound here
+    @Bean
+    MeterBinder externalValidationCircuitBreakerMetrics(CircuitBreakerRegistry circuitBreakerRegistry) {
+        return TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry);
+    }
+
+    @Bean
+    MeterBinder externalValidationPoolMetrics(TimedPoolingConnectionManager externalValidationConnectionManager) {
+        return new PoolingHttpClientConnectionManagerMetricsBinder(externalValidationConnectionManager, POOL_NAME);
+    }
+
+    @Bean
+    RestTemplate restTemplate(
+        TimedPoolingConnectionManager externalValidationConnectionManager,
+        ExternalValidationProperties properties
+    ) {
+        ExternalValidationProperties.Pool pool = properties.pool();
+
+        RequestConfig requestConfig = RequestConfig.custom()
+            .setResponseTimeout(Timeout.of(RESPONSE_TIMEOUT))
+            // fail fast when the pool is exhausted instead of queuing without bound
+            .setConnectionRequestTimeout(Timeout.of(pool.leaseTimeout()))
             .build();
 
+        TimeValue maxKeepAlive = timeValue(pool.keepAlive());
         CloseableHttpClient httpClient = HttpClients.custom()
             .setDefaultRequestConfig(requestConfig)
-            .setConnectionManager(connectionManager)
+            .setConnectionManager(externalValidationConnectionManager)
+            // honor the server's Keep-Alive header, but never keep a connection longer than configured
+            .setKeepAliveStrategy((response, context) -> {
+                TimeValue serverKeepAlive =
+                    DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                return serverKeepAlive.compareTo(maxKeepAlive) < 0 ? serverKeepAlive : maxKeepAlive;
+            })
+            .evictExpiredConnections()
+            .evictIdleConnections(timeValue(pool.idleEviction()))
             .build();
 
         HttpComponentsClientHttpRequestFactory requestFactory =
@@ -40,4 +123,8 @@ public class RestClientConfig {
         return new RestTemplate(requestFactory);
     }
 
+    private static TimeValue timeValue(Duration duration) {
+        return TimeValue.ofMilliseconds(duration.toMillis());
+    }
+
 }
@@ -0,0 +1,70 @@
+package com.trevizan.javacoreplayground.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.hc.client5.http.HttpRoute;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.ConnectionEndpoint;
+import org.apache.hc.client5.http.io.LeaseRequest;
+import org.apache.hc.core5.util.Timeout;
+
+/*
+ * showcase:
+ * - times how long a request waits for a pooled connection, the one pool stat httpclient does not keep
+ * - leased/pending/available come from micrometer's PoolingHttpClientConnectionManagerMetricsBinder
+ *
+ * trade-off:
+ * - one small wrapper object per lease
+ */
+class TimedPoolingConnectionManager extends PoolingHttpClientConnectionManager implements MeterBinder {
+
+    private final String poolName;
+    // set once metrics are bound, leases before that are simply not timed
+    private volatile Timer leaseWait;
+
+    TimedPoolingConnectionManager(String poolName) {
+        this.poolName = poolName;
+    }
+
+    @Override
+    public LeaseRequest lease(String id, HttpRoute route, Timeout requestTimeout, Object state) {
+        LeaseRequest request = super.lease(id, route, requestTimeout, state);
+        return new LeaseRequest() {
+
+            @Override
+            public ConnectionEndpoint get(Timeout timeout)
+                throws InterruptedException, ExecutionException, TimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return request.get(timeout);
+                } finally {
+                    Timer timer = leaseWait;
+                    if (timer != null) {
+                        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+
+        };
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        leaseWait = Timer.builder("httpcomponents.httpclient.pool.lease.wait")
+            .description("time spent waiting for a pooled connection")
+            .tag("httpclient", poolName)
+            .register(registry);
+    }
+
+}
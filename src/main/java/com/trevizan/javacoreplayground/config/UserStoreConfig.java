@@ -0,0 +1,182 @@
+package com.trevizan.javacoreplayground.config;
+
+import com.trevizan.javacoreplayground.repository.CompactUserRepository;
+import com.trevizan.javacoreplayground.repository.InMemoryUserRepository;
+import com.trevizan.javacoreplayground.repository.JpaUserRepository;
+import com.trevizan.javacoreplayground.repository.MappedUserJournal;
+import com.trevizan.javacoreplayground.repository.OffHeapUserRepository;
+import com.trevizan.javacoreplayground.repository.SequenceIdAllocator;
+import com.trevizan.javacoreplayground.repository.SequentialIdAllocator;
+import com.trevizan.javacoreplayground.repository.ShardedUserRepository;
+import com.trevizan.javacoreplayground.repository.SkipListUserSearchIndex;
+import com.trevizan.javacoreplayground.repository.StripedIdAllocator;
+import com.trevizan.javacoreplayground.repository.UserIdAllocator;
+import com.trevizan.javacoreplayground.repository.UserJournal;
+import com.trevizan.javacoreplayground.repository.UserJournalCompactor;
+import com.trevizan.javacoreplayground.repository.UserRepository;
+import com.trevizan.javacoreplayground.repository.UserSearchIndex;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBooleanProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@Configuration
+@EnableConfigurationProperties(UserStoreProperties.class)
+public class UserStoreConfig {
+
+    @Bean
+    UserIdAllocator userIdAllocator(UserStoreProperties properties) {
+        return switch (properties.idAllocation()) {
+            case SEQUENTIAL -> new SequentialIdAllocator();
+            case STRIPED -> new StripedIdAllocator(properties.idBlockSize());
+        };
+    }
+
+    @Bean
+    UserJournal userJournal(UserStoreProperties properties) {
+        if (properties.mode() != UserStoreProperties.Mode.DURABLE) {
+            return UserJournal.NONE;
+        }
+        return openJournal(properties.journal(), Path.of(properties.journal().directory()));
+    }
+
+    @Bean
+    UserSearchIndex userSearchIndex(UserStoreProperties properties) {
+        return properties.searchIndex() ? new SkipListUserSearchIndex() : UserSearchIndex.NONE;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.user-store.mode", havingValue = "jpa")
+    JpaUserRepository jpaUserRepository(
+        EntityManagerFactory entityManagerFactory,
+        PlatformTransactionManager transactionManager,
+        JdbcTemplate jdbcTemplate,
+        UserSearchIndex userSearchIndex,
+        UserStoreProperties properties
+    ) {
+        UserStoreProperties.Jpa jpa = properties.jpa();
+        return new JpaUserRepository(
+            SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory),
+            transactionManager,
+            new SequenceIdAllocator(jdbcTemplate, properties.idBlockSize()),
+            userSearchIndex,
+            jpa.cacheSize(),
+            jpa.batchSize()
+        );
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.user-store.mode", havingValue = "compact")
+    CompactUserRepository compactUserRepository(UserIdAllocator userIdAllocator, UserSearchIndex userSearchIndex) {
+        return new CompactUserRepository(userIdAllocator, userSearchIndex);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.user-store.mode", havingValue = "off-heap")
+    OffHeapUserRepository offHeapUserRepository(
+        UserIdAllocator userIdAllocator,
+        UserSearchIndex userSearchIndex,
+        UserStoreProperties properties
+    ) {
+        return new OffHeapUserRepository(
+            userIdAllocator,
+            Math.toIntExact(properties.offHeap().slabSize().toBytes()),
+            userSearchIndex
+        );
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.user-store.mode", havingValue = "sharded")
+    ShardedUserRepository shardedUserRepository(UserIdAllocator userIdAllocator, UserStoreProperties properties) {
+        UserStoreProperties.Sharded sharded = properties.sharded();
+        Path directory = Path.of(properties.journal().directory());
+        if (sharded.durable()) {
+            checkShardCount(directory, sharded.shards());
+        }
+        return new ShardedUserRepository(
+            sharded.shards(),
+            userIdAllocator,
+            shard -> sharded.durable()
+                ? openJournal(properties.journal(), directory.resolve("shard-%03d".formatted(shard)))
+                : UserJournal.NONE,
+            () -> properties.searchIndex() ? new SkipListUserSearchIndex() : UserSearchIndex.NONE
+        );
+    }
+
+    // declared after the jpa, compact, off-heap and sharded beans so the missing-bean check sees them
+    @Bean
+    @ConditionalOnMissingBean(UserRepository.class)
+    InMemoryUserRepository inMemoryUserRepository(
+        UserIdAllocator userIdAllocator,
+        UserJournal userJournal,
+        UserSearchIndex userSearchIndex
+    ) {
+        return new InMemoryUserRepository(userIdAllocator, userJournal, userSearchIndex);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.user-store.mode", havingValue = "durable")
+    UserJournalCompactor userJournalCompactor(
+        UserJournal userJournal,
+        UserRepository userRepository,
+        UserStoreProperties properties
+    ) {
+        return new UserJournalCompactor(userJournal, userRepository, properties.journal().snapshotInterval());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.user-store.mode", havingValue = "sharded")
+    @ConditionalOnBooleanProperty("app.user-store.sharded.durable")
+    UserJournalCompactor shardedUserJournalCompactor(
+        ShardedUserRepository shardedUserRepository,
+        UserStoreProperties properties
+    ) {
+        // one shard at a time, each one once per snapshot interval
+        return new UserJournalCompactor(
+            shardedUserRepository::compactNextShard,
+            properties.journal().snapshotInterval().dividedBy(shardedUserRepository.shardCount())
+        );
+    }
+
+    private static UserJournal openJournal(UserStoreProperties.Journal journal, Path directory) {
+        return MappedUserJournal.open(
+            directory,
+            Math.toIntExact(journal.segmentSize().toBytes()),
+            journal.sync(),
+            journal.flushInterval()
+        );
+    }
+
+    // ids are routed by the shard count: journals written with another count would load users into the wrong shards
+    private static void checkShardCount(Path directory, int shards) {
+        Path marker = directory.resolve("shards");
+        try {
+            Files.createDirectories(directory);
+            if (Files.notExists(marker)) {
+                Files.writeString(marker, Integer.toString(shards));
+                return;
+            }
+            int written = Integer.parseInt(Files.readString(marker).trim());
+            if (written != shards) {
+                throw new IllegalStateException("User journals in " + directory + " were written with " + written
+                    + " shards, app.user-store.sharded.shards is " + shards + ".");
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.trevizan.javacoreplayground.config;
+
+import com.trevizan.javacoreplayground.repository.MappedUserJournal;
+
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties("app.user-store")
+public record UserStoreProperties(
+    @DefaultValue("memory") Mode mode,
+    @DefaultValue("sequential") IdAllocation idAllocation,
+    @DefaultValue("1024") int idBlockSize,
+    @DefaultValue("true") boolean searchIndex,
+    @DefaultValue Journal journal,
+    @DefaultValue Jpa jpa,
+    @DefaultValue OffHeap offHeap,
+    @DefaultValue Sharded sharded
+) {
+
+    public enum Mode {
+        MEMORY,
+        DURABLE,
+        JPA,
+        COMPACT,
+        OFF_HEAP,
+        SHARDED
+    }
+
+    public enum IdAllocation {
+        SEQUENTIAL,
+        STRIPED
+    }
+
+    public record Journal(
+        @DefaultValue("data/users") String directory,
+        @DefaultValue("64MB") DataSize segmentSize,
+        @DefaultValue("group") MappedUserJournal.SyncMode sync,
+        @DefaultValue("200ms") Duration flushInterval,
+        @DefaultValue("10m") Duration snapshotInterval
+    ) { }
+
+    public record Jpa(
+        @DefaultValue("10000") int cacheSize,
+        @DefaultValue("500") int batchSize
+    ) { }
+
+    public record OffHeap(
+        @DefaultValue("16MB") DataSize slabSize
+    ) { }
+
+    public record Sharded(
+        @DefaultValue("16") int shards,
+        @DefaultValue("false") boolean durable
+    ) { }
+
+}
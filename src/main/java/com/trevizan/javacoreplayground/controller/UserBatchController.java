@@ -0,0 +1,187 @@
+package com.trevizan.javacoreplayground.controller;
+
+import com.trevizan.javacoreplayground.controller.dto.UserBatchItemResponse;
+import com.trevizan.javacoreplayground.controller.dto.UserBatchUpdateRequest;
+import com.trevizan.javacoreplayground.controller.dto.UserRequest;
+import com.trevizan.javacoreplayground.exception.InvalidUserException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserBatchResult.Status;
+import com.trevizan.javacoreplayground.service.UserService;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.ObjectMapper;
+import tools.jackson.databind.ObjectReader;
+
+@RestController
+@RequestMapping("/api/v1")
+public class UserBatchController {
+
+    static final int STREAM_CHUNK_SIZE = 1000;
+    private static final byte NEW_LINE = '\n';
+
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
+    private final UserJsonCache userJsonCache;
+    private final ObjectReader createItemReader;
+    private final ObjectReader updateItemReader;
+    private final ObjectReader idReader;
+
+    public UserBatchController(UserService userService, ObjectMapper objectMapper, UserJsonCache userJsonCache) {
+        this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.userJsonCache = userJsonCache;
+        this.createItemReader = arrayItemReader(objectMapper, UserRequest.class);
+        this.updateItemReader = arrayItemReader(objectMapper, UserBatchUpdateRequest.class);
+        this.idReader = arrayItemReader(objectMapper, Long.class);
+    }
+
+    @PostMapping(value = "/users:batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<UserBatchItemResponse> createUsers(InputStream body) throws IOException {
+        List<User> users = readArray(body, createItemReader, UserBatchController::toUser);
+        return toResponses(userService.createUsers(users), 0);
+    }
+
+    @PostMapping(value = "/users:batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void createUsersFromStream(InputStream body, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        OutputStream outputStream = response.getOutputStream();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+
+        // read, write and answer one chunk at a time, so memory stays flat whatever the stream size
+        List<User> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        Map<Integer, String> malformed = new HashMap<>();
+        int chunkOffset = 0;
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            try {
+                chunk.add(toUser(objectMapper.readValue(line, UserRequest.class)));
+            } catch (JacksonException ex) {
+                // malformed lines are reported as INVALID items instead of failing the whole stream
+                malformed.put(chunk.size(), "Malformed JSON on line " + lineNumber + ": " + ex.getOriginalMessage());
+                chunk.add(null);
+            }
+            if (chunk.size() == STREAM_CHUNK_SIZE) {
+                writeResults(outputStream, createChunk(chunk, malformed), chunkOffset);
+                chunkOffset += chunk.size();
+                chunk.clear();
+                malformed.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            writeResults(outputStream, createChunk(chunk, malformed), chunkOffset);
+        }
+    }
+
+    // a null element becomes a null user, which the service reports as INVALID
+    @PutMapping(value = "/users:batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<UserBatchItemResponse> updateUsers(InputStream body) throws IOException {
+        List<User> users = readArray(body, updateItemReader, UserBatchController::toUpdatedUser);
+        List<UserBatchResult> results = userService.updateUsers(users);
+        users.forEach(user -> userJsonCache.invalidate(user == null ? null : user.getId()));
+        return toResponses(results, 0);
+    }
+
+    @DeleteMapping(value = "/users:batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<UserBatchItemResponse> deleteUsers(InputStream body) throws IOException {
+        List<Long> ids = readArray(body, idReader, Function.identity());
+        List<UserBatchResult> results = userService.deleteUsers(ids);
+        ids.forEach(userJsonCache::invalidate);
+        return toResponses(results, 0);
+    }
+
+    // reads the array element by element, so an oversized batch is rejected before it is held in memory
+    private <T, R> List<R> readArray(InputStream body, ObjectReader itemReader, Function<T, R> mapper) {
+        List<R> items = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidUserException("Batch body must be a JSON array.");
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (items.size() == UserService.MAX_BATCH_SIZE) {
+                    throw new InvalidUserException(
+                        "Batch size must not exceed " + UserService.MAX_BATCH_SIZE + " items.");
+                }
+                T item = itemReader.readValue(parser);
+                items.add(mapper.apply(item));
+            }
+        } catch (JacksonException ex) {
+            throw new InvalidUserException("Malformed JSON: " + ex.getOriginalMessage());
+        }
+        return items;
+    }
+
+    // the malformed lines still go to the service as null users, so they keep their index and id slot
+    private List<UserBatchResult> createChunk(List<User> chunk, Map<Integer, String> malformed) {
+        List<UserBatchResult> results = userService.createUsers(chunk);
+        if (malformed.isEmpty()) {
+            return results;
+        }
+        List<UserBatchResult> reported = new ArrayList<>(results);
+        malformed.forEach((index, error) -> reported.set(index, UserBatchResult.failure(index, Status.INVALID, error)));
+        return reported;
+    }
+
+    private void writeResults(OutputStream outputStream, List<UserBatchResult> results, int offset)
+        throws IOException {
+        for (UserBatchItemResponse item : toResponses(results, offset)) {
+            outputStream.write(objectMapper.writeValueAsBytes(item));
+            outputStream.write(NEW_LINE);
+        }
+        outputStream.flush();
+    }
+
+    // reads one element at a time: the rest of the array is not a trailing token
+    private static ObjectReader arrayItemReader(ObjectMapper objectMapper, Class<?> itemType) {
+        return objectMapper.readerFor(itemType).without(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+    }
+
+    private static User toUser(UserRequest request) {
+        return request == null ? null : new User(null, request.name(), request.email());
+    }
+
+    private static User toUpdatedUser(UserBatchUpdateRequest request) {
+        if (request == null) {
+            return null;
+        }
+        return new User(request.id(), request.name(), request.email(), request.version() == null ? 0L : request.version());
+    }
+
+    private static List<UserBatchItemResponse> toResponses(List<UserBatchResult> results, int offset) {
+        return results.stream()
+            .map(UserBatchItemResponse::from)
+            .map(item -> offset == 0 ? item : new UserBatchItemResponse(
+                item.index() + offset, item.status(), item.id(), item.version(), item.error()))
+            .toList();
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.trevizan.javacoreplayground.controller;
+
+import com.trevizan.javacoreplayground.controller.dto.UserChangesResponse;
+import com.trevizan.javacoreplayground.service.UserService;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/users")
+public class UserChangeController {
+
+    // below the servlet container's default async timeout (30s), which would answer 503 first
+    static final int MAX_WAIT_SECONDS = 25;
+
+    private final UserService userService;
+
+    public UserChangeController(UserService userService) {
+        this.userService = userService;
+    }
+
+    /**
+     * Long-poll on the change feed: start with {@code since=0}, then pass the {@code next} of each answer.
+     * {@code 410 Gone} when the changes after {@code since} are no longer kept.
+     */
+    @GetMapping("/changes")
+    public CompletableFuture<UserChangesResponse> getChanges(
+        @RequestParam long since,
+        @RequestParam(defaultValue = "100") int limit,
+        @RequestParam(defaultValue = "20") int wait
+    ) {
+        Duration timeout = Duration.ofSeconds(Math.clamp(wait, 0, MAX_WAIT_SECONDS));
+        return userService.awaitChanges(since, limit, timeout)
+            .thenApply(changes -> UserChangesResponse.from(changes, since));
+    }
+
+}
@@ -1,14 +1,26 @@
 package com.trevizan.javacoreplayground.controller;
 
 import com.trevizan.javacoreplayground.controller.dto.UserRequest;
-import com.trevizan.javacoreplayground.controller.dto.UserResponse;
+import com.trevizan.javacoreplayground.exception.InvalidUserException;
 import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserPage;
+import com.trevizan.javacoreplayground.model.UserSearchPage;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
 import com.trevizan.javacoreplayground.service.UserService;
 
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,18 +28,26 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v1/users")
 public class UserController {
 
+    private static final byte NEW_LINE = '\n';
+    private static final byte[] PAGE_ITEMS = "{\"items\":".getBytes(StandardCharsets.UTF_8);
+
     private final UserService userService;
+    private final UserJsonCache userJsonCache;
 
-    public UserController(UserService userService) {
+    public UserController(UserService userService, UserJsonCache userJsonCache) {
         this.userService = userService;
+        this.userJsonCache = userJsonCache;
     }
 
     @PostMapping
@@ -39,29 +59,151 @@ public class UserController {
         return ResponseEntity.created(location).build();
     }
 
+    // reads answer with the cached JSON of each user (UserJsonCache), written as is: no DTO, no Jackson per request;
+    // only single-user reads fill the cache, lists and pages read it without storing (jsonForScan)
+
     @GetMapping("/{id}")
-    public UserResponse getUserById(@PathVariable Long id) {
-        return UserResponse.from(userService.getUserById(id));
+    public ResponseEntity<byte[]> getUserById(@PathVariable Long id) {
+        User user = userService.getUserById(id);
+        return ResponseEntity.ok()
+            .eTag(String.valueOf(user.getVersion()))
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(userJsonCache.json(user));
     }
 
     @GetMapping
-    public List<UserResponse> getAllUsers() {
-        return userService.getAllUsers()
-            .stream()
-            .map(UserResponse::from)
-            .toList();
+    public void getAllUsers(HttpServletResponse response) throws IOException {
+        writeAllUsers(response, userService.getAllUsers());
+    }
+
+    @GetMapping(params = "email")
+    public ResponseEntity<byte[]> getUserByEmail(@RequestParam String email) {
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(userJsonCache.json(userService.getUserByEmail(email)));
+    }
+
+    // same document as UserPageResponse: {"items":[...],"nextCursor":...}
+    @GetMapping(params = "limit")
+    public void getUsersPage(
+        @RequestParam int limit,
+        @RequestParam(required = false) Long after,
+        HttpServletResponse response
+    ) throws IOException {
+        UserPage page = userService.getUsersPage(after, limit);
+        byte[] suffix = (",\"nextCursor\":" + page.nextCursor() + "}").getBytes(StandardCharsets.UTF_8);
+        writePage(response, page.users(), suffix);
+    }
+
+    // by name then id; nextCursor is an opaque string here, passed back as after
+    @GetMapping("/search")
+    public void searchUsers(
+        @RequestParam(required = false) String name,
+        @RequestParam(required = false) String domain,
+        @RequestParam(required = false) String q,
+        @RequestParam(defaultValue = "50") int limit,
+        @RequestParam(required = false) String after,
+        HttpServletResponse response
+    ) throws IOException {
+        UserSearchPage page = userService.searchUsers(UserSearchQuery.of(name, domain, q), after, limit);
+        // base64url: nothing to escape
+        String nextCursor = page.nextCursor() == null ? "null" : "\"" + page.nextCursor().encode() + "\"";
+        byte[] suffix = (",\"nextCursor\":" + nextCursor + "}").getBytes(StandardCharsets.UTF_8);
+        writePage(response, page.users(), suffix);
+    }
+
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllUsers() {
+        StreamingResponseBody body = this::writeUsers;
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_NDJSON)
+            .body(body);
     }
 
     @PutMapping("/{id}")
-    public User updateUser(@PathVariable Long id, @RequestBody UserRequest request) {
+    public User updateUser(
+        @PathVariable Long id,
+        @RequestBody UserRequest request,
+        @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch
+    ) {
         User user = new User(id, request.name(), request.email());
-        return userService.updateUser(id, user);
+        User updatedUser = userService.updateUser(id, user, parseVersion(ifMatch));
+        userJsonCache.invalidate(id);
+        return updatedUser;
     }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteUser(@PathVariable Long id) {
         userService.deleteUser(id);
+        userJsonCache.invalidate(id);
+    }
+
+    private static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank()) {
+            return null;
+        }
+        // accepts 3, "3" and W/"3"
+        String version = ifMatch.trim();
+        if (version.startsWith("W/")) {
+            version = version.substring(2);
+        }
+        version = version.replace("\"", "");
+        try {
+            return Long.parseLong(version);
+        } catch (NumberFormatException ex) {
+            throw new InvalidUserException("Invalid If-Match version: " + ifMatch);
+        }
+    }
+
+    // {"items":[user,...] suffix, with the exact length up front: a page is bounded, so holding its fragments is cheap
+    private void writePage(HttpServletResponse response, List<User> users, byte[] suffix) throws IOException {
+        byte[][] fragments = new byte[users.size()][];
+        long length = PAGE_ITEMS.length + 2L + Math.max(0, users.size() - 1) + suffix.length;
+        for (int i = 0; i < fragments.length; i++) {
+            fragments[i] = userJsonCache.jsonForScan(users.get(i));
+            length += fragments[i].length;
+        }
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLengthLong(length);
+        OutputStream outputStream = response.getOutputStream();
+        outputStream.write(PAGE_ITEMS);
+        outputStream.write('[');
+        for (int i = 0; i < fragments.length; i++) {
+            if (i > 0) {
+                outputStream.write(',');
+            }
+            outputStream.write(fragments[i]);
+        }
+        outputStream.write(']');
+        outputStream.write(suffix);
+    }
+
+    // [user,user,...] of the whole store: each fragment is written as it is encoded, so no length up front (chunked)
+    private void writeAllUsers(HttpServletResponse response, List<User> users) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        OutputStream outputStream = response.getOutputStream();
+        outputStream.write('[');
+        for (int i = 0; i < users.size(); i++) {
+            if (i > 0) {
+                outputStream.write(',');
+            }
+            outputStream.write(userJsonCache.jsonForScan(users.get(i)));
+        }
+        outputStream.write(']');
+    }
+
+    private void writeUsers(OutputStream outputStream) throws IOException {
+        // one JSON document per line, written as users are read: nothing is materialized as a list
+        try (Stream<User> users = userService.streamAllUsers()) {
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                outputStream.write(userJsonCache.jsonForScan(iterator.next()));
+                outputStream.write(NEW_LINE);
+            }
+        }
+        outputStream.flush();
     }
 
 }
@@ -0,0 +1,44 @@
+package com.trevizan.javacoreplayground.controller;
+
+import com.trevizan.javacoreplayground.controller.dto.UserImportResponse;
+import com.trevizan.javacoreplayground.service.UserService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("/api/v1")
+public class UserDumpController {
+
+    private final UserService userService;
+
+    public UserDumpController(UserService userService) {
+        this.userService = userService;
+    }
+
+    // the whole store as one binary dump (UserDump), streamed as it is written
+    @GetMapping(value = "/users:export", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        StreamingResponseBody body = outputStream -> userService.exportUsers(Channels.newChannel(outputStream));
+        return ResponseEntity.ok()
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"users.dump\"")
+            .contentType(MediaType.APPLICATION_OCTET_STREAM)
+            .body(body);
+    }
+
+    @PostMapping(value = "/users:import", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public UserImportResponse importUsers(InputStream body) throws IOException {
+        return UserImportResponse.from(userService.importUsers(Channels.newChannel(body)));
+    }
+
+}
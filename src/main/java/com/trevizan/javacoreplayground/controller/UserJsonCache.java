@@ -0,0 +1,133 @@
+package com.trevizan.javacoreplayground.controller;
+
+import com.trevizan.javacoreplayground.controller.dto.UserResponse;
+import com.trevizan.javacoreplayground.model.User;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * The JSON of a {@link UserResponse}, encoded once per user version and written as bytes afterwards.
+ * <ul>
+ *   <li>an entry is served only for a user with the same id, version, name and email, so a stale entry
+ *       is never returned, whichever path changed the user</li>
+ *   <li>writers invalidate on update and delete, which frees the entry early</li>
+ *   <li>bounded to {@code app.user-json-cache.max-size}, evicting in insertion order (FIFO)</li>
+ * </ul>
+ * Returned arrays are shared: callers write them out and never modify them.
+ */
+@Component
+public class UserJsonCache implements MeterBinder {
+
+    private record Entry(User source, byte[] json) { }
+
+    private final ObjectMapper objectMapper;
+    private final int maxSize;
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Long> insertionOrder = new ConcurrentLinkedQueue<>();
+    // invalidated ids stay queued, so the queue is bounded on its own as well
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public UserJsonCache(ObjectMapper objectMapper, @Value("${app.user-json-cache.max-size:100000}") int maxSize) {
+        this.objectMapper = objectMapper;
+        this.maxSize = maxSize;
+    }
+
+    public byte[] json(User user) {
+        byte[] cached = cached(user);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] json = encode(user);
+        if (maxSize > 0 && entries.put(user.getId(), new Entry(user, json)) == null) {
+            track(user.getId());
+        }
+        return json;
+    }
+
+    /**
+     * Like {@link #json(User)}, but a miss is not stored: full scans would otherwise evict the users that are
+     * actually read again.
+     */
+    public byte[] jsonForScan(User user) {
+        byte[] cached = cached(user);
+        return cached != null ? cached : encode(user);
+    }
+
+    public void invalidate(Long id) {
+        if (id != null) {
+            entries.remove(id);
+        }
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+        insertionOrder.clear();
+        queued.set(0);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("user.json.cache.gets", hits, LongAdder::sum)
+            .tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("user.json.cache.gets", misses, LongAdder::sum)
+            .tag("result", "miss")
+            .register(registry);
+        Gauge.builder("user.json.cache.size", entries, Map::size)
+            .register(registry);
+    }
+
+    private byte[] cached(User user) {
+        Entry entry = entries.get(user.getId());
+        if (entry != null && sameContent(entry.source(), user)) {
+            hits.increment();
+            return entry.json();
+        }
+        misses.increment();
+        return null;
+    }
+
+    private byte[] encode(User user) {
+        return objectMapper.writeValueAsBytes(UserResponse.from(user));
+    }
+
+    private void track(long id) {
+        insertionOrder.add(id);
+        queued.incrementAndGet();
+        while (entries.size() > maxSize || queued.get() > maxSize * 2) {
+            Long oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            queued.decrementAndGet();
+            entries.remove(oldest);
+        }
+    }
+
+    private static boolean sameContent(User cached, User user) {
+        return cached == user
+            || cached.getVersion() == user.getVersion()
+                && Objects.equals(cached.getName(), user.getName())
+                && Objects.equals(cached.getEmail(), user.getEmail());
+    }
+
+}
@@ -0,0 +1,56 @@
+package com.trevizan.javacoreplayground.controller;
+
+import com.trevizan.javacoreplayground.controller.dto.UserPageResponse;
+import com.trevizan.javacoreplayground.controller.dto.UserSnapshotResponse;
+import com.trevizan.javacoreplayground.service.UserService;
+
+import java.net.URI;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/v1/users/snapshots")
+public class UserSnapshotController {
+
+    private final UserService userService;
+
+    public UserSnapshotController(UserService userService) {
+        this.userService = userService;
+    }
+
+    @PostMapping
+    public ResponseEntity<UserSnapshotResponse> openSnapshot() {
+        String token = userService.openSnapshot();
+        return ResponseEntity.created(URI.create("/api/v1/users/snapshots/" + token))
+            .body(new UserSnapshotResponse(token));
+    }
+
+    /**
+     * Keyset pages like {@code GET /users?limit=}, all read at the time the snapshot was opened.
+     * {@code 410 Gone} once it was closed or sat idle too long.
+     */
+    @GetMapping("/{token}")
+    public UserPageResponse getSnapshotPage(
+        @PathVariable String token,
+        @RequestParam(defaultValue = "1000") int limit,
+        @RequestParam(required = false) Long after
+    ) {
+        return UserPageResponse.from(userService.getSnapshotPage(token, after, limit));
+    }
+
+    @DeleteMapping("/{token}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public void closeSnapshot(@PathVariable String token) {
+        userService.closeSnapshot(token);
+    }
+
+}
@@ -0,0 +1,23 @@
+package com.trevizan.javacoreplayground.controller.dto;
+
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+
+public record UserBatchItemResponse(
+    int index,
+    UserBatchResult.Status status,
+    Long id,
+    Long version,
+    String error
+) {
+    public static UserBatchItemResponse from(UserBatchResult result) {
+        User user = result.user();
+        return new UserBatchItemResponse(
+            result.index(),
+            result.status(),
+            user == null ? null : user.getId(),
+            user == null ? null : user.getVersion(),
+            result.error()
+        );
+    }
+}
@@ -0,0 +1,8 @@
+package com.trevizan.javacoreplayground.controller.dto;
+
+public record UserBatchUpdateRequest(
+    Long id,
+    String name,
+    String email,
+    Long version
+) { }
@@ -0,0 +1,19 @@
+package com.trevizan.javacoreplayground.controller.dto;
+
+import com.trevizan.javacoreplayground.model.UserChange;
+
+public record UserChangeResponse(
+    long sequence,
+    UserChange.Type type,
+    long id,
+    UserResponse user
+) {
+    public static UserChangeResponse from(UserChange change) {
+        return new UserChangeResponse(
+            change.sequence(),
+            change.type(),
+            change.id(),
+            change.user() == null ? null : UserResponse.from(change.user())
+        );
+    }
+}
@@ -0,0 +1,18 @@
+package com.trevizan.javacoreplayground.controller.dto;
+
+import com.trevizan.javacoreplayground.model.UserChange;
+
+import java.util.List;
+
+public record UserChangesResponse(
+    List<UserChangeResponse> changes,
+    long next
+) {
+    // next: the since of the following poll, unchanged when nothing happened
+    public static UserChangesResponse from(List<UserChange> changes, long since) {
+        List<UserChangeResponse> items = changes.stream()
+            .map(UserChangeResponse::from)
+            .toList();
+        return new UserChangesResponse(items, changes.isEmpty() ? since : changes.getLast().sequence());
+    }
+}
@@ -0,0 +1,12 @@
+package com.trevizan.javacoreplayground.controller.dto;
+
+import com.trevizan.javacoreplayground.model.UserImportResult;
+
+public record UserImportResponse(
+    long created,
+    long conflicts
+) {
+    public static UserImportResponse from(UserImportResult result) {
+        return new UserImportResponse(result.created(), result.conflicts());
+    }
+}
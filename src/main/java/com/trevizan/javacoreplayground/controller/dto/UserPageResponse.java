@@ -0,0 +1,18 @@
+package com.trevizan.javacoreplayground.controller.dto;
+
+import com.trevizan.javacoreplayground.model.UserPage;
+
+import java.util.List;
+
+public record UserPageResponse(
+    List<UserResponse> items,
+    Long nextCursor
+) {
+    public static UserPageResponse from(UserPage page) {
+        List<UserResponse> items = page.users()
+            .stream()
+            .map(UserResponse::from)
+            .toList();
+        return new UserPageResponse(items, page.nextCursor());
+    }
+}
@@ -5,9 +5,10 @@ import com.trevizan.javacoreplayground.model.User;
 public record UserResponse(
     Long id,
     String name,
-    String email
+    String email,
+    long version
 ) {
     public static UserResponse from(User user) {
-        return new UserResponse(user.getId(), user.getName(), user.getEmail());
+        return new UserResponse(user.getId(), user.getName(), user.getEmail(), user.getVersion());
     }
 }
@@ -0,0 +1,5 @@
+package com.trevizan.javacoreplayground.controller.dto;
+
+public record UserSnapshotResponse(
+    String snapshot
+) { }
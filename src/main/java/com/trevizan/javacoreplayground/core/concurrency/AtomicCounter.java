@@ -6,12 +6,20 @@ public class AtomicCounter {
 
     private final AtomicInteger count = new AtomicInteger();
 
+    public void increment() {
+        count.incrementAndGet();
+    }
+
+    public int get() {
+        return count.get();
+    }
+
     public static void main(String[] args) throws InterruptedException {
         AtomicCounter counter = new AtomicCounter();
 
         Runnable task = () -> {
             for (int i = 0; i < 100000; i++) {
-                counter.count.incrementAndGet();
+                counter.increment();
             }
         };
 
@@ -23,7 +31,7 @@ public class AtomicCounter {
         t1.join();
         t2.join();
 
-        System.out.println("Final count (expected 200000): " + counter.count.get());
+        System.out.println("Final count (expected 200000): " + counter.get());
     }
     /*
      * showcase:
@@ -0,0 +1,58 @@
+package com.trevizan.javacoreplayground.core.concurrency;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class StripedCounter {
+
+    private final AtomicLongArray stripes;
+    private final int mask;
+
+    public StripedCounter(int stripes) {
+        // power of two, so the stripe is a mask instead of a modulo
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new AtomicLongArray(size);
+        this.mask = size - 1;
+    }
+
+    public void increment() {
+        stripes.incrementAndGet((int) Thread.currentThread().threadId() & mask);
+    }
+
+    public long get() {
+        long sum = 0;
+        for (int i = 0; i < stripes.length(); i++) {
+            sum += stripes.get(i);
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        StripedCounter counter = new StripedCounter(Runtime.getRuntime().availableProcessors());
+
+        Runnable task = () -> {
+            for (int i = 0; i < 100000; i++) {
+                counter.increment();
+            }
+        };
+
+        Thread t1 = new Thread(task);
+        Thread t2 = new Thread(task);
+
+        t1.start();
+        t2.start();
+        t1.join();
+        t2.join();
+
+        System.out.println("Final count (expected 200000): " + counter.get());
+    }
+    /*
+     * showcase:
+     * - each thread increments its own stripe, so threads rarely CAS the same value
+     * - the total is the sum of the stripes, computed on read
+     *
+     * trade-off:
+     * - neighbouring stripes share a cache line, so threads still invalidate each other's line (false sharing)
+     * - get() is not a snapshot while writers are running, and costs one pass over the stripes
+     * - LongAdder does the same with padded cells that grow only under contention
+     */
+}
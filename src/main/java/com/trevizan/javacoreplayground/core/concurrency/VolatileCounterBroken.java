@@ -4,12 +4,21 @@ public class VolatileCounterBroken {
 
     private volatile int count = 0;
 
+    // read, add, write: two threads can read the same value and one update is lost
+    public void increment() {
+        count++;
+    }
+
+    public int get() {
+        return count;
+    }
+
     public static void main(String[] args) throws InterruptedException {
         VolatileCounterBroken counter = new VolatileCounterBroken();
 
         Runnable task = () -> {
             for (int i = 0; i < 100000; i++) {
-                counter.count++;
+                counter.increment();
             }
         };
 
@@ -21,7 +30,7 @@ public class VolatileCounterBroken {
         t1.join();
         t2.join();
 
-        System.out.println("Final count (expected 200000): " + counter.count);
+        System.out.println("Final count (expected 200000): " + counter.get());
     }
     /*
      * showcase:
@@ -0,0 +1,93 @@
+package com.trevizan.javacoreplayground.core.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Largest (or smallest) value recorded since the last reset, for example the worst latency between two scrapes.
+ * <ul>
+ *   <li>{@code record} reads the caller's stripe and only CASes when the value beats it,
+ *       so once the extreme is established most records are a plain read</li>
+ *   <li>{@code get} and {@code getThenReset} fold every stripe</li>
+ * </ul>
+ */
+public final class ShardedGauge {
+
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] cells;
+    private final int mask;
+    private final boolean max;
+    // what an empty stripe holds: never beats a recorded value
+    private final long identity;
+
+    private ShardedGauge(int stripes, boolean max) {
+        int count = Stripes.count(stripes);
+        this.cells = new long[count * Stripes.PADDING];
+        this.mask = count - 1;
+        this.max = max;
+        this.identity = max ? Long.MIN_VALUE : Long.MAX_VALUE;
+        for (int i = 0; i < cells.length; i += Stripes.PADDING) {
+            cells[i] = identity;
+        }
+    }
+
+    /**
+     * @param stripes rounded up to a power of two; {@code 0} for twice the core count
+     */
+    public static ShardedGauge max(int stripes) {
+        return new ShardedGauge(stripes, true);
+    }
+
+    /**
+     * @param stripes rounded up to a power of two; {@code 0} for twice the core count
+     */
+    public static ShardedGauge min(int stripes) {
+        return new ShardedGauge(stripes, false);
+    }
+
+    public void record(long value) {
+        int index = Stripes.ofCurrentThread(mask) * Stripes.PADDING;
+        long current = (long) CELLS.getVolatile(cells, index);
+        while (beats(value, current)) {
+            long witness = (long) CELLS.compareAndExchange(cells, index, current, value);
+            if (witness == current) {
+                return;
+            }
+            current = witness;
+        }
+    }
+
+    /**
+     * The extreme so far, {@link Long#MIN_VALUE} (max) or {@link Long#MAX_VALUE} (min) when nothing was recorded.
+     */
+    public long get() {
+        long result = identity;
+        for (int i = 0; i < cells.length; i += Stripes.PADDING) {
+            long value = (long) CELLS.getVolatile(cells, i);
+            if (beats(value, result)) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The extreme since the previous call; records racing with it land in the next one.
+     */
+    public long getThenReset() {
+        long result = identity;
+        for (int i = 0; i < cells.length; i += Stripes.PADDING) {
+            long value = (long) CELLS.getAndSet(cells, i, identity);
+            if (beats(value, result)) {
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    private boolean beats(long value, long current) {
+        return max ? value > current : value < current;
+    }
+
+}
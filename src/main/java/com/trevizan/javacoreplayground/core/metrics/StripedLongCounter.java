@@ -0,0 +1,63 @@
+package com.trevizan.javacoreplayground.core.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Monotonic-ish counter for hot paths: {@code add} is one wait-free atomic add on the caller's stripe,
+ * {@code sum} walks every stripe.
+ * <ul>
+ *   <li>stripes are fixed at construction and padded to a cache line each, so there is no false sharing</li>
+ *   <li>no allocation after construction, unlike {@link java.util.concurrent.atomic.LongAdder}, which grows cells
+ *       under contention</li>
+ *   <li>{@code sum} is not an atomic snapshot while writers are running</li>
+ * </ul>
+ */
+public final class StripedLongCounter {
+
+    private static final VarHandle CELLS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final long[] cells;
+    private final int mask;
+
+    public StripedLongCounter() {
+        this(0);
+    }
+
+    /**
+     * @param stripes rounded up to a power of two; {@code 0} for twice the core count
+     */
+    public StripedLongCounter(int stripes) {
+        int count = Stripes.count(stripes);
+        this.cells = new long[count * Stripes.PADDING];
+        this.mask = count - 1;
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        CELLS.getAndAdd(cells, Stripes.ofCurrentThread(mask) * Stripes.PADDING, delta);
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length; i += Stripes.PADDING) {
+            sum += (long) CELLS.getVolatile(cells, i);
+        }
+        return sum;
+    }
+
+    /**
+     * Sum since the previous call, each stripe swapped to zero; adds racing with it land in the next one.
+     */
+    public long sumThenReset() {
+        long sum = 0;
+        for (int i = 0; i < cells.length; i += Stripes.PADDING) {
+            sum += (long) CELLS.getAndSet(cells, i, 0L);
+        }
+        return sum;
+    }
+
+}
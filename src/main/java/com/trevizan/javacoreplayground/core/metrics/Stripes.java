@@ -0,0 +1,35 @@
+package com.trevizan.javacoreplayground.core.metrics;
+
+/*
+ * shared by the striped metrics:
+ * - one slot per stripe in a long[], PADDING longs apart, so two stripes never share a cache line
+ *   (128 bytes: also covers the adjacent-line prefetch on x86)
+ * - the stripe of a thread is a hash of its id: stable per thread, no ThreadLocal lookup, works for virtual threads
+ *
+ * trade-off:
+ * - 128 bytes per stripe, for a single long
+ * - two threads can hash to the same stripe, they then share it (still correct, just contended)
+ */
+final class Stripes {
+
+    static final int PADDING = 16;
+
+    private Stripes() {
+    }
+
+    /**
+     * {@code requested} rounded up to a power of two, or twice the core count when {@code requested <= 0}.
+     */
+    static int count(int requested) {
+        int stripes = requested > 0 ? requested : 2 * Runtime.getRuntime().availableProcessors();
+        return Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+    }
+
+    static int ofCurrentThread(int mask) {
+        long id = Thread.currentThread().threadId();
+        // thread ids are sequential, mix them so neighbours do not walk the stripes in lockstep
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & mask;
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.trevizan.javacoreplayground.core.metrics;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Events per second over a sliding window of {@code buckets} x {@code bucketDuration}.
+ * <ul>
+ *   <li>each bucket word packs the bucket's epoch (high bits) and its count (low bits):
+ *       a stale bucket is reset and counted into by the same CAS, so no increment is lost to a reset</li>
+ *   <li>buckets are striped per thread and the stripes padded, writers on different stripes never touch
+ *       the same cache line</li>
+ *   <li>no allocation and no lock; {@code rate} folds stripes x buckets</li>
+ * </ul>
+ */
+public final class WindowedRateCounter {
+
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int COUNT_BITS = 40;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    // epochs are compared modulo 2^24: with 1s buckets that wraps after ~194 days, far beyond any window
+    private static final long EPOCH_MASK = (1L << (Long.SIZE - COUNT_BITS)) - 1;
+
+    private final long[] words;
+    private final int stripeMask;
+    private final int stride;
+    private final int buckets;
+    private final long bucketNanos;
+    private final LongSupplier nanoClock;
+    private final long origin;
+
+    public WindowedRateCounter(Duration window, int buckets) {
+        this(window, buckets, 0, System::nanoTime);
+    }
+
+    /**
+     * @param stripes rounded up to a power of two; {@code 0} for twice the core count
+     */
+    public WindowedRateCounter(Duration window, int buckets, int stripes, LongSupplier nanoClock) {
+        if (buckets < 2) {
+            throw new IllegalArgumentException("At least 2 buckets are needed, got " + buckets);
+        }
+        int count = Stripes.count(stripes);
+        this.buckets = buckets;
+        this.bucketNanos = window.toNanos() / buckets;
+        if (bucketNanos <= 0) {
+            throw new IllegalArgumentException("Window " + window + " is too short for " + buckets + " buckets");
+        }
+        // a stripe's buckets are contiguous, padding only between stripes
+        this.stride = buckets + Stripes.PADDING;
+        this.words = new long[count * stride];
+        this.stripeMask = count - 1;
+        this.nanoClock = nanoClock;
+        this.origin = nanoClock.getAsLong();
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long events) {
+        long epoch = epoch(nanoClock.getAsLong());
+        int index = Stripes.ofCurrentThread(stripeMask) * stride + (int) (epoch % buckets);
+        long tag = (epoch & EPOCH_MASK) << COUNT_BITS;
+
+        long word = (long) WORDS.getVolatile(words, index);
+        while (true) {
+            long next = (word & ~COUNT_MASK) == tag
+                ? word + events
+                : tag | (events & COUNT_MASK);
+            long witness = (long) WORDS.compareAndExchange(words, index, word, next);
+            if (witness == word) {
+                return;
+            }
+            word = witness;
+        }
+    }
+
+    /**
+     * Events in the window, the current (partial) bucket included.
+     */
+    public long count() {
+        return count(epoch(nanoClock.getAsLong()));
+    }
+
+    /**
+     * Events per second over the window; the partial current bucket counts for the time it has covered so far.
+     */
+    public double ratePerSecond() {
+        long now = nanoClock.getAsLong();
+        long epoch = epoch(now);
+        long intoCurrent = (now - origin) - epoch * bucketNanos;
+        long coveredNanos = Math.min(now - origin, (buckets - 1) * bucketNanos + intoCurrent);
+        if (coveredNanos <= 0) {
+            return 0;
+        }
+        return count(epoch) * 1e9 / coveredNanos;
+    }
+
+    private long count(long epoch) {
+        long sum = 0;
+        for (int stripe = 0; stripe <= stripeMask; stripe++) {
+            int base = stripe * stride;
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                long word = (long) WORDS.getVolatile(words, base + bucket);
+                long age = ((epoch & EPOCH_MASK) - (word >>> COUNT_BITS)) & EPOCH_MASK;
+                if (word != 0 && age < buckets) {
+                    sum += word & COUNT_MASK;
+                }
+            }
+        }
+        return sum;
+    }
+
+    private long epoch(long nanos) {
+        return (nanos - origin) / bucketNanos;
+    }
+
+}
@@ -0,0 +1,9 @@
+package com.trevizan.javacoreplayground.exception;
+
+public class DuplicateEmailException extends RuntimeException {
+
+    public DuplicateEmailException(String email) {
+        super("User already exists with email: " + email);
+    }
+
+}
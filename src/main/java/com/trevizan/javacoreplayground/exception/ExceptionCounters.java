@@ -0,0 +1,47 @@
+package com.trevizan.javacoreplayground.exception;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.concurrent.CompletionException;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code app.exceptions{exception}} for the domain exceptions worth alerting on, counters registered up front
+ * so counting one is a single increment.
+ */
+@Component
+public class ExceptionCounters {
+
+    public static final String METRIC = "app.exceptions";
+
+    private final Counter userNotFound;
+    private final Counter invalidUser;
+    private final Counter externalService;
+
+    public ExceptionCounters(MeterRegistry registry) {
+        this.userNotFound = counter(registry, UserNotFoundException.class);
+        this.invalidUser = counter(registry, InvalidUserException.class);
+        this.externalService = counter(registry, ExternalServiceException.class);
+    }
+
+    public void record(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof UserNotFoundException) {
+            userNotFound.increment();
+        } else if (cause instanceof InvalidUserException) {
+            invalidUser.increment();
+        } else if (cause instanceof ExternalServiceException) {
+            externalService.increment();
+        }
+    }
+
+    private static Counter counter(MeterRegistry registry, Class<? extends RuntimeException> type) {
+        return Counter.builder(METRIC)
+            .description("domain exceptions, by type")
+            .tag("exception", type.getSimpleName())
+            .register(registry);
+    }
+
+}
@@ -0,0 +1,18 @@
+package com.trevizan.javacoreplayground.exception;
+
+import java.time.Duration;
+
+public class ExternalServiceOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public ExternalServiceOverloadedException(Duration retryAfter, Throwable cause) {
+        super("Too many concurrent calls to the external service, retry after " + retryAfter.toMillis() + "ms.", cause);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+}
@@ -1,5 +1,8 @@
 package com.trevizan.javacoreplayground.exception;
 
+import java.time.Duration;
+
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -8,8 +11,15 @@ import org.springframework.web.bind.annotation.RestControllerAdvice;
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private final ExceptionCounters exceptionCounters;
+
+    public GlobalExceptionHandler(ExceptionCounters exceptionCounters) {
+        this.exceptionCounters = exceptionCounters;
+    }
+
     @ExceptionHandler(UserNotFoundException.class)
     public ResponseEntity<String> handleUserNotFound(UserNotFoundException ex) {
+        exceptionCounters.record(ex);
         return ResponseEntity
             .status(HttpStatus.NOT_FOUND)
             .body(ex.getMessage());
@@ -17,9 +27,62 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(InvalidUserException.class)
     public ResponseEntity<String> handleInvalidUserException(InvalidUserException ex) {
+        exceptionCounters.record(ex);
         return ResponseEntity
             .status(HttpStatus.BAD_REQUEST)
             .body(ex.getMessage());
     }
 
+    @ExceptionHandler(DuplicateEmailException.class)
+    public ResponseEntity<String> handleDuplicateEmail(DuplicateEmailException ex) {
+        return ResponseEntity
+            .status(HttpStatus.CONFLICT)
+            .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(UserVersionConflictException.class)
+    public ResponseEntity<String> handleVersionConflict(UserVersionConflictException ex) {
+        return ResponseEntity
+            .status(HttpStatus.CONFLICT)
+            .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(UserChangesExpiredException.class)
+    public ResponseEntity<String> handleChangesExpired(UserChangesExpiredException ex) {
+        return ResponseEntity
+            .status(HttpStatus.GONE)
+            .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(UserSnapshotExpiredException.class)
+    public ResponseEntity<String> handleSnapshotExpired(UserSnapshotExpiredException ex) {
+        return ResponseEntity
+            .status(HttpStatus.GONE)
+            .body(ex.getMessage());
+    }
+
+    // load shedding: reject at once instead of queuing, and tell the caller when to come back
+
+    @ExceptionHandler(ExternalServiceRateLimitedException.class)
+    public ResponseEntity<String> handleRateLimited(ExternalServiceRateLimitedException ex) {
+        return ResponseEntity
+            .status(HttpStatus.TOO_MANY_REQUESTS)
+            .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(ex.getRetryAfter()))
+            .body(ex.getMessage());
+    }
+
+    @ExceptionHandler(ExternalServiceOverloadedException.class)
+    public ResponseEntity<String> handleOverloaded(ExternalServiceOverloadedException ex) {
+        return ResponseEntity
+            .status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds(ex.getRetryAfter()))
+            .body(ex.getMessage());
+    }
+
+    // Retry-After is in whole seconds, rounded up so the client does not come back too early
+    private static String retryAfterSeconds(Duration retryAfter) {
+        long seconds = (retryAfter.toMillis() + 999) / 1000;
+        return Long.toString(Math.max(1, seconds));
+    }
+
 }
@@ -0,0 +1,10 @@
+package com.trevizan.javacoreplayground.exception;
+
+public class UserChangesExpiredException extends RuntimeException {
+
+    public UserChangesExpiredException(long since, long latest) {
+        super("Changes after sequence " + since + " are no longer available: reload the users, then follow"
+            + " the changes from sequence " + latest + ".");
+    }
+
+}
@@ -6,4 +6,8 @@ public class UserNotFoundException extends RuntimeException {
         super("User not found with id: " + id);
     }
 
+    public UserNotFoundException(String email) {
+        super("User not found with email: " + email);
+    }
+
 }
@@ -0,0 +1,9 @@
+package com.trevizan.javacoreplayground.exception;
+
+public class UserSnapshotExpiredException extends RuntimeException {
+
+    public UserSnapshotExpiredException(String token) {
+        super("Snapshot " + token + " was closed or has expired: open a new one and start over.");
+    }
+
+}
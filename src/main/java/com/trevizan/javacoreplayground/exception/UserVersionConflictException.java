@@ -0,0 +1,10 @@
+package com.trevizan.javacoreplayground.exception;
+
+public class UserVersionConflictException extends RuntimeException {
+
+    public UserVersionConflictException(Long id, long expectedVersion, long currentVersion) {
+        super("User " + id + " was modified concurrently: expected version "
+            + expectedVersion + " but found " + currentVersion);
+    }
+
+}
@@ -5,11 +5,17 @@ public final class User {
     private final Long id;
     private final String name;
     private final String email;
+    private final long version;
 
     public User(Long id, String name, String email) {
+        this(id, name, email, 0L);
+    }
+
+    public User(Long id, String name, String email, long version) {
         this.id = id;
         this.name = name;
         this.email = email;
+        this.version = version;
     }
 
     public Long getId() {
@@ -24,8 +30,16 @@ public final class User {
         return email;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public User withId(Long id) {
-        return new User(id, this.name, this.email);
+        return new User(id, this.name, this.email, this.version);
+    }
+
+    public User withVersion(long version) {
+        return new User(this.id, this.name, this.email, version);
     }
 
 }
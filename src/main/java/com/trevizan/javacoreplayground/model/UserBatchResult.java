@@ -0,0 +1,27 @@
+package com.trevizan.javacoreplayground.model;
+
+public record UserBatchResult(
+    int index,
+    Status status,
+    User user,
+    String error
+) {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        DELETED,
+        INVALID,
+        NOT_FOUND,
+        CONFLICT
+    }
+
+    public static UserBatchResult success(int index, Status status, User user) {
+        return new UserBatchResult(index, status, user, null);
+    }
+
+    public static UserBatchResult failure(int index, Status status, String error) {
+        return new UserBatchResult(index, status, null, error);
+    }
+
+}
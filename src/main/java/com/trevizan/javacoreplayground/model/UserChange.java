@@ -0,0 +1,17 @@
+package com.trevizan.javacoreplayground.model;
+
+/**
+ * One write of the change feed. {@code user} is the user as written, {@code null} for a delete.
+ */
+public record UserChange(
+    long sequence,
+    Type type,
+    long id,
+    User user
+) {
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
@@ -0,0 +1,6 @@
+package com.trevizan.javacoreplayground.model;
+
+public record UserImportResult(
+    long created,
+    long conflicts
+) { }
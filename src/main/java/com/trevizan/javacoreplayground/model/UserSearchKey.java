@@ -0,0 +1,45 @@
+package com.trevizan.javacoreplayground.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * Position of a user in search results: lower-cased name, then id. The key of the last user of a page
+ * is also the cursor of the next one, carried over HTTP as an opaque string ({@link #encode()}).
+ */
+public record UserSearchKey(String name, long id) implements Comparable<UserSearchKey> {
+
+    public static UserSearchKey of(User user) {
+        return new UserSearchKey(normalizeName(user.getName()), user.getId());
+    }
+
+    public static String normalizeName(String name) {
+        return name == null ? "" : name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses a cursor made by {@link #encode()}; throws {@link IllegalArgumentException} when it is not one.
+     */
+    public static UserSearchKey decode(String cursor) {
+        String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int separator = decoded.indexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Not a search cursor: " + cursor);
+        }
+        return new UserSearchKey(decoded.substring(separator + 1), Long.parseLong(decoded.substring(0, separator)));
+    }
+
+    // the id goes first: it never contains the separator, a name may
+    public String encode() {
+        byte[] bytes = (id + ":" + name).getBytes(StandardCharsets.UTF_8);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
+    @Override
+    public int compareTo(UserSearchKey other) {
+        int byName = name.compareTo(other.name);
+        return byName != 0 ? byName : Long.compare(id, other.id);
+    }
+
+}
@@ -0,0 +1,8 @@
+package com.trevizan.javacoreplayground.model;
+
+import java.util.List;
+
+public record UserSearchPage(
+    List<User> users,
+    UserSearchKey nextCursor
+) { }
@@ -0,0 +1,98 @@
+package com.trevizan.javacoreplayground.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Criteria of a user search; a user matches when it meets every criterion given.
+ * <ul>
+ *   <li>{@code namePrefix}: start of the name, case-insensitive</li>
+ *   <li>{@code domain}: email domain, exact and case-insensitive</li>
+ *   <li>{@code words}: each must be a whole word of the name or of the email local part</li>
+ * </ul>
+ * Values are normalized on construction: lower case, blank as absent, words as {@link #words(String)} splits them.
+ */
+public record UserSearchQuery(String namePrefix, String domain, List<String> words) {
+
+    public UserSearchQuery {
+        namePrefix = blankToNull(namePrefix) == null ? null : UserSearchKey.normalizeName(namePrefix);
+        domain = blankToNull(domain) == null ? null : domain.trim().toLowerCase(Locale.ROOT);
+        words = words == null ? List.of() : words.stream().flatMap(text -> words(text).stream()).distinct().toList();
+    }
+
+    public static UserSearchQuery of(String namePrefix, String domain, String text) {
+        return new UserSearchQuery(namePrefix, domain, text == null ? List.of() : List.of(text));
+    }
+
+    public boolean isEmpty() {
+        return namePrefix == null && domain == null && words.isEmpty();
+    }
+
+    public boolean matches(User user) {
+        if (namePrefix != null && !UserSearchKey.normalizeName(user.getName()).startsWith(namePrefix)) {
+            return false;
+        }
+        if (domain != null && !domain.equals(domainOf(user))) {
+            return false;
+        }
+        return words.isEmpty() || wordsOf(user).containsAll(words);
+    }
+
+    /**
+     * Lower-cased email domain, {@code null} without an email.
+     */
+    public static String domainOf(User user) {
+        String email = user.getEmail();
+        if (email == null) {
+            return null;
+        }
+        return email.substring(email.lastIndexOf('@') + 1).trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Distinct words of the name and of the email local part.
+     */
+    public static List<String> wordsOf(User user) {
+        List<String> words = new ArrayList<>(words(user.getName()));
+        String email = user.getEmail();
+        if (email != null) {
+            int at = email.lastIndexOf('@');
+            for (String word : words(at < 0 ? email : email.substring(0, at))) {
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Runs of letters and digits, lower-cased: {@code "Anakin O'Neil-Skywalker"} is anakin, o, neil, skywalker.
+     */
+    public static List<String> words(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        List<String> words = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean inWord = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                String word = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+}
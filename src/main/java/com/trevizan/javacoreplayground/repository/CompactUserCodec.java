@@ -0,0 +1,132 @@
+package com.trevizan.javacoreplayground.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Name and email of one user in a single byte array, for {@link CompactUserRepository}.
+ * <pre>
+ * record = byte flags, [varint length, UTF-8 name], [varint length, UTF-8 local part, [varint domain id]]
+ * flags  = NAME | EMAIL | DOMAIN (fields in brackets are present only with their flag)
+ * </pre>
+ * The part after the last {@code @} is interned: a few thousand domains are shared by millions of users,
+ * so each record stores a small id instead of the domain bytes.
+ * Not thread-safe: the repository encodes under its write lock and decodes under its read lock.
+ */
+final class CompactUserCodec {
+
+    private static final int NAME = 1;
+    private static final int EMAIL = 1 << 1;
+    private static final int DOMAIN = 1 << 2;
+
+    private final Map<String, Integer> domainIds = new HashMap<>();
+    private String[] domains = new String[64];
+
+    byte[] encode(String name, String email) {
+        byte[] nameBytes = name == null ? null : name.getBytes(StandardCharsets.UTF_8);
+        int at = email == null ? -1 : email.lastIndexOf('@');
+        byte[] localBytes = email == null ? null : email.substring(0, at < 0 ? email.length() : at)
+            .getBytes(StandardCharsets.UTF_8);
+        int domainId = at < 0 ? -1 : internDomain(email.substring(at + 1));
+
+        int flags = (nameBytes != null ? NAME : 0) | (localBytes != null ? EMAIL : 0) | (domainId >= 0 ? DOMAIN : 0);
+        byte[] record = new byte[1
+            + fieldSize(nameBytes)
+            + fieldSize(localBytes)
+            + (domainId >= 0 ? varintSize(domainId) : 0)];
+        record[0] = (byte) flags;
+        int position = putField(record, 1, nameBytes);
+        position = putField(record, position, localBytes);
+        if (domainId >= 0) {
+            putVarint(record, position, domainId);
+        }
+        return record;
+    }
+
+    String name(byte[] record) {
+        if ((record[0] & NAME) == 0) {
+            return null;
+        }
+        int length = varint(record, 1);
+        return new String(record, 1 + varintSize(length), length, StandardCharsets.UTF_8);
+    }
+
+    String email(byte[] record) {
+        int flags = record[0];
+        if ((flags & EMAIL) == 0) {
+            return null;
+        }
+        int position = 1;
+        if ((flags & NAME) != 0) {
+            int nameLength = varint(record, position);
+            position += varintSize(nameLength) + nameLength;
+        }
+        int length = varint(record, position);
+        position += varintSize(length);
+        String local = new String(record, position, length, StandardCharsets.UTF_8);
+        if ((flags & DOMAIN) == 0) {
+            return local;
+        }
+        return local + '@' + domains[varint(record, position + length)];
+    }
+
+    int domainCount() {
+        return domainIds.size();
+    }
+
+    private int internDomain(String domain) {
+        Integer id = domainIds.get(domain);
+        if (id != null) {
+            return id;
+        }
+        int newId = domainIds.size();
+        if (newId == domains.length) {
+            domains = Arrays.copyOf(domains, newId << 1);
+        }
+        // interned domains are never dropped: they are few, and a record may still point at one
+        domains[newId] = domain;
+        domainIds.put(domain, newId);
+        return newId;
+    }
+
+    private static int fieldSize(byte[] bytes) {
+        return bytes == null ? 0 : varintSize(bytes.length) + bytes.length;
+    }
+
+    private static int putField(byte[] target, int position, byte[] bytes) {
+        if (bytes == null) {
+            return position;
+        }
+        position = putVarint(target, position, bytes.length);
+        System.arraycopy(bytes, 0, target, position, bytes.length);
+        return position + bytes.length;
+    }
+
+    // unsigned LEB128: 7 bits per byte, high bit set on every byte but the last
+    private static int putVarint(byte[] target, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+
+    private static int varint(byte[] source, int position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = source[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int varintSize(int value) {
+        return value < 1 << 7 ? 1 : value < 1 << 14 ? 2 : value < 1 << 21 ? 3 : value < 1 << 28 ? 4 : 5;
+    }
+
+}
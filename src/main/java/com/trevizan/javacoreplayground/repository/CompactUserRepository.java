@@ -0,0 +1,463 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.exception.DuplicateEmailException;
+import com.trevizan.javacoreplayground.exception.UserVersionConflictException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserSearchKey;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Memory-lean store mode ({@code app.user-store.mode: compact}): users live in primitive columns indexed by slot,
+ * and {@link User} objects are only built when read.
+ * <ul>
+ *   <li>id -> slot in a {@link LongIntHashMap}: no boxed key, no map node</li>
+ *   <li>name and email share one encoded record per user ({@link CompactUserCodec}), email domains interned;
+ *       records live on the heap here, off-heap in {@link OffHeapUserRepository}</li>
+ *   <li>normalized email -> slot in an open-addressing table of slots, probed by the email hash kept per slot</li>
+ *   <li>id order is a sorted {@code long[]}, appended to on insert and re-sorted only when an id arrives out of order</li>
+ * </ul>
+ * One read-write lock guards everything: reads run in parallel, writes one at a time.
+ */
+public class CompactUserRepository implements UserRepository {
+
+    static final int STREAM_PAGE_SIZE = 1000;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NO_SLOT = 0;
+
+    private final UserIdAllocator idAllocator;
+    private final UserSearchIndex searchIndex;
+    private final CompactUserCodec codec = new CompactUserCodec();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // everything below is guarded by lock
+    private final UserRecordStore records;
+    private final LongIntHashMap slotsById = new LongIntHashMap(INITIAL_CAPACITY);
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private int[] emailHashes = new int[INITIAL_CAPACITY];
+    private int usedSlots;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    // slot + 1 per bucket, NO_SLOT when empty
+    private int[] emailTable = new int[INITIAL_CAPACITY << 1];
+    private int emailCount;
+
+    private long[] order = new long[INITIAL_CAPACITY];
+    private int orderSize;
+    // an id arrived below the last one, or was inserted again after a delete
+    private boolean orderDirty;
+
+    public CompactUserRepository() {
+        this(new SequentialIdAllocator());
+    }
+
+    public CompactUserRepository(UserIdAllocator idAllocator) {
+        this(idAllocator, UserSearchIndex.NONE);
+    }
+
+    public CompactUserRepository(UserIdAllocator idAllocator, UserSearchIndex searchIndex) {
+        this(idAllocator, new HeapUserRecords(), searchIndex);
+    }
+
+    CompactUserRepository(UserIdAllocator idAllocator, UserRecordStore records, UserSearchIndex searchIndex) {
+        this.idAllocator = idAllocator;
+        this.records = records;
+        this.searchIndex = searchIndex;
+    }
+
+    @Override
+    public User save(User user) {
+        return insert(idAllocator.next(), user);
+    }
+
+    @Override
+    public long reserveIds(int count) {
+        return idAllocator.reserve(count);
+    }
+
+    @Override
+    public User insert(long id, User user) {
+        lock.writeLock().lock();
+        try {
+            if (slotsById.get(id) != LongIntHashMap.MISSING) {
+                checkEmailFree(user);
+                throw new IllegalStateException("User id already in use: " + id);
+            }
+            return insertLocked(id, user, INITIAL_VERSION);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<UserBatchResult> insertAll(List<User> users) {
+        List<UserBatchResult> results = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            try {
+                results.add(UserBatchResult.success(i, UserBatchResult.Status.CREATED, insert(user.getId(), user)));
+            } catch (DuplicateEmailException ex) {
+                results.add(UserBatchResult.failure(i, UserBatchResult.Status.CONFLICT, ex.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public List<UserBatchResult> importAll(List<User> users) {
+        List<UserBatchResult> results = new ArrayList<>(users.size());
+        idAllocator.skipPast(users.stream().mapToLong(User::getId).max().orElse(0));
+        // the whole batch under one write lock, not one acquisition per user
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                if (slotsById.get(user.getId()) != LongIntHashMap.MISSING) {
+                    results.add(UserBatchResult.failure(
+                        i, UserBatchResult.Status.CONFLICT, "User id already in use: " + user.getId()));
+                    continue;
+                }
+                try {
+                    results.add(UserBatchResult.success(
+                        i, UserBatchResult.Status.CREATED, insertLocked(user.getId(), user, user.getVersion())));
+                } catch (DuplicateEmailException ex) {
+                    results.add(UserBatchResult.failure(i, UserBatchResult.Status.CONFLICT, ex.getMessage()));
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return results;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        lock.readLock().lock();
+        try {
+            int slot = slotsById.get(id);
+            return slot == LongIntHashMap.MISSING ? Optional.empty() : Optional.of(read(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            int slot = findEmailSlot(UserEmails.normalize(email));
+            return slot < 0 ? Optional.empty() : Optional.of(read(slot));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> findAll() {
+        return streamAll().toList();
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        readLockWithSortedOrder();
+        try {
+            int from = afterId == null ? 0 : firstOrderIndexAfter(afterId);
+            List<User> page = new ArrayList<>(Math.min(limit, orderSize - from));
+            for (int i = from; i < orderSize && page.size() < limit; i++) {
+                // deleted ids stay in the order array until the next sort, lookups skip them
+                int slot = slotsById.get(order[i]);
+                if (slot != LongIntHashMap.MISSING) {
+                    page.add(read(slot));
+                }
+            }
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        // keyset pages: the lock is never held while the caller consumes the stream
+        return Stream.iterate(
+                findPage(null, STREAM_PAGE_SIZE),
+                page -> !page.isEmpty(),
+                page -> page.size() < STREAM_PAGE_SIZE ? List.of() : findPage(page.getLast().getId(), STREAM_PAGE_SIZE)
+            )
+            .flatMap(List::stream);
+    }
+
+    @Override
+    public List<User> search(UserSearchQuery query, UserSearchKey after, int limit) {
+        return searchIndex.search(query, after, limit, this);
+    }
+
+    @Override
+    public Optional<User> update(Long id, User user, Long expectedVersion) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotsById.get(id);
+            if (slot == LongIntHashMap.MISSING) {
+                return Optional.empty();
+            }
+            if (expectedVersion != null && expectedVersion != versions[slot]) {
+                throw new UserVersionConflictException(id, expectedVersion, versions[slot]);
+            }
+            String currentEmail = codec.email(records.read(slot));
+            boolean emailChanged = !UserEmails.same(currentEmail, user.getEmail());
+            if (emailChanged) {
+                if (user.getEmail() != null && findEmailSlot(UserEmails.normalize(user.getEmail())) >= 0) {
+                    throw new DuplicateEmailException(user.getEmail());
+                }
+                if (currentEmail != null) {
+                    removeEmail(slot);
+                }
+            }
+            writeRecord(slot, user, emailChanged);
+            versions[slot]++;
+            User updated = read(slot);
+            searchIndex.put(updated);
+            return Optional.of(updated);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        lock.writeLock().lock();
+        try {
+            int slot = slotsById.remove(id);
+            if (slot == LongIntHashMap.MISSING) {
+                return false;
+            }
+            if (codec.email(records.read(slot)) != null) {
+                removeEmail(slot);
+            }
+            records.free(slot);
+            releaseSlot(slot);
+            searchIndex.remove(id);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return (int) readLocked(slotsById::size);
+    }
+
+    /**
+     * Heap held by the store, counted from its arrays: what {@code app.user-store.mode: compact} costs
+     * for the current users, including the spare capacity of every table.
+     */
+    public long footprintBytes() {
+        return readLocked(() -> slotsById.footprintBytes()
+            + (long) ids.length * (Long.BYTES * 2 + Integer.BYTES)
+            + records.heapBytes()
+            + (long) emailTable.length * Integer.BYTES
+            + (long) order.length * Long.BYTES
+            + (long) freeSlots.length * Integer.BYTES);
+    }
+
+    long readLocked(LongSupplier read) {
+        lock.readLock().lock();
+        try {
+            return read.getAsLong();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // caller holds the write lock and checked the id is free
+    private User insertLocked(long id, User user, long version) {
+        checkEmailFree(user);
+        int slot = allocateSlot();
+        ids[slot] = id;
+        versions[slot] = version;
+        writeRecord(slot, user, true);
+        slotsById.put(id, slot);
+        appendToOrder(id);
+        User inserted = read(slot);
+        searchIndex.put(inserted);
+        return inserted;
+    }
+
+    private void checkEmailFree(User user) {
+        if (user.getEmail() != null && findEmailSlot(UserEmails.normalize(user.getEmail())) >= 0) {
+            throw new DuplicateEmailException(user.getEmail());
+        }
+    }
+
+    private User read(int slot) {
+        byte[] record = records.read(slot);
+        return new User(ids[slot], codec.name(record), codec.email(record), versions[slot]);
+    }
+
+    private void writeRecord(int slot, User user, boolean indexEmail) {
+        records.write(slot, codec.encode(user.getName(), user.getEmail()));
+        if (indexEmail && user.getEmail() != null) {
+            addEmail(slot, UserEmails.normalize(user.getEmail()).hashCode());
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        if (usedSlots == ids.length) {
+            int capacity = ids.length << 1;
+            ids = Arrays.copyOf(ids, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            emailHashes = Arrays.copyOf(emailHashes, capacity);
+        }
+        return usedSlots++;
+    }
+
+    private void releaseSlot(int slot) {
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount << 1);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    // email table: open addressing over slots, the per-slot hash saves decoding a record on most probes
+
+    private int findEmailSlot(String normalizedEmail) {
+        int hash = normalizedEmail.hashCode();
+        int mask = emailTable.length - 1;
+        for (int bucket = spread(hash) & mask; emailTable[bucket] != NO_SLOT; bucket = (bucket + 1) & mask) {
+            int slot = emailTable[bucket] - 1;
+            if (emailHashes[slot] == hash && normalizedEmail.equals(UserEmails.normalize(codec.email(records.read(slot))))) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void addEmail(int slot, int hash) {
+        emailHashes[slot] = hash;
+        if (++emailCount > emailTable.length * 3 / 4) {
+            rehashEmails(emailTable.length << 1);
+        }
+        placeEmail(emailTable, slot);
+    }
+
+    private void removeEmail(int slot) {
+        int mask = emailTable.length - 1;
+        int hole = spread(emailHashes[slot]) & mask;
+        while (emailTable[hole] != slot + 1) {
+            hole = (hole + 1) & mask;
+        }
+        emailTable[hole] = NO_SLOT;
+        emailCount--;
+        // backward shift, as in LongIntHashMap
+        for (int next = (hole + 1) & mask; emailTable[next] != NO_SLOT; next = (next + 1) & mask) {
+            int home = spread(emailHashes[emailTable[next] - 1]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                emailTable[hole] = emailTable[next];
+                emailTable[next] = NO_SLOT;
+                hole = next;
+            }
+        }
+    }
+
+    private void rehashEmails(int capacity) {
+        int[] rehashed = new int[capacity];
+        for (int entry : emailTable) {
+            if (entry != NO_SLOT) {
+                placeEmail(rehashed, entry - 1);
+            }
+        }
+        emailTable = rehashed;
+    }
+
+    private void placeEmail(int[] table, int slot) {
+        int mask = table.length - 1;
+        int bucket = spread(emailHashes[slot]) & mask;
+        while (table[bucket] != NO_SLOT) {
+            bucket = (bucket + 1) & mask;
+        }
+        table[bucket] = slot + 1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // id order: sorted long[], deleted ids are dropped lazily on the next sort
+
+    private void appendToOrder(long id) {
+        if (orderSize == order.length) {
+            if (orderSize > slotsById.size() * 2L) {
+                // mostly deleted ids: compact instead of growing
+                orderDirty = true;
+                sortOrder();
+            }
+            if (orderSize == order.length) {
+                order = Arrays.copyOf(order, orderSize << 1);
+            }
+        }
+        if (orderSize > 0 && id <= order[orderSize - 1]) {
+            orderDirty = true;
+        }
+        order[orderSize++] = id;
+    }
+
+    private void readLockWithSortedOrder() {
+        lock.readLock().lock();
+        if (!orderDirty) {
+            return;
+        }
+        lock.readLock().unlock();
+        lock.writeLock().lock();
+        try {
+            sortOrder();
+            // downgrade: no writer can dirty the order between the sort and the read
+            lock.readLock().lock();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // keeps live ids only, sorted and unique
+    private void sortOrder() {
+        if (!orderDirty) {
+            return;
+        }
+        int live = 0;
+        for (int i = 0; i < orderSize; i++) {
+            if (slotsById.get(order[i]) != LongIntHashMap.MISSING) {
+                order[live++] = order[i];
+            }
+        }
+        Arrays.sort(order, 0, live);
+        int unique = 0;
+        for (int i = 0; i < live; i++) {
+            if (unique == 0 || order[unique - 1] != order[i]) {
+                order[unique++] = order[i];
+            }
+        }
+        orderSize = unique;
+        orderDirty = false;
+    }
+
+    private int firstOrderIndexAfter(long afterId) {
+        int index = Arrays.binarySearch(order, 0, orderSize, afterId);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+}
@@ -0,0 +1,47 @@
+package com.trevizan.javacoreplayground.repository;
+
+import java.util.Arrays;
+
+/**
+ * One byte array per user, the records of {@code app.user-store.mode: compact}.
+ */
+final class HeapUserRecords implements UserRecordStore {
+
+    private byte[][] records = new byte[1024][];
+    private long recordBytes;
+
+    @Override
+    public void write(int slot, byte[] record) {
+        if (slot >= records.length) {
+            records = Arrays.copyOf(records, Math.max(records.length << 1, slot + 1));
+        }
+        free(slot);
+        records[slot] = record;
+        recordBytes += arrayBytes(record);
+    }
+
+    @Override
+    public byte[] read(int slot) {
+        return records[slot];
+    }
+
+    @Override
+    public void free(int slot) {
+        if (records[slot] != null) {
+            recordBytes -= arrayBytes(records[slot]);
+            records[slot] = null;
+        }
+    }
+
+    @Override
+    public long heapBytes() {
+        // a compressed reference per slot, plus the arrays themselves
+        return (long) records.length * Integer.BYTES + recordBytes;
+    }
+
+    // 16 byte array header, content padded to 8 bytes
+    private static long arrayBytes(byte[] array) {
+        return (16L + array.length + 7) & ~7L;
+    }
+
+}
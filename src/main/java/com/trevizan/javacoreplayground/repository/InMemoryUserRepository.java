@@ -0,0 +1,241 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.exception.DuplicateEmailException;
+import com.trevizan.javacoreplayground.exception.UserVersionConflictException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserSearchKey;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import jakarta.annotation.PostConstruct;
+
+public class InMemoryUserRepository implements UserRepository {
+
+    // id -> versions of the user, kept in id order as well for keyset pagination and ordered scans
+    private final VersionedUserMap store;
+    // secondary index: normalized email -> id, also the uniqueness guard (putIfAbsent is the claim)
+    private final Map<String, Long> emailIndex;
+    private final UserIdAllocator idAllocator;
+    private final UserJournal journal;
+    private final UserSearchIndex searchIndex;
+
+    public InMemoryUserRepository() {
+        this(new SequentialIdAllocator(), UserJournal.NONE);
+    }
+
+    public InMemoryUserRepository(UserIdAllocator idAllocator, UserJournal journal) {
+        this(idAllocator, journal, UserSearchIndex.NONE);
+    }
+
+    public InMemoryUserRepository(UserIdAllocator idAllocator, UserJournal journal, UserSearchIndex searchIndex) {
+        this(new VersionedUserMap(), new ConcurrentHashMap<>(), idAllocator, journal, searchIndex);
+    }
+
+    /**
+     * A shard of {@link ShardedUserRepository}: the email index is shared by every shard, so emails stay
+     * unique across them, and {@link #findByEmail} only answers for the users of this shard.
+     */
+    InMemoryUserRepository(
+        VersionedUserMap store,
+        Map<String, Long> emailIndex,
+        UserIdAllocator idAllocator,
+        UserJournal journal,
+        UserSearchIndex searchIndex
+    ) {
+        this.store = store;
+        this.emailIndex = emailIndex;
+        this.idAllocator = idAllocator;
+        this.journal = journal;
+        this.searchIndex = searchIndex;
+    }
+
+    /**
+     * Reloads the journaled users before the repository is used. A no-op in memory mode.
+     */
+    @PostConstruct
+    public void recover() {
+        // past deleted ids too: a reused id would be hidden by the delete on the next replay
+        idAllocator.skipPast(journal.replay(this::restore));
+    }
+
+    @Override
+    public User save(User user) {
+        return insert(idAllocator.next(), user);
+    }
+
+    @Override
+    public long reserveIds(int count) {
+        return idAllocator.reserve(count);
+    }
+
+    @Override
+    public User insert(long id, User user) {
+        boolean emailClaimed = claimEmail(user.getEmail(), id);
+
+        User userWithId = new User(id, user.getName(), user.getEmail(), INITIAL_VERSION);
+        if (!store.insert(userWithId)) {
+            if (emailClaimed) {
+                releaseEmail(user.getEmail(), id);
+            }
+            throw new IllegalStateException("User id already in use: " + id);
+        }
+        journal.recordSave(userWithId);
+        searchIndex.put(userWithId);
+        return userWithId;
+    }
+
+    @Override
+    public List<UserBatchResult> insertAll(List<User> users) {
+        List<UserBatchResult> results = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            try {
+                results.add(UserBatchResult.success(i, UserBatchResult.Status.CREATED, insert(user.getId(), user)));
+            } catch (DuplicateEmailException ex) {
+                results.add(UserBatchResult.failure(i, UserBatchResult.Status.CONFLICT, ex.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public List<UserBatchResult> importAll(List<User> users) {
+        // once per batch instead of one allocation per user, and before the inserts: save() never hands out these ids
+        idAllocator.skipPast(users.stream().mapToLong(User::getId).max().orElse(0));
+        List<UserBatchResult> results = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            try {
+                boolean emailClaimed = claimEmail(user.getEmail(), user.getId());
+                if (!store.insert(user)) {
+                    if (emailClaimed) {
+                        releaseEmail(user.getEmail(), user.getId());
+                    }
+                    results.add(UserBatchResult.failure(
+                        i, UserBatchResult.Status.CONFLICT, "User id already in use: " + user.getId()));
+                    continue;
+                }
+            } catch (DuplicateEmailException ex) {
+                results.add(UserBatchResult.failure(i, UserBatchResult.Status.CONFLICT, ex.getMessage()));
+                continue;
+            }
+            journal.recordSave(user);
+            searchIndex.put(user);
+            results.add(UserBatchResult.success(i, UserBatchResult.Status.CREATED, user));
+        }
+        return results;
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return Optional.ofNullable(store.get(id));
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(emailIndex.get(UserEmails.normalize(email)))
+            .map(store::get);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return streamAll().toList();
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        return store.findPage(afterId, limit);
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        // lazy and weakly consistent: ids deleted while streaming are skipped
+        return store.streamAll();
+    }
+
+    /**
+     * Point-in-time view without a copy: writes made after this call stay invisible to it.
+     */
+    @Override
+    public UserSnapshot snapshot() {
+        return store.snapshot();
+    }
+
+    @Override
+    public List<User> search(UserSearchQuery query, UserSearchKey after, int limit) {
+        return searchIndex.search(query, after, limit, this);
+    }
+
+    @Override
+    public Optional<User> update(Long id, User user, Long expectedVersion) {
+        // single pass under the lock of this key only: version check, email move and replace
+        // are atomic with respect to other writers of the same id, and a concurrent delete
+        // can no longer be undone by a late put
+        User updatedUser = store.update(id, currentUser -> {
+            if (expectedVersion != null && expectedVersion != currentUser.getVersion()) {
+                throw new UserVersionConflictException(id, expectedVersion, currentUser.getVersion());
+            }
+            if (!UserEmails.same(currentUser.getEmail(), user.getEmail())) {
+                claimEmail(user.getEmail(), id);
+                releaseEmail(currentUser.getEmail(), id);
+            }
+            return new User(id, user.getName(), user.getEmail(), currentUser.getVersion() + 1);
+        });
+
+        if (updatedUser == null) {
+            return Optional.empty();
+        }
+        // outside the key lock: no I/O while other writers of this bin wait
+        journal.recordSave(updatedUser);
+        searchIndex.put(updatedUser);
+        return Optional.of(updatedUser);
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        User removedUser = store.remove(id);
+        if (removedUser == null) {
+            return false;
+        }
+        releaseEmail(removedUser.getEmail(), id);
+        journal.recordDelete(id, removedUser.getVersion());
+        searchIndex.remove(id);
+        return true;
+    }
+
+    private void restore(User user) {
+        claimEmail(user.getEmail(), user.getId());
+        store.insert(user);
+        searchIndex.put(user);
+    }
+
+    // returns true only when this call created the claim (false if the id already owned it)
+    private boolean claimEmail(String email, long id) {
+        if (email == null) {
+            return false;
+        }
+        Long ownerId = emailIndex.putIfAbsent(UserEmails.normalize(email), id);
+        if (ownerId != null && ownerId != id) {
+            throw new DuplicateEmailException(email);
+        }
+        return ownerId == null;
+    }
+
+    private void releaseEmail(String email, long id) {
+        if (email != null) {
+            // conditional remove: never drop a claim that another user made in the meantime
+            emailIndex.remove(UserEmails.normalize(email), id);
+        }
+    }
+
+}
@@ -0,0 +1,348 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.exception.DuplicateEmailException;
+import com.trevizan.javacoreplayground.exception.UserVersionConflictException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserBatchResult.Status;
+import com.trevizan.javacoreplayground.model.UserSearchKey;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * H2/JPA store mode ({@code app.user-store.mode: jpa}).
+ * <ul>
+ *   <li>ids come from a pooled sequence, so inserts need no id round trip and stay JDBC-batchable</li>
+ *   <li>{@link #insertAll(List)} persists a whole batch in one transaction, flushing every {@code batchSize}</li>
+ *   <li>{@link #findById(Long)} reads through a bounded cache, refreshed only after commit</li>
+ *   <li>{@link #search} answers from the in-memory search index, filled from the table on startup and
+ *       updated after commit, like the cache</li>
+ * </ul>
+ */
+public class JpaUserRepository implements UserRepository {
+
+    static final int STREAM_PAGE_SIZE = 1000;
+    private static final int EMAIL_LOOKUP_CHUNK = 1000;
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final UserIdAllocator idAllocator;
+    private final UserReadCache cache;
+    private final UserSearchIndex searchIndex;
+    private final int batchSize;
+
+    public JpaUserRepository(
+        EntityManager entityManager,
+        PlatformTransactionManager transactionManager,
+        UserIdAllocator idAllocator,
+        UserSearchIndex searchIndex,
+        int cacheSize,
+        int batchSize
+    ) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idAllocator = idAllocator;
+        this.cache = new UserReadCache(cacheSize);
+        this.searchIndex = searchIndex;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Indexes the users already in the table before the repository is used.
+     */
+    @PostConstruct
+    public void buildSearchIndex() {
+        if (searchIndex == UserSearchIndex.NONE) {
+            return;
+        }
+        // @Transactional does not apply to an init callback: one read-only transaction for the whole scan
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(status -> {
+            try (Stream<User> users = streamAll()) {
+                users.forEach(searchIndex::put);
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public User save(User user) {
+        return insert(idAllocator.next(), user);
+    }
+
+    @Override
+    public long reserveIds(int count) {
+        return idAllocator.reserve(count);
+    }
+
+    @Override
+    @Transactional
+    public User insert(long id, User user) {
+        return persist(new User(id, user.getName(), user.getEmail(), INITIAL_VERSION));
+    }
+
+    @Override
+    public List<UserBatchResult> insertAll(List<User> users) {
+        return insertAll(users, false);
+    }
+
+    @Override
+    public List<UserBatchResult> importAll(List<User> users) {
+        // one sequence move per batch; the inserts then go through the same JDBC batching as insertAll
+        idAllocator.skipPast(users.stream().mapToLong(User::getId).max().orElse(0));
+        return insertAll(users, true);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        UserReadCache.Entry cached = cache.get(id);
+        if (cached != null) {
+            return cached.deleted() ? Optional.empty() : Optional.of(cached.user());
+        }
+
+        UserEntity entity = entityManager.find(UserEntity.class, id);
+        if (entity == null) {
+            return Optional.empty();
+        }
+        User user = entity.toUser();
+        cache.put(user);
+        return Optional.of(user);
+    }
+
+    // getResultList, not getResultStream: outside a transaction the connection is released after the query,
+    // and a lazily read cursor is already closed by then
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        return entityManager
+            .createQuery("SELECT u FROM UserEntity u WHERE u.emailKey = :emailKey", UserEntity.class)
+            .setParameter("emailKey", UserEmails.normalize(email))
+            .setMaxResults(1)
+            .getResultList()
+            .stream()
+            .findFirst()
+            .map(UserEntity::toUser);
+    }
+
+    @Override
+    public List<User> findAll() {
+        return entityManager
+            .createQuery("SELECT u FROM UserEntity u ORDER BY u.id", UserEntity.class)
+            .getResultList()
+            .stream()
+            .map(UserEntity::toUser)
+            .toList();
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        var query = afterId == null
+            ? entityManager.createQuery("SELECT u FROM UserEntity u ORDER BY u.id", UserEntity.class)
+            : entityManager.createQuery("SELECT u FROM UserEntity u WHERE u.id > :afterId ORDER BY u.id", UserEntity.class)
+                .setParameter("afterId", afterId);
+        return query
+            .setMaxResults(limit)
+            .getResultList()
+            .stream()
+            .map(UserEntity::toUser)
+            .toList();
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        // keyset pages: no cursor or transaction stays open while the caller consumes the stream
+        return Stream.iterate(
+                findPage(null, STREAM_PAGE_SIZE),
+                page -> !page.isEmpty(),
+                page -> page.size() < STREAM_PAGE_SIZE ? List.of() : findPage(page.getLast().getId(), STREAM_PAGE_SIZE)
+            )
+            .flatMap(List::stream);
+    }
+
+    @Override
+    public List<User> search(UserSearchQuery query, UserSearchKey after, int limit) {
+        return searchIndex.search(query, after, limit, this);
+    }
+
+    @Override
+    @Transactional
+    public Optional<User> update(Long id, User user) {
+        return update(id, user, null);
+    }
+
+    @Override
+    @Transactional
+    public Optional<User> update(Long id, User user, Long expectedVersion) {
+        // row lock: writers of one id queue in the database, like the per-key lock of the memory store
+        UserEntity entity = entityManager.find(UserEntity.class, id, LockModeType.PESSIMISTIC_WRITE);
+        if (entity == null) {
+            return Optional.empty();
+        }
+        if (expectedVersion != null && expectedVersion != entity.getVersion()) {
+            throw new UserVersionConflictException(id, expectedVersion, entity.getVersion());
+        }
+        if (!UserEmails.same(entity.getEmail(), user.getEmail())
+            && user.getEmail() != null
+            && !findTakenEmailKeys(List.of(user)).isEmpty()) {
+            throw new DuplicateEmailException(user.getEmail());
+        }
+
+        entity.apply(user);
+        entity.incrementVersion();
+        flush(user.getEmail());
+
+        User updatedUser = entity.toUser();
+        afterCommit(() -> {
+            cache.put(updatedUser);
+            searchIndex.put(updatedUser);
+        });
+        return Optional.of(updatedUser);
+    }
+
+    @Override
+    @Transactional
+    public boolean deleteById(Long id) {
+        int deleted = entityManager.createQuery("DELETE FROM UserEntity u WHERE u.id = :id")
+            .setParameter("id", id)
+            .executeUpdate();
+        if (deleted == 0) {
+            return false;
+        }
+        afterCommit(() -> {
+            cache.markDeleted(id);
+            searchIndex.remove(id);
+        });
+        return true;
+    }
+
+    private List<UserBatchResult> insertAll(List<User> users, boolean keepVersions) {
+        try {
+            return transactionTemplate.execute(status -> insertBatch(users, keepVersions));
+        } catch (ConstraintViolationException | DataIntegrityViolationException ex) {
+            // another writer took one of the emails (or, on import, an id) between our check and the flush
+            return insertOneByOne(users, keepVersions);
+        }
+    }
+
+    private User persist(User storedUser) {
+        if (storedUser.getEmail() != null && !findTakenEmailKeys(List.of(storedUser)).isEmpty()) {
+            throw new DuplicateEmailException(storedUser.getEmail());
+        }
+
+        entityManager.persist(new UserEntity(storedUser));
+        flush(storedUser.getEmail());
+        afterCommit(() -> searchIndex.put(storedUser));
+        return storedUser;
+    }
+
+    private List<UserBatchResult> insertBatch(List<User> users, boolean keepVersions) {
+        Set<String> takenEmailKeys = findTakenEmailKeys(users);
+        List<UserBatchResult> results = new ArrayList<>(users.size());
+        int pending = 0;
+
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            // also catches duplicates inside the batch itself
+            if (user.getEmail() != null && !takenEmailKeys.add(UserEmails.normalize(user.getEmail()))) {
+                results.add(UserBatchResult.failure(i, Status.CONFLICT, new DuplicateEmailException(user.getEmail()).getMessage()));
+                continue;
+            }
+
+            User storedUser = keepVersions
+                ? user
+                : new User(user.getId(), user.getName(), user.getEmail(), INITIAL_VERSION);
+            entityManager.persist(new UserEntity(storedUser));
+            results.add(UserBatchResult.success(i, Status.CREATED, storedUser));
+
+            // one JDBC batch per flush; clearing keeps the persistence context small
+            if (++pending % batchSize == 0) {
+                entityManager.flush();
+                entityManager.clear();
+            }
+        }
+
+        entityManager.flush();
+        entityManager.clear();
+        afterCommit(() -> results.stream()
+            .filter(result -> result.status() == Status.CREATED)
+            .forEach(result -> searchIndex.put(result.user())));
+        return results;
+    }
+
+    private List<UserBatchResult> insertOneByOne(List<User> users, boolean keepVersions) {
+        List<UserBatchResult> results = new ArrayList<>(users.size());
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            try {
+                User storedUser = transactionTemplate.execute(status -> keepVersions
+                    ? persist(user)
+                    : insert(user.getId(), user));
+                results.add(UserBatchResult.success(i, Status.CREATED, storedUser));
+            } catch (DuplicateEmailException | DataIntegrityViolationException ex) {
+                results.add(UserBatchResult.failure(i, Status.CONFLICT, ex.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private Set<String> findTakenEmailKeys(List<User> users) {
+        List<String> emailKeys = users.stream()
+            .map(User::getEmail)
+            .filter(Objects::nonNull)
+            .map(UserEmails::normalize)
+            .distinct()
+            .toList();
+
+        Set<String> taken = new HashSet<>();
+        for (int from = 0; from < emailKeys.size(); from += EMAIL_LOOKUP_CHUNK) {
+            List<String> chunk = emailKeys.subList(from, Math.min(from + EMAIL_LOOKUP_CHUNK, emailKeys.size()));
+            taken.addAll(entityManager
+                .createQuery("SELECT u.emailKey FROM UserEntity u WHERE u.emailKey IN :emailKeys", String.class)
+                .setParameter("emailKeys", chunk)
+                .getResultList());
+        }
+        return taken;
+    }
+
+    private void flush(String email) {
+        try {
+            entityManager.flush();
+        } catch (ConstraintViolationException ex) {
+            // the unique email index is the real guard, the lookup before only gives the common case a clean error
+            throw new DuplicateEmailException(email);
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+}
@@ -0,0 +1,139 @@
+package com.trevizan.javacoreplayground.repository;
+
+import java.util.Arrays;
+
+/*
+ * showcase:
+ * - long -> int map in two parallel primitive arrays, open addressing with linear probing
+ * - no boxed key and no entry node: 12 bytes per slot, 16 to 32 bytes per entry between resizes
+ * - a removal shifts the following entries back instead of leaving a tombstone, so probes stay short under churn
+ *
+ * trade-off:
+ * - not thread-safe: the owner guards it with its own lock
+ * - values must be >= 0, MISSING marks a free slot
+ * - a resize rehashes the whole table in one go, a pause proportional to the size
+ */
+final class LongIntHashMap {
+
+    static final int MISSING = -1;
+
+    private static final float MAX_LOAD = 0.75f;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int resizeAt;
+
+    LongIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    int get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            int value = values[slot];
+            if (value == MISSING || keys[slot] == key) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Returns the previous value, or {@link #MISSING} when the key was absent.
+     */
+    int put(long key, int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        int slot = slot(key);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                int previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > resizeAt) {
+            allocateAndRehash(values.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * Returns the removed value, or {@link #MISSING} when the key was absent.
+     */
+    int remove(long key) {
+        int slot = slot(key);
+        while (values[slot] != MISSING) {
+            if (keys[slot] == key) {
+                int removed = values[slot];
+                shiftBack(slot);
+                size--;
+                return removed;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long footprintBytes() {
+        return (long) values.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    // backward-shift deletion: pull later entries of the probe run into the hole when their home allows it
+    private void shiftBack(int hole) {
+        values[hole] = MISSING;
+        for (int next = (hole + 1) & mask; values[next] != MISSING; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                values[next] = MISSING;
+                hole = next;
+            }
+        }
+    }
+
+    private void allocateAndRehash(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != MISSING) {
+                int slot = slot(oldKeys[i]);
+                while (values[slot] != MISSING) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * MAX_LOAD);
+    }
+
+    private int slot(long key) {
+        // fibonacci hashing: sequential ids spread over the whole table instead of filling one run
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int needed = (int) Math.ceil(Math.max(expectedSize, 8) / MAX_LOAD);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+}
@@ -0,0 +1,358 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Append-only journal on memory-mapped segment files.
+ * <ul>
+ *   <li>appends are a copy into the mapped buffer under a short lock, no system call per write</li>
+ *   <li>{@link SyncMode#GROUP}: a writer returns once its record is forced to disk; whoever takes the
+ *       force lock forces everything appended so far, so concurrent writers share one force</li>
+ *   <li>{@link SyncMode#ASYNC}: a background thread forces every flush interval (bounded loss on crash)</li>
+ *   <li>{@code snapshot-N} holds every user written to segments below N, after a header with the highest id
+ *       recorded so far; older files are deleted</li>
+ * </ul>
+ */
+public final class MappedUserJournal implements UserJournal {
+
+    public enum SyncMode {
+        GROUP,
+        ASYNC
+    }
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".wal";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+    private static final int STREAM_BUFFER_BYTES = 1 << 16;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final SyncMode syncMode;
+    private final ScheduledExecutorService flusher;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final ReentrantLock forceLock = new ReentrantLock();
+    private final ReentrantLock compactLock = new ReentrantLock();
+
+    // guarded by appendLock
+    private long segmentIndex;
+    private FileChannel segmentChannel;
+    // written under appendLock, read by the force path
+    private volatile MappedByteBuffer segment;
+    // logical end of the journal: segmentIndex * segmentSize + position in segment
+    private volatile long appendedPosition;
+    // guarded by forceLock
+    private long forcedPosition;
+    // highest id ever recorded, deleted ones included: written to every snapshot, so compaction keeps it
+    private final AtomicLong highWaterId = new AtomicLong();
+
+    private MappedUserJournal(Path directory, int segmentSize, SyncMode syncMode, Duration flushInterval)
+        throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncMode = syncMode;
+
+        Files.createDirectories(directory);
+        // never append to a segment left by a previous run: its tail may be torn
+        long nextIndex = Math.max(
+            lastIndex(SEGMENT_PREFIX, SEGMENT_SUFFIX) + 1,
+            lastIndex(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)
+        );
+        openSegment(Math.max(nextIndex, 1));
+
+        if (syncMode == SyncMode.ASYNC) {
+            flusher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("user-journal-flusher").daemon().factory()
+            );
+            long intervalMillis = flushInterval.toMillis();
+            flusher.scheduleWithFixedDelay(this::force, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+    }
+
+    public static MappedUserJournal open(Path directory, int segmentSize, SyncMode syncMode, Duration flushInterval) {
+        try {
+            return new MappedUserJournal(directory, segmentSize, syncMode, flushInterval);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not open user journal in " + directory, ex);
+        }
+    }
+
+    @Override
+    public void recordSave(User user) {
+        highWaterId.accumulateAndGet(user.getId(), Math::max);
+        awaitDurable(append(UserRecordCodec.encodeUpsert(user)));
+    }
+
+    @Override
+    public void recordDelete(long id, long version) {
+        highWaterId.accumulateAndGet(id, Math::max);
+        awaitDurable(append(UserRecordCodec.encodeDelete(id, version)));
+    }
+
+    @Override
+    public long replay(Consumer<User> consumer) {
+        Map<Long, User> users = new HashMap<>();
+        // id -> last deleted version: hides the upserts it removed, even those appended after it
+        Map<Long, Long> deletedVersions = new HashMap<>();
+
+        try {
+            long snapshotIndex = lastIndex(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+            if (snapshotIndex > 0) {
+                readSnapshot(fileName(SNAPSHOT_PREFIX, snapshotIndex, SNAPSHOT_SUFFIX), users);
+            }
+            for (long index : indexes(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                if (index >= snapshotIndex && index < segmentIndex) {
+                    readSegment(fileName(SEGMENT_PREFIX, index, SEGMENT_SUFFIX), users, deletedVersions);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not replay user journal in " + directory, ex);
+        }
+
+        users.values().forEach(consumer);
+        return highWaterId.get();
+    }
+
+    @Override
+    public void compact(Supplier<Stream<User>> currentUsers) {
+        if (!compactLock.tryLock()) {
+            return;
+        }
+        try {
+            long coveredIndex;
+            appendLock.lock();
+            try {
+                rollSegment();
+                coveredIndex = segmentIndex;
+            } finally {
+                appendLock.unlock();
+            }
+
+            // every record in segments below coveredIndex was applied to the store before it was
+            // appended, so the scan below sees it; newer writes may show up too, replay tolerates that
+            writeSnapshot(coveredIndex, currentUsers);
+            deleteOlderThan(coveredIndex);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not compact user journal in " + directory, ex);
+        } finally {
+            compactLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+        }
+        appendLock.lock();
+        try {
+            segment.force();
+            segmentChannel.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not close user journal in " + directory, ex);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private long append(byte[] payload) {
+        int recordSize = UserRecordCodec.recordSize(payload);
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("Journal record of " + recordSize + " bytes does not fit a segment.");
+        }
+
+        appendLock.lock();
+        try {
+            if (segment.remaining() < recordSize) {
+                rollSegment();
+            }
+            UserRecordCodec.write(segment, payload);
+            appendedPosition = segmentIndex * segmentSize + segment.position();
+            return appendedPosition;
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Could not append to user journal in " + directory, ex);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void awaitDurable(long position) {
+        if (syncMode == SyncMode.ASYNC) {
+            return;
+        }
+        forceLock.lock();
+        try {
+            // group commit: a force done by another writer while we waited may already cover us
+            if (forcedPosition < position) {
+                forceLocked();
+            }
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    private void force() {
+        forceLock.lock();
+        try {
+            forceLocked();
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    private void forceLocked() {
+        long target = appendedPosition;
+        segment.force();
+        forcedPosition = Math.max(forcedPosition, target);
+    }
+
+    // caller holds appendLock
+    private void rollSegment() throws IOException {
+        // the old segment is forced before switching, so forcedPosition never points into an unforced segment
+        force();
+        segmentChannel.close();
+        openSegment(segmentIndex + 1);
+    }
+
+    private void openSegment(long index) throws IOException {
+        Path path = directory.resolve(fileName(SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        FileChannel channel = FileChannel.open(
+            path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE
+        );
+        // mapping extends the file with zeros, which read as the end marker
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+
+        segmentIndex = index;
+        segmentChannel = channel;
+        segment = buffer;
+        appendedPosition = index * segmentSize;
+    }
+
+    private void readSegment(String fileName, Map<Long, User> users, Map<Long, Long> deletedVersions)
+        throws IOException {
+        try (FileChannel channel = FileChannel.open(directory.resolve(fileName), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            UserRecordCodec.Entry entry;
+            while ((entry = UserRecordCodec.read(buffer)) != null) {
+                highWaterId.accumulateAndGet(entry.id(), Math::max);
+                apply(entry, users, deletedVersions);
+            }
+        }
+    }
+
+    // appends are not ordered per key, versions are: an update appended after the delete that removed it
+    // carries a version the delete covers
+    private static void apply(UserRecordCodec.Entry entry, Map<Long, User> users, Map<Long, Long> deletedVersions) {
+        if (entry.type() == UserRecordCodec.DELETE) {
+            users.computeIfPresent(entry.id(),
+                (id, current) -> current.getVersion() <= entry.version() ? null : current);
+            deletedVersions.merge(entry.id(), entry.version(), Math::max);
+            return;
+        }
+        Long deletedVersion = deletedVersions.get(entry.id());
+        if (deletedVersion != null && entry.version() <= deletedVersion) {
+            return;
+        }
+        users.merge(entry.id(), entry.user(),
+            (current, candidate) -> candidate.getVersion() > current.getVersion() ? candidate : current);
+    }
+
+    private void readSnapshot(String fileName, Map<Long, User> users) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+            Files.newInputStream(directory.resolve(fileName)), STREAM_BUFFER_BYTES))) {
+            highWaterId.accumulateAndGet(input.readLong(), Math::max);
+            UserRecordCodec.Entry entry;
+            while ((entry = UserRecordCodec.read(input)) != null) {
+                users.put(entry.id(), entry.user());
+            }
+        }
+    }
+
+    private void writeSnapshot(long index, Supplier<Stream<User>> currentUsers) throws IOException {
+        Path snapshot = directory.resolve(fileName(SNAPSHOT_PREFIX, index, SNAPSHOT_SUFFIX));
+        Path temporary = directory.resolve(snapshot.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+                 Channels.newOutputStream(channel), STREAM_BUFFER_BYTES));
+             Stream<User> users = currentUsers.get()) {
+            // read after the roll: covers every id recorded in the segments this snapshot replaces
+            output.writeLong(highWaterId.get());
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                UserRecordCodec.write(output, UserRecordCodec.encodeUpsert(iterator.next()));
+            }
+            UserRecordCodec.writeEnd(output);
+            output.flush();
+            channel.force(true);
+        }
+
+        // readers only ever see a complete snapshot
+        Files.move(temporary, snapshot, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void deleteOlderThan(long index) throws IOException {
+        for (long candidate : indexes(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (candidate < index) {
+                Files.deleteIfExists(directory.resolve(fileName(SEGMENT_PREFIX, candidate, SEGMENT_SUFFIX)));
+            }
+        }
+        for (long candidate : indexes(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (candidate < index) {
+                Files.deleteIfExists(directory.resolve(fileName(SNAPSHOT_PREFIX, candidate, SNAPSHOT_SUFFIX)));
+            }
+        }
+    }
+
+    private long lastIndex(String prefix, String suffix) throws IOException {
+        List<Long> indexes = indexes(prefix, suffix);
+        return indexes.isEmpty() ? 0 : indexes.getLast();
+    }
+
+    private List<Long> indexes(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                .map(name -> Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())))
+                .sorted()
+                .toList();
+        }
+    }
+
+    private static String fileName(String prefix, long index, String suffix) {
+        return prefix + String.format("%020d", index) + suffix;
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.trevizan.javacoreplayground.repository;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * showcase:
+ * - records appended to direct ByteBuffer slabs, slot -> (slab, position) packed in one long
+ * - the heap keeps two primitive arrays (offsets, lengths): nothing per user for the GC to trace or copy
+ * - a rewrite or delete leaves its old bytes behind; once garbage outweighs live data,
+ *   the live records are copied into fresh slabs and the old ones are dropped
+ *
+ * trade-off:
+ * - every read copies the record back into a short-lived byte array before decoding
+ * - compaction runs inside a write and needs room for a second copy of the live data
+ * - direct memory is returned when the GC collects a dropped slab, not when it is dropped
+ *   (ByteBuffer over MemorySegment/Arena: the FFM API is still a preview in Java 21)
+ */
+final class OffHeapUserRecords implements UserRecordStore {
+
+    private final int slabSize;
+    private final int slabShift;
+    private final long slabMask;
+
+    private List<ByteBuffer> slabs = new ArrayList<>();
+    private long[] offsets = new long[1024];
+    // 0 for a free slot: a record always holds at least its flags byte
+    private int[] lengths = new int[1024];
+    // where the next record goes, in the same (slab, position) encoding as offsets
+    private long appendOffset;
+    private long liveBytes;
+
+    OffHeapUserRecords(int slabSize) {
+        if (Integer.bitCount(slabSize) != 1) {
+            throw new IllegalArgumentException("Slab size must be a power of two: " + slabSize);
+        }
+        this.slabSize = slabSize;
+        this.slabShift = Integer.numberOfTrailingZeros(slabSize);
+        this.slabMask = slabSize - 1;
+    }
+
+    @Override
+    public void write(int slot, byte[] record) {
+        if (record.length > slabSize) {
+            throw new IllegalArgumentException("User record of " + record.length + " bytes exceeds the slab size");
+        }
+        if (slot >= lengths.length) {
+            int capacity = Math.max(lengths.length << 1, slot + 1);
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        free(slot);
+        if (appendOffset - liveBytes > Math.max(liveBytes, slabSize)) {
+            compact();
+        }
+        long offset = allocate(record.length);
+        slab(offset).put(position(offset), record);
+        offsets[slot] = offset;
+        lengths[slot] = record.length;
+        liveBytes += record.length;
+    }
+
+    @Override
+    public byte[] read(int slot) {
+        byte[] record = new byte[lengths[slot]];
+        // absolute get: leaves the buffer position alone, so readers can share a slab
+        slab(offsets[slot]).get(position(offsets[slot]), record);
+        return record;
+    }
+
+    @Override
+    public void free(int slot) {
+        liveBytes -= lengths[slot];
+        lengths[slot] = 0;
+    }
+
+    @Override
+    public long heapBytes() {
+        return (long) offsets.length * (Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Direct memory reserved by the slabs.
+     */
+    long offHeapBytes() {
+        return (long) slabs.size() * slabSize;
+    }
+
+    /**
+     * Bytes of the current records; the rest of {@link #offHeapBytes()} is garbage or not written yet.
+     */
+    long liveBytes() {
+        return liveBytes;
+    }
+
+    private long allocate(int length) {
+        int slab = (int) (appendOffset >>> slabShift);
+        int position = (int) (appendOffset & slabMask);
+        if (position + length > slabSize) {
+            // records never straddle two slabs
+            slab++;
+            position = 0;
+        }
+        if (slab == slabs.size()) {
+            slabs.add(ByteBuffer.allocateDirect(slabSize));
+        }
+        long offset = ((long) slab << slabShift) + position;
+        appendOffset = offset + length;
+        return offset;
+    }
+
+    private void compact() {
+        List<ByteBuffer> oldSlabs = slabs;
+        slabs = new ArrayList<>();
+        appendOffset = 0;
+        byte[] buffer = new byte[0];
+        for (int slot = 0; slot < lengths.length; slot++) {
+            int length = lengths[slot];
+            if (length == 0) {
+                continue;
+            }
+            if (buffer.length < length) {
+                buffer = new byte[Math.max(length, 256)];
+            }
+            long oldOffset = offsets[slot];
+            oldSlabs.get((int) (oldOffset >>> slabShift)).get(position(oldOffset), buffer, 0, length);
+            long offset = allocate(length);
+            slab(offset).put(position(offset), buffer, 0, length);
+            offsets[slot] = offset;
+        }
+    }
+
+    private ByteBuffer slab(long offset) {
+        return slabs.get((int) (offset >>> slabShift));
+    }
+
+    private int position(long offset) {
+        return (int) (offset & slabMask);
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.trevizan.javacoreplayground.repository;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Off-heap store mode ({@code app.user-store.mode: off-heap}): the compact store with its records in direct
+ * memory slabs ({@link OffHeapUserRecords}), so the heap holds no object per user at all.
+ * <ul>
+ *   <li>GC work stays flat as the dataset grows: the heap part is a handful of primitive arrays</li>
+ *   <li>{@link com.trevizan.javacoreplayground.model.User} objects are materialized per read, as in compact mode</li>
+ *   <li>{@code app.user-store.off-heap{state=reserved|live}} reports the direct memory in use</li>
+ * </ul>
+ */
+public class OffHeapUserRepository extends CompactUserRepository implements MeterBinder {
+
+    private final OffHeapUserRecords records;
+
+    public OffHeapUserRepository(UserIdAllocator idAllocator, int slabSize) {
+        this(idAllocator, slabSize, UserSearchIndex.NONE);
+    }
+
+    public OffHeapUserRepository(UserIdAllocator idAllocator, int slabSize, UserSearchIndex searchIndex) {
+        this(idAllocator, new OffHeapUserRecords(slabSize), searchIndex);
+    }
+
+    private OffHeapUserRepository(UserIdAllocator idAllocator, OffHeapUserRecords records, UserSearchIndex searchIndex) {
+        super(idAllocator, records, searchIndex);
+        this.records = records;
+    }
+
+    /**
+     * Direct memory reserved by the slabs.
+     */
+    public long offHeapBytes() {
+        return readLocked(records::offHeapBytes);
+    }
+
+    /**
+     * Direct memory holding current records; the rest is garbage waiting for compaction or free space.
+     */
+    public long offHeapLiveBytes() {
+        return readLocked(records::liveBytes);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("app.user-store.off-heap", this, OffHeapUserRepository::offHeapBytes)
+            .tag("state", "reserved")
+            .baseUnit("bytes")
+            .register(registry);
+        Gauge.builder("app.user-store.off-heap", this, OffHeapUserRepository::offHeapLiveBytes)
+            .tag("state", "live")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.trevizan.javacoreplayground.repository;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/*
+ * showcase:
+ * - pooled ids: the database sequence advances by a whole block per call (INCREMENT BY blockSize),
+ *   ids inside the block are handed out in memory, so save does not round-trip for its id
+ *
+ * trade-off:
+ * - unused ids of a block are lost on restart (gaps)
+ * - reserve() expects to be the only writer of the sequence to get consecutive blocks,
+ *   which holds for the embedded H2 database
+ */
+public final class SequenceIdAllocator implements UserIdAllocator {
+
+    private static final String SEQUENCE = "user_id_seq";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int blockSize;
+    // a lock instead of synchronized: the sequence call is I/O and must not pin virtual threads
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // guarded by lock
+    private long next;
+    private long limit;
+
+    public SequenceIdAllocator(JdbcTemplate jdbcTemplate, int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blockSize = blockSize;
+        jdbcTemplate.execute(
+            "CREATE SEQUENCE IF NOT EXISTS " + SEQUENCE + " START WITH 1 INCREMENT BY " + blockSize
+        );
+    }
+
+    @Override
+    public long next() {
+        lock.lock();
+        try {
+            if (next == limit) {
+                next = nextBlock();
+                limit = next + blockSize;
+            }
+            return next++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public long reserve(int count) {
+        lock.lock();
+        try {
+            if (limit - next >= count) {
+                long first = next;
+                next += count;
+                return first;
+            }
+
+            long first = nextBlock();
+            long end = first + blockSize;
+            while (end - first < count) {
+                long block = nextBlock();
+                if (block != end) {
+                    throw new IllegalStateException(
+                        "Sequence " + SEQUENCE + " is shared with another writer, cannot reserve " + count + " ids."
+                    );
+                }
+                end += blockSize;
+            }
+            // the tail of the last block becomes the current block
+            next = first + count;
+            limit = end;
+            return first;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void skipPast(long usedId) {
+        lock.lock();
+        try {
+            Long sequenceNext = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?",
+                Long.class,
+                SEQUENCE.toUpperCase()
+            );
+            if (sequenceNext != null && sequenceNext <= usedId) {
+                jdbcTemplate.execute("ALTER SEQUENCE " + SEQUENCE + " RESTART WITH " + (usedId + 1));
+            }
+            if (next <= usedId) {
+                next = Math.min(usedId + 1, limit);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long nextBlock() {
+        Long first = jdbcTemplate.queryForObject("SELECT NEXT VALUE FOR " + SEQUENCE, Long.class);
+        if (first == null) {
+            throw new IllegalStateException("Sequence " + SEQUENCE + " returned no value.");
+        }
+        return first;
+    }
+
+}
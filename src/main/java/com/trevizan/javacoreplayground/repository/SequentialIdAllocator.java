@@ -0,0 +1,32 @@
+package com.trevizan.javacoreplayground.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * showcase:
+ * - a single AtomicLong, ids are strictly increasing and gap free
+ *
+ * trade-off:
+ * - every save does a CAS on the same cache line, which becomes the bottleneck with many writer cores
+ */
+public final class SequentialIdAllocator implements UserIdAllocator {
+
+    // last id handed out; the first id is 1
+    private final AtomicLong lastId = new AtomicLong();
+
+    @Override
+    public long next() {
+        return lastId.incrementAndGet();
+    }
+
+    @Override
+    public long reserve(int count) {
+        return lastId.addAndGet(count) - count + 1;
+    }
+
+    @Override
+    public void skipPast(long usedId) {
+        lastId.accumulateAndGet(usedId, Math::max);
+    }
+
+}
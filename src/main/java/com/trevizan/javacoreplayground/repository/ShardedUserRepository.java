@@ -0,0 +1,411 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserSearchKey;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import jakarta.annotation.PostConstruct;
+
+/**
+ * Users partitioned by a hash of their id over independent {@link InMemoryUserRepository} shards.
+ * <ul>
+ *   <li>each shard has its own versioned map, search index and journal: writers of different shards share
+ *       no lock, only the id allocator and the email claims (one map, so an email stays unique across shards)</li>
+ *   <li>{@link #findAll()}, {@link #search}, batches and recovery run one fork-join task per shard;
+ *       {@link #findPage} and {@link #streamAll()} merge the shards back into id order</li>
+ *   <li>the shards share one snapshot generation: {@link #snapshot()} is one consistent cut across all of them,
+ *       while {@link #snapshotShard(int)} and {@link #compactShard(int)} touch one shard and leave the others be</li>
+ * </ul>
+ */
+public class ShardedUserRepository implements UserRepository, Closeable {
+
+    private final InMemoryUserRepository[] shards;
+    private final VersionedUserMap[] stores;
+    private final UserJournal[] journals;
+    // normalized email -> id for every shard, also the uniqueness guard across them
+    private final Map<String, Long> emailIndex = new ConcurrentHashMap<>();
+    private final UserIdAllocator idAllocator;
+    private final AtomicInteger nextCompaction = new AtomicInteger();
+
+    public ShardedUserRepository(int shardCount) {
+        this(shardCount, new SequentialIdAllocator(), shard -> UserJournal.NONE, () -> UserSearchIndex.NONE);
+    }
+
+    /**
+     * {@code shardJournals} and {@code searchIndexes} are asked once per shard: every shard gets its own.
+     */
+    public ShardedUserRepository(
+        int shardCount,
+        UserIdAllocator idAllocator,
+        IntFunction<UserJournal> shardJournals,
+        Supplier<UserSearchIndex> searchIndexes
+    ) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be positive.");
+        }
+        this.shards = new InMemoryUserRepository[shardCount];
+        this.stores = new VersionedUserMap[shardCount];
+        this.journals = new UserJournal[shardCount];
+        this.idAllocator = idAllocator;
+
+        AtomicLong generation = new AtomicLong(1);
+        for (int i = 0; i < shardCount; i++) {
+            stores[i] = new VersionedUserMap(generation);
+            journals[i] = shardJournals.apply(i);
+            shards[i] = new InMemoryUserRepository(stores[i], emailIndex, idAllocator, journals[i], searchIndexes.get());
+        }
+    }
+
+    /**
+     * Replays the shard journals, all shards at once. A no-op without journals.
+     */
+    @PostConstruct
+    public void recover() {
+        onEveryShard(shard -> {
+            shards[shard].recover();
+            return null;
+        });
+    }
+
+    public int shardCount() {
+        return shards.length;
+    }
+
+    @Override
+    public User save(User user) {
+        return insert(idAllocator.next(), user);
+    }
+
+    @Override
+    public long reserveIds(int count) {
+        return idAllocator.reserve(count);
+    }
+
+    @Override
+    public User insert(long id, User user) {
+        return shardOf(id).insert(id, user);
+    }
+
+    @Override
+    public List<UserBatchResult> insertAll(List<User> users) {
+        return byShard(users, InMemoryUserRepository::insertAll);
+    }
+
+    @Override
+    public List<UserBatchResult> importAll(List<User> users) {
+        // each shard moves the shared allocator past its part
+        return byShard(users, InMemoryUserRepository::importAll);
+    }
+
+    @Override
+    public Optional<User> findById(Long id) {
+        return shardOf(id).findById(id);
+    }
+
+    @Override
+    public Optional<User> findByEmail(String email) {
+        if (email == null) {
+            return Optional.empty();
+        }
+        // the shared email index names the id, the id names the shard
+        return Optional.ofNullable(emailIndex.get(UserEmails.normalize(email)))
+            .flatMap(this::findById);
+    }
+
+    /**
+     * Every shard scanned in parallel; the result is not in id order, {@link #streamAll()} is.
+     */
+    @Override
+    public List<User> findAll() {
+        List<List<User>> parts = onEveryShard(shard -> shards[shard].findAll());
+        List<User> users = new ArrayList<>(parts.stream().mapToInt(List::size).sum());
+        parts.forEach(users::addAll);
+        return users;
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) {
+        // a keyset seek per shard is cheap, a task per shard would cost more than it saves
+        List<List<User>> pages = new ArrayList<>(shards.length);
+        for (InMemoryUserRepository shard : shards) {
+            pages.add(shard.findPage(afterId, limit));
+        }
+        return merge(pages, limit);
+    }
+
+    @Override
+    public Stream<User> streamAll() {
+        return merged(Arrays.stream(shards).<PageReader>map(shard -> shard::findPage).toList());
+    }
+
+    @Override
+    public List<User> search(UserSearchQuery query, UserSearchKey after, int limit) {
+        // the first `limit` hits of every shard hold the first `limit` hits overall
+        record Hit(UserSearchKey key, User user) { }
+
+        return onEveryShard(shard -> shards[shard].search(query, after, limit)).stream()
+            .flatMap(List::stream)
+            .map(user -> new Hit(UserSearchKey.of(user), user))
+            .sorted(Comparator.comparing(Hit::key))
+            .limit(limit)
+            .map(Hit::user)
+            .toList();
+    }
+
+    /**
+     * One snapshot of every shard at the same generation: a point in time across the whole store.
+     */
+    @Override
+    public UserSnapshot snapshot() {
+        List<UserSnapshot> snapshots = VersionedUserMap.snapshot(List.of(stores));
+        return new UserSnapshot() {
+            @Override
+            public List<User> findPage(Long afterId, int limit) {
+                return merge(snapshots.stream().map(snapshot -> snapshot.findPage(afterId, limit)).toList(), limit);
+            }
+
+            @Override
+            public Stream<User> streamAll() {
+                return merged(snapshots.stream().<PageReader>map(snapshot -> snapshot::findPage).toList());
+            }
+
+            @Override
+            public void close() {
+                snapshots.forEach(UserSnapshot::close);
+            }
+        };
+    }
+
+    /**
+     * Snapshot of one shard only, for per-shard maintenance: the other shards keep no history for it.
+     */
+    public UserSnapshot snapshotShard(int shard) {
+        return shards[shard].snapshot();
+    }
+
+    /**
+     * Rewrites the journal of one shard as a snapshot of its users; writes to the other shards go on meanwhile.
+     */
+    public void compactShard(int shard) {
+        journals[shard].compact(shards[shard]::streamAll);
+    }
+
+    /**
+     * Compacts the shards one at a time, in turn: a schedule calling it every {@code interval / shardCount}
+     * compacts each shard once per {@code interval}.
+     */
+    public void compactNextShard() {
+        compactShard(Math.floorMod(nextCompaction.getAndIncrement(), shards.length));
+    }
+
+    @Override
+    public Optional<User> update(Long id, User user, Long expectedVersion) {
+        return shardOf(id).update(id, user, expectedVersion);
+    }
+
+    @Override
+    public boolean deleteById(Long id) {
+        return shardOf(id).deleteById(id);
+    }
+
+    @Override
+    public void close() {
+        for (UserJournal journal : journals) {
+            journal.close();
+        }
+    }
+
+    // fibonacci hashing: consecutive ids and the blocks of the striped allocator spread evenly over the shards
+    static int shardIndex(long id, int shardCount) {
+        return (int) (((id * 0x9E3779B97F4A7C15L) >>> 32) % shardCount);
+    }
+
+    private InMemoryUserRepository shardOf(long id) {
+        return shards[shardIndex(id, shards.length)];
+    }
+
+    // one fork-join task per shard, the calling thread runs the first; results in shard order
+    private <T> List<T> onEveryShard(IntFunction<T> task) {
+        List<ForkJoinTask<T>> tasks = new ArrayList<>(shards.length);
+        for (int shard = 0; shard < shards.length; shard++) {
+            int index = shard;
+            tasks.add(ForkJoinTask.adapt(() -> task.apply(index)));
+        }
+        ForkJoinTask.invokeAll(tasks);
+        return tasks.stream().map(ForkJoinTask::join).toList();
+    }
+
+    // splits a batch by shard, writes the parts in parallel and puts the results back in batch order
+    private List<UserBatchResult> byShard(
+        List<User> users,
+        BiFunction<InMemoryUserRepository, List<User>, List<UserBatchResult>> write
+    ) {
+        List<List<User>> parts = new ArrayList<>(shards.length);
+        List<List<Integer>> positions = new ArrayList<>(shards.length);
+        for (int shard = 0; shard < shards.length; shard++) {
+            parts.add(new ArrayList<>());
+            positions.add(new ArrayList<>());
+        }
+        for (int i = 0; i < users.size(); i++) {
+            int shard = shardIndex(users.get(i).getId(), shards.length);
+            parts.get(shard).add(users.get(i));
+            positions.get(shard).add(i);
+        }
+
+        List<List<UserBatchResult>> written = onEveryShard(shard -> parts.get(shard).isEmpty()
+            ? List.of()
+            : write.apply(shards[shard], parts.get(shard)));
+        UserBatchResult[] results = new UserBatchResult[users.size()];
+        for (int shard = 0; shard < shards.length; shard++) {
+            for (UserBatchResult result : written.get(shard)) {
+                int index = positions.get(shard).get(result.index());
+                results[index] = new UserBatchResult(index, result.status(), result.user(), result.error());
+            }
+        }
+        return List.of(results);
+    }
+
+    // the first `limit` users of id-ordered lists, in id order
+    private static List<User> merge(List<List<User>> sorted, int limit) {
+        Iterator<User> merged = new MergingIterator(sorted.stream().map(List::iterator).toList());
+        List<User> result = new ArrayList<>(Math.min(limit, 1024));
+        while (result.size() < limit && merged.hasNext()) {
+            result.add(merged.next());
+        }
+        return result;
+    }
+
+    // every shard read in keyset pages: merging plain lists costs a fraction of interleaving live stream pipelines,
+    // and no lock or stream is held between pages
+    private static Stream<User> merged(List<PageReader> shards) {
+        Iterator<User> users = new MergingIterator(shards.stream().<Iterator<User>>map(PagingIterator::new).toList());
+        return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(users, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @FunctionalInterface
+    private interface PageReader {
+
+        List<User> findPage(Long afterId, int limit);
+
+    }
+
+    private static final class PagingIterator implements Iterator<User> {
+
+        private static final int PAGE_SIZE = 1024;
+
+        private final PageReader shard;
+        private List<User> page;
+        private int position;
+
+        PagingIterator(PageReader shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (page == null) {
+                page = shard.findPage(null, PAGE_SIZE);
+            } else if (position == page.size() && page.size() == PAGE_SIZE) {
+                page = shard.findPage(page.getLast().getId(), PAGE_SIZE);
+                position = 0;
+            }
+            return position < page.size();
+        }
+
+        @Override
+        public User next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return page.get(position++);
+        }
+
+    }
+
+    /*
+     * k-way merge of id-ordered iterators. The head id of each source is kept as a primitive and the next user is
+     * a linear scan for the smallest: for a few dozen shards that beats a heap, whose sift branches mispredict on
+     * hash-spread ids, and merging allocates nothing per user. Pulls nothing until the first hasNext().
+     */
+    private static final class MergingIterator implements Iterator<User> {
+
+        private static final long EXHAUSTED = Long.MAX_VALUE;
+
+        private final List<Iterator<User>> sources;
+        private final User[] heads;
+        private final long[] headIds;
+        private int next = -1;
+
+        MergingIterator(List<Iterator<User>> sources) {
+            this.sources = sources;
+            this.heads = new User[sources.size()];
+            this.headIds = new long[sources.size()];
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next < 0) {
+                for (int source = 0; source < sources.size(); source++) {
+                    pull(source);
+                }
+                next = smallest();
+            }
+            return heads[next] != null;
+        }
+
+        @Override
+        public User next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            User user = heads[next];
+            pull(next);
+            next = smallest();
+            return user;
+        }
+
+        private void pull(int source) {
+            Iterator<User> iterator = sources.get(source);
+            if (iterator.hasNext()) {
+                heads[source] = iterator.next();
+                headIds[source] = heads[source].getId();
+            } else {
+                heads[source] = null;
+                headIds[source] = EXHAUSTED;
+            }
+        }
+
+        private int smallest() {
+            int smallest = 0;
+            for (int source = 1; source < headIds.length; source++) {
+                smallest = headIds[source] < headIds[smallest] ? source : smallest;
+            }
+            return smallest;
+        }
+
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserSearchKey;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/*
+ * showcase:
+ * - one sort key per user, (lower-cased name, id), and every index is a ConcurrentSkipListSet of those keys:
+ *   the name index holds all users (a name prefix is a range of it), the domain and word indexes one set per term
+ * - a query walks its sets together (zig-zag join: each set seeks with ceiling() to the highest key seen so far),
+ *   so a page costs about limit x sets x log n, however many users match in total
+ * - incremental: a write moves the key only in the sets whose term changed, and the version check drops
+ *   writes that arrive late or out of order
+ *
+ * trade-off:
+ * - a sorted set rather than a trie for prefixes: one O(log n) seek instead of a walk per character,
+ *   and no node per character; the keys are shared by all sets
+ * - a handful of skip list nodes per user (name, domain, ~3 words), the indexed User and a tombstone
+ *   per deleted id: memory that compact and off-heap mode exist to avoid
+ * - a term set is created and dropped under its map bin lock, so writers of one hot term (a big domain)
+ *   queue there briefly
+ * - readers are weakly consistent: a user changed during the query may be missed, but is never returned
+ *   with fields that do not match it
+ */
+public final class SkipListUserSearchIndex implements UserSearchIndex {
+
+    private static final User DELETED = new User(null, null, null, Long.MAX_VALUE);
+    // sorts before every real key: the search start when there is no cursor
+    private static final UserSearchKey FIRST = new UserSearchKey("", Long.MIN_VALUE);
+
+    // latest indexed version per id, DELETED once removed
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final NavigableSet<UserSearchKey> byName = new ConcurrentSkipListSet<>();
+    private final Map<String, NavigableSet<UserSearchKey>> byDomain = new ConcurrentHashMap<>();
+    private final Map<String, NavigableSet<UserSearchKey>> byWord = new ConcurrentHashMap<>();
+
+    @Override
+    public void put(User user) {
+        users.compute(user.getId(), (id, current) -> {
+            if (current != null && current.getVersion() >= user.getVersion()) {
+                return current;
+            }
+            reindex(current, user);
+            return user;
+        });
+    }
+
+    @Override
+    public void remove(long id) {
+        users.compute(id, (key, current) -> {
+            if (current != null && current != DELETED) {
+                reindex(current, null);
+            }
+            return DELETED;
+        });
+    }
+
+    @Override
+    public List<User> search(UserSearchQuery query, UserSearchKey after, int limit, UserRepository store) {
+        List<NavigableSet<UserSearchKey>> sets = new ArrayList<>(1 + query.words().size());
+        if (query.domain() != null) {
+            sets.add(byDomain.get(query.domain()));
+        }
+        for (String word : query.words()) {
+            sets.add(byWord.get(word));
+        }
+        if (sets.contains(null)) {
+            // a term nobody has
+            return List.of();
+        }
+        if (sets.isEmpty()) {
+            sets.add(byName);
+        }
+
+        String prefix = query.namePrefix();
+        UserSearchKey start = after == null ? FIRST : after;
+        if (prefix != null) {
+            UserSearchKey prefixStart = new UserSearchKey(prefix, Long.MIN_VALUE);
+            if (start.compareTo(prefixStart) < 0) {
+                start = prefixStart;
+            }
+        }
+
+        List<User> page = new ArrayList<>(Math.min(limit, 64));
+        int n = sets.size();
+        UserSearchKey candidate = sets.get(0).higher(start);
+        int agreeing = 1;
+        int next = 1 % n;
+        while (candidate != null && page.size() < limit) {
+            // seek every set to the candidate until they all hold it
+            while (agreeing < n) {
+                UserSearchKey found = sets.get(next).ceiling(candidate);
+                if (found == null) {
+                    return page;
+                }
+                if (found.equals(candidate)) {
+                    agreeing++;
+                } else {
+                    candidate = found;
+                    agreeing = 1;
+                }
+                next = (next + 1) % n;
+            }
+            if (prefix != null && !candidate.name().startsWith(prefix)) {
+                // keys only grow: past the prefix range
+                break;
+            }
+            User user = users.get(candidate.id());
+            if (user != null && user != DELETED && UserSearchKey.of(user).equals(candidate) && query.matches(user)) {
+                page.add(user);
+            }
+            candidate = sets.get(next).higher(candidate);
+            agreeing = 1;
+            next = (next + 1) % n;
+        }
+        return page;
+    }
+
+    // previous and current may each be null (first put, remove); keys only move where a term changed
+    private void reindex(User previous, User current) {
+        UserSearchKey oldKey = previous == null || previous == DELETED ? null : UserSearchKey.of(previous);
+        UserSearchKey newKey = current == null ? null : UserSearchKey.of(current);
+        boolean sameKey = Objects.equals(oldKey, newKey);
+
+        // adds before removes: a concurrent reader sees the user in one state or the other, or both
+        if (newKey != null && !sameKey) {
+            byName.add(newKey);
+        }
+        move(byDomain, terms(oldKey, previous, true), terms(newKey, current, true), oldKey, newKey, sameKey);
+        move(byWord, terms(oldKey, previous, false), terms(newKey, current, false), oldKey, newKey, sameKey);
+        if (oldKey != null && !sameKey) {
+            byName.remove(oldKey);
+        }
+    }
+
+    private static List<String> terms(UserSearchKey key, User user, boolean domain) {
+        if (key == null) {
+            return List.of();
+        }
+        if (domain) {
+            String userDomain = UserSearchQuery.domainOf(user);
+            return userDomain == null ? List.of() : List.of(userDomain);
+        }
+        return UserSearchQuery.wordsOf(user);
+    }
+
+    private static void move(
+        Map<String, NavigableSet<UserSearchKey>> index,
+        List<String> oldTerms,
+        List<String> newTerms,
+        UserSearchKey oldKey,
+        UserSearchKey newKey,
+        boolean sameKey
+    ) {
+        for (String term : newTerms) {
+            if (!sameKey || !oldTerms.contains(term)) {
+                index.compute(term, (key, set) -> {
+                    NavigableSet<UserSearchKey> keys = set == null ? new ConcurrentSkipListSet<>() : set;
+                    keys.add(newKey);
+                    return keys;
+                });
+            }
+        }
+        for (String term : oldTerms) {
+            if (!sameKey || !newTerms.contains(term)) {
+                index.computeIfPresent(term, (key, set) -> {
+                    set.remove(oldKey);
+                    return set.isEmpty() ? null : set;
+                });
+            }
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.trevizan.javacoreplayground.repository;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * showcase:
+ * - LongAdder-like striping: threads are spread over stripes, each owning a block of ids
+ * - the shared counter is only touched once per block instead of once per id
+ *
+ * trade-off:
+ * - ids are unique but only roughly monotonic: two threads hand out ids from different blocks
+ * - ids left in a block when the application stops are never used (gaps)
+ */
+public final class StripedIdAllocator implements UserIdAllocator {
+
+    private final AtomicLong lastReservedId = new AtomicLong();
+    private final Stripe[] stripes;
+    private final int blockSize;
+    private final int mask;
+
+    public StripedIdAllocator(int blockSize) {
+        this(blockSize, Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    public StripedIdAllocator(int blockSize, int stripeCount) {
+        if (blockSize < 1 || stripeCount < 1) {
+            throw new IllegalArgumentException("Block size and stripe count must be positive.");
+        }
+        int size = Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new Stripe[Math.max(size, 1)];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.blockSize = blockSize;
+        this.mask = stripes.length - 1;
+    }
+
+    @Override
+    public long next() {
+        Stripe stripe = stripes[stripeIndex()];
+        // contention is limited to the threads that hash to this stripe
+        synchronized (stripe) {
+            if (stripe.next == stripe.limit) {
+                stripe.next = reserve(blockSize);
+                stripe.limit = stripe.next + blockSize;
+            }
+            return stripe.next++;
+        }
+    }
+
+    @Override
+    public long reserve(int count) {
+        return lastReservedId.addAndGet(count) - count + 1;
+    }
+
+    @Override
+    public void skipPast(long usedId) {
+        lastReservedId.accumulateAndGet(usedId, Math::max);
+        // blocks taken before the move may still hold ids up to usedId: skip them, or drop the whole block
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                if (stripe.next <= usedId) {
+                    stripe.next = Math.min(usedId + 1, stripe.limit);
+                }
+            }
+        }
+    }
+
+    private int stripeIndex() {
+        long threadId = Thread.currentThread().threadId();
+        // fibonacci hashing, so consecutive thread ids land on different stripes
+        return (int) ((threadId * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    @SuppressWarnings("unused")
+    private static final class Stripe {
+        // padding keeps two stripes from sharing a cache line (false sharing)
+        private long p1, p2, p3, p4, p5, p6, p7;
+        private long next;
+        private long limit;
+        private long q1, q2, q3, q4, q5, q6, q7;
+    }
+
+}
@@ -0,0 +1,165 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Bulk export format of the user store: the journal's record layout ({@link UserRecordCodec}) behind a header.
+ * <pre>
+ * dump = magic "JCPUSERS", int formatVersion, upsert record*, int 0, long userCount
+ * </pre>
+ * <ul>
+ *   <li>written and read through one fixed-size direct buffer, so memory stays flat whatever the user count;
+ *       only a record larger than the buffer gets a buffer of its own</li>
+ *   <li>ids and versions are kept: a dump reloads as the same users</li>
+ *   <li>every record carries its CRC32C and the count closes the dump, so a torn or truncated file is reported,
+ *       not loaded as a shorter one</li>
+ * </ul>
+ */
+public final class UserDump {
+
+    static final int BUFFER_SIZE = 1 << 18;
+    // a length beyond this is damage, not a user
+    private static final int MAX_RECORD_BYTES = 1 << 26;
+    private static final byte[] MAGIC = "JCPUSERS".getBytes(StandardCharsets.US_ASCII);
+    private static final int FORMAT_VERSION = 1;
+
+    private UserDump() {
+    }
+
+    /**
+     * Writes every user to the channel and returns how many there were.
+     */
+    public static long write(Iterator<User> users, WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.put(MAGIC).putInt(FORMAT_VERSION);
+
+        long count = 0;
+        while (users.hasNext()) {
+            User user = users.next();
+            if (!UserRecordCodec.writeUpsert(buffer, user)) {
+                drain(buffer, channel);
+                if (!UserRecordCodec.writeUpsert(buffer, user)) {
+                    byte[] payload = UserRecordCodec.encodeUpsert(user);
+                    ByteBuffer large = ByteBuffer.allocate(UserRecordCodec.recordSize(payload));
+                    UserRecordCodec.write(large, payload);
+                    drain(large, channel);
+                }
+            }
+            count++;
+        }
+
+        if (Integer.BYTES + Long.BYTES > buffer.remaining()) {
+            drain(buffer, channel);
+        }
+        buffer.putInt(0).putLong(count);
+        drain(buffer, channel);
+        return count;
+    }
+
+    /**
+     * Reads the dump and hands its users over in batches of {@code batchSize}, in file order; returns the count.
+     * Batches already handed over stay handed over when the rest of the file turns out to be damaged.
+     */
+    public static long read(ReadableByteChannel channel, int batchSize, Consumer<List<User>> batches)
+        throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.flip();
+
+        fill(buffer, channel, MAGIC.length + Integer.BYTES);
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+        int formatVersion = buffer.getInt();
+        if (!Arrays.equals(magic, MAGIC) || formatVersion != FORMAT_VERSION) {
+            throw new StreamCorruptedException("Not a user dump (format " + FORMAT_VERSION + ").");
+        }
+
+        List<User> batch = new ArrayList<>(batchSize);
+        long count = 0;
+        while (true) {
+            fill(buffer, channel, Integer.BYTES);
+            int length = buffer.getInt(buffer.position());
+            if (length == 0) {
+                break;
+            }
+            if (length < 0 || length > MAX_RECORD_BYTES) {
+                throw new StreamCorruptedException("Damaged user dump after " + count + " users.");
+            }
+            int size = UserRecordCodec.HEADER_BYTES + length;
+            UserRecordCodec.Entry entry;
+            if (size > buffer.capacity()) {
+                ByteBuffer large = ByteBuffer.allocate(size);
+                large.put(buffer);
+                readFully(large, channel);
+                entry = UserRecordCodec.read(large.flip());
+            } else {
+                fill(buffer, channel, size);
+                entry = UserRecordCodec.read(buffer);
+            }
+            if (entry == null || entry.type() != UserRecordCodec.UPSERT) {
+                throw new StreamCorruptedException("Damaged user dump after " + count + " users.");
+            }
+
+            batch.add(entry.user());
+            count++;
+            if (batch.size() == batchSize) {
+                batches.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+
+        fill(buffer, channel, Integer.BYTES + Long.BYTES);
+        buffer.getInt();
+        long expected = buffer.getLong();
+        if (expected != count) {
+            throw new StreamCorruptedException("User dump holds " + count + " users, its trailer says " + expected + ".");
+        }
+        if (!batch.isEmpty()) {
+            batches.accept(batch);
+        }
+        return count;
+    }
+
+    private static void drain(ByteBuffer buffer, WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // makes at least `bytes` readable at the buffer's position (the buffer is in read mode)
+    private static void fill(ByteBuffer buffer, ReadableByteChannel channel, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("User dump ends early.");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void readFully(ByteBuffer buffer, ReadableByteChannel channel) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("User dump ends early.");
+            }
+        }
+    }
+
+}
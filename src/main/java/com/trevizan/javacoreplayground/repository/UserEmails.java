@@ -0,0 +1,18 @@
+package com.trevizan.javacoreplayground.repository;
+
+import java.util.Locale;
+
+final class UserEmails {
+
+    private UserEmails() {
+    }
+
+    static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    static boolean same(String first, String second) {
+        return first == null ? second == null : second != null && normalize(first).equals(normalize(second));
+    }
+
+}
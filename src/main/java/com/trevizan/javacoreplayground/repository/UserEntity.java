@@ -0,0 +1,72 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+/**
+ * JPA mapping of {@link User}, kept apart so the domain model stays immutable.
+ * Ids are assigned by {@link SequenceIdAllocator} (never generated on insert), which keeps
+ * inserts batchable.
+ */
+@Entity
+@Table(
+    name = "app_users",
+    indexes = @Index(name = "ux_app_users_email_key", columnList = "email_key", unique = true)
+)
+public class UserEntity {
+
+    @Id
+    private Long id;
+
+    private String name;
+
+    private String email;
+
+    // normalized email, the unique key behind findByEmail
+    @Column(name = "email_key")
+    private String emailKey;
+
+    @Column(nullable = false)
+    private long version;
+
+    protected UserEntity() {
+    }
+
+    UserEntity(User user) {
+        this.id = user.getId();
+        this.version = user.getVersion();
+        apply(user);
+    }
+
+    void apply(User user) {
+        this.name = user.getName();
+        this.email = user.getEmail();
+        this.emailKey = user.getEmail() == null ? null : UserEmails.normalize(user.getEmail());
+    }
+
+    void incrementVersion() {
+        version++;
+    }
+
+    Long getId() {
+        return id;
+    }
+
+    String getEmail() {
+        return email;
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    User toUser() {
+        return new User(id, name, email, version);
+    }
+
+}
@@ -0,0 +1,21 @@
+package com.trevizan.javacoreplayground.repository;
+
+/**
+ * Hands out unique user ids. Implementations must never return the same id twice,
+ * but are free to leave gaps and to interleave ids between threads.
+ */
+public interface UserIdAllocator {
+
+    long next();
+
+    /**
+     * Reserves {@code count} consecutive ids and returns the first one.
+     */
+    long reserve(int count);
+
+    /**
+     * Makes sure no id up to {@code usedId} is handed out again, e.g. after reloading stored users.
+     */
+    void skipPast(long usedId);
+
+}
@@ -0,0 +1,59 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Write-ahead log of the user store. Records carry the full user and its version, and a delete carries
+ * the version it removed, so replay keeps the highest version per id and a delete hides only the versions
+ * up to its own.
+ */
+public interface UserJournal extends Closeable {
+
+    UserJournal NONE = new UserJournal() {
+        @Override
+        public void recordSave(User user) {
+        }
+
+        @Override
+        public void recordDelete(long id, long version) {
+        }
+
+        @Override
+        public long replay(Consumer<User> consumer) {
+            return 0;
+        }
+
+        @Override
+        public void compact(Supplier<Stream<User>> currentUsers) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    void recordSave(User user);
+
+    void recordDelete(long id, long version);
+
+    /**
+     * Feeds the latest version of every user that was saved and not deleted.
+     *
+     * @return the highest id ever recorded, deleted users included, so the id allocator never hands it out again
+     */
+    long replay(Consumer<User> consumer);
+
+    /**
+     * Writes a snapshot of the current users and drops the journal segments it replaces.
+     */
+    void compact(Supplier<Stream<User>> currentUsers);
+
+    @Override
+    void close();
+
+}
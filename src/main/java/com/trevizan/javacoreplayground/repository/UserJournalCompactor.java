@@ -0,0 +1,52 @@
+package com.trevizan.javacoreplayground.repository;
+
+import java.io.Closeable;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Periodically snapshots the repository into its journal, so startup replays one snapshot
+ * plus a short tail of segments instead of the whole write history.
+ */
+public final class UserJournalCompactor implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(UserJournalCompactor.class);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+        Thread.ofPlatform().name("user-journal-compactor").daemon().factory()
+    );
+
+    public UserJournalCompactor(UserJournal journal, UserRepository repository, Duration interval) {
+        this(() -> journal.compact(repository::streamAll), interval);
+    }
+
+    /**
+     * Runs {@code compaction} every {@code interval}, e.g. {@link ShardedUserRepository#compactNextShard()}.
+     */
+    public UserJournalCompactor(Runnable compaction, Duration interval) {
+        long intervalMillis = Math.max(interval.toMillis(), 1);
+        scheduler.scheduleWithFixedDelay(
+            () -> compact(compaction), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS
+        );
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+    }
+
+    private static void compact(Runnable compaction) {
+        try {
+            compaction.run();
+        } catch (RuntimeException ex) {
+            // keep the schedule alive: the journal is still complete, only longer to replay
+            log.warn("User journal compaction failed", ex);
+        }
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Bounded read-through cache for lookups by id, evicting in insertion order (FIFO).
+ * <ul>
+ *   <li>entries only ever move to a higher version, so a slow reader can not overwrite a newer write</li>
+ *   <li>a delete leaves a tombstone that no load can replace (ids are never reused)</li>
+ * </ul>
+ */
+final class UserReadCache {
+
+    private static final Entry DELETED = new Entry(null, Long.MAX_VALUE);
+
+    record Entry(User user, long version) {
+
+        boolean deleted() {
+            return user == null;
+        }
+
+    }
+
+    private final int maxSize;
+    private final ConcurrentHashMap<Long, Entry> entries;
+    private final Queue<Long> insertionOrder = new ConcurrentLinkedQueue<>();
+
+    UserReadCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.entries = new ConcurrentHashMap<>(Math.min(maxSize, 1 << 16));
+    }
+
+    /**
+     * Returns the cached entry, or {@code null} on a miss.
+     */
+    Entry get(long id) {
+        return maxSize == 0 ? null : entries.get(id);
+    }
+
+    void put(User user) {
+        if (maxSize == 0) {
+            return;
+        }
+        Entry candidate = new Entry(user, user.getVersion());
+        boolean[] added = new boolean[1];
+        entries.compute(user.getId(), (id, current) -> {
+            if (current == null) {
+                added[0] = true;
+                return candidate;
+            }
+            return candidate.version() > current.version() ? candidate : current;
+        });
+        if (added[0]) {
+            track(user.getId());
+        }
+    }
+
+    void markDeleted(long id) {
+        if (maxSize == 0) {
+            return;
+        }
+        if (entries.put(id, DELETED) == null) {
+            track(id);
+        }
+    }
+
+    private void track(long id) {
+        insertionOrder.add(id);
+        while (entries.size() > maxSize) {
+            Long oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            entries.remove(oldest);
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary layout shared by the journal segments and snapshots.
+ * <pre>
+ * record  = int payloadLength, int crc32c(payload), payload
+ * payload = byte type, long id, long version, [string name, string email]   (fields in brackets: upsert only)
+ * string  = int byteLength (-1 for null), UTF-8 bytes
+ * </pre>
+ * A zero length marks the end of the written data; a bad checksum marks a torn tail.
+ */
+final class UserRecordCodec {
+
+    static final byte UPSERT = 1;
+    static final byte DELETE = 2;
+    static final int HEADER_BYTES = Integer.BYTES * 2;
+
+    private UserRecordCodec() {
+    }
+
+    // for a delete, version is the last version of the deleted user
+    record Entry(byte type, long id, long version, User user) { }
+
+    static byte[] encodeUpsert(User user) {
+        byte[] name = toBytes(user.getName());
+        byte[] email = toBytes(user.getEmail());
+        ByteBuffer payload = ByteBuffer.allocate(
+            1 + Long.BYTES * 2 + stringBytes(name) + stringBytes(email)
+        );
+        payload.put(UPSERT)
+            .putLong(user.getId())
+            .putLong(user.getVersion());
+        putString(payload, name);
+        putString(payload, email);
+        return payload.array();
+    }
+
+    /**
+     * Encodes an upsert record straight into the target, checksum included, with no payload array in between.
+     * Writes nothing and returns {@code false} when it does not fit.
+     */
+    static boolean writeUpsert(ByteBuffer target, User user) {
+        byte[] name = toBytes(user.getName());
+        byte[] email = toBytes(user.getEmail());
+        int length = 1 + Long.BYTES * 2 + stringBytes(name) + stringBytes(email);
+        if (target.remaining() < HEADER_BYTES + length) {
+            return false;
+        }
+        int start = target.position();
+        target.putInt(length)
+            .putInt(0)
+            .put(UPSERT)
+            .putLong(user.getId())
+            .putLong(user.getVersion());
+        putString(target, name);
+        putString(target, email);
+
+        CRC32C crc = new CRC32C();
+        crc.update(target.duplicate().position(start + HEADER_BYTES).limit(target.position()));
+        target.putInt(start + Integer.BYTES, (int) crc.getValue());
+        return true;
+    }
+
+    static byte[] encodeDelete(long id, long version) {
+        return ByteBuffer.allocate(1 + Long.BYTES * 2)
+            .put(DELETE)
+            .putLong(id)
+            .putLong(version)
+            .array();
+    }
+
+    static int recordSize(byte[] payload) {
+        return HEADER_BYTES + payload.length;
+    }
+
+    static void write(ByteBuffer target, byte[] payload) {
+        target.putInt(payload.length)
+            .putInt(checksum(payload))
+            .put(payload);
+    }
+
+    static void write(DataOutput target, byte[] payload) throws IOException {
+        target.writeInt(payload.length);
+        target.writeInt(checksum(payload));
+        target.write(payload);
+    }
+
+    static void writeEnd(DataOutput target) throws IOException {
+        target.writeInt(0);
+    }
+
+    /**
+     * Returns the next entry, or {@code null} at the end of the data or at a torn record.
+     */
+    static Entry read(ByteBuffer source) {
+        if (source.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int length = source.getInt();
+        int crc = source.getInt();
+        if (length <= 0 || length > source.remaining()) {
+            return null;
+        }
+        byte[] payload = new byte[length];
+        source.get(payload);
+        return checksum(payload) == crc ? decode(payload) : null;
+    }
+
+    static Entry read(DataInput source) throws IOException {
+        try {
+            int length = source.readInt();
+            if (length <= 0) {
+                return null;
+            }
+            int crc = source.readInt();
+            byte[] payload = new byte[length];
+            source.readFully(payload);
+            return checksum(payload) == crc ? decode(payload) : null;
+        } catch (EOFException ex) {
+            return null;
+        }
+    }
+
+    private static Entry decode(byte[] bytes) {
+        try {
+            ByteBuffer payload = ByteBuffer.wrap(bytes);
+            byte type = payload.get();
+            long id = payload.getLong();
+            long version = payload.getLong();
+            if (type == DELETE) {
+                return new Entry(type, id, version, null);
+            }
+            String name = getString(payload);
+            String email = getString(payload);
+            return new Entry(type, id, version, new User(id, name, email, version));
+        } catch (BufferUnderflowException ex) {
+            return null;
+        }
+    }
+
+    private static byte[] toBytes(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int stringBytes(byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    private static void putString(ByteBuffer target, byte[] value) {
+        if (value == null) {
+            target.putInt(-1);
+            return;
+        }
+        target.putInt(value.length).put(value);
+    }
+
+    private static String getString(ByteBuffer source) {
+        int length = source.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(source.array(), source.position(), length, StandardCharsets.UTF_8);
+        source.position(source.position() + length);
+        return value;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+}
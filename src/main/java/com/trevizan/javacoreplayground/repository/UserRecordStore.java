@@ -0,0 +1,23 @@
+package com.trevizan.javacoreplayground.repository;
+
+/**
+ * Where {@link CompactUserRepository} keeps the encoded name and email of each slot ({@link CompactUserCodec}).
+ * Always called under the repository lock: writes under its write lock, reads under its read lock.
+ */
+interface UserRecordStore {
+
+    /**
+     * Stores the record of {@code slot}, replacing the previous one if any.
+     */
+    void write(int slot, byte[] record);
+
+    byte[] read(int slot);
+
+    void free(int slot);
+
+    /**
+     * Heap held by the records, array headers and padding included.
+     */
+    long heapBytes();
+
+}
@@ -1,50 +1,79 @@
 package com.trevizan.javacoreplayground.repository;
 
 import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserSearchKey;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
-import org.springframework.stereotype.Repository;
+/**
+ * User storage contract shared by every store mode ({@code app.user-store.mode}).
+ * Absence is reported with {@link Optional} or {@code false}; only integrity violations throw
+ * ({@code DuplicateEmailException}, {@code UserVersionConflictException}).
+ */
+public interface UserRepository {
 
-@Repository
-public class UserRepository {
+    long INITIAL_VERSION = 1L;
 
-    private final Map<Long, User> store = new ConcurrentHashMap<>();
-    private final AtomicLong idGenerator = new AtomicLong(1);
+    User save(User user);
 
-    public User save(User user) {
-        long id = idGenerator.incrementAndGet();
-        User userWithId = user.withId(id);
-        store.put(id, userWithId);
-        return userWithId;
-    }
+    /**
+     * Reserves {@code count} consecutive ids in one allocator call and returns the first one.
+     * Meant for batch writers, which then insert the users under the reserved ids.
+     */
+    long reserveIds(int count);
 
-    public Optional<User> findById(Long id) {
-        return Optional.ofNullable(store.get(id));
-    }
+    User insert(long id, User user);
 
-    public List<User> findAll() {
-        return new ArrayList<>(store.values());
-    }
+    /**
+     * Inserts users that already carry ids from {@link #reserveIds(int)}, as one write where the
+     * store supports it. Returns one result per user, in order: {@code CREATED} or {@code CONFLICT}.
+     */
+    List<UserBatchResult> insertAll(List<User> users);
+
+    /**
+     * Bulk load of users that keep their ids and versions (a dump of another store): no id is allocated,
+     * and the allocator is moved past the highest id once per call. Returns one result per user, in order:
+     * {@code CREATED}, or {@code CONFLICT} when the id or the email is taken.
+     */
+    List<UserBatchResult> importAll(List<User> users);
+
+    Optional<User> findById(Long id);
 
-    public Optional<User> update(Long id, User user) {
-        if (!store.containsKey(id)) {
-            return Optional.empty();
-        }
+    Optional<User> findByEmail(String email);
 
-        User updatedUser = user.withId(id);
-        store.put(id, updatedUser);
+    List<User> findAll();
 
-        return Optional.of(updatedUser);
+    List<User> findPage(Long afterId, int limit);
+
+    /**
+     * Lazy scan in id order; close the stream when done.
+     */
+    Stream<User> streamAll();
+
+    /**
+     * Users matching every criterion of the query, in {@link UserSearchKey} order (name, then id), after
+     * {@code after} ({@code null}: from the start). Answered by the store's {@link UserSearchIndex}.
+     */
+    List<User> search(UserSearchQuery query, UserSearchKey after, int limit);
+
+    /**
+     * Point-in-time view of the users for reads spread over time (paginated exports); close it when done.
+     * Stores without versions answer with a copy of {@link #findAll()}.
+     */
+    default UserSnapshot snapshot() {
+        return UserSnapshot.copyOf(findAll());
     }
 
-    public boolean deleteById(Long id) {
-        return store.remove(id) != null;
+    default Optional<User> update(Long id, User user) {
+        return update(id, user, null);
     }
 
+    Optional<User> update(Long id, User user, Long expectedVersion);
+
+    boolean deleteById(Long id);
+
 }
@@ -0,0 +1,57 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserSearchKey;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Secondary indexes behind {@link UserRepository#search}, kept up to date by the store on every write.
+ * Writes carry the user's version, so the index keeps the highest one per id and a delete is final
+ * (ids are never reused): stores may call it outside their own locks.
+ */
+public interface UserSearchIndex {
+
+    /**
+     * No index: every search scans and sorts the whole store.
+     */
+    UserSearchIndex NONE = new UserSearchIndex() {
+        @Override
+        public void put(User user) {
+        }
+
+        @Override
+        public void remove(long id) {
+        }
+
+        @Override
+        public List<User> search(UserSearchQuery query, UserSearchKey after, int limit, UserRepository store) {
+            record Hit(UserSearchKey key, User user) { }
+
+            try (Stream<User> users = store.streamAll()) {
+                return users
+                    .filter(query::matches)
+                    .map(user -> new Hit(UserSearchKey.of(user), user))
+                    .filter(hit -> after == null || hit.key().compareTo(after) > 0)
+                    .sorted(Comparator.comparing(Hit::key))
+                    .limit(limit)
+                    .map(Hit::user)
+                    .toList();
+            }
+        }
+    };
+
+    void put(User user);
+
+    void remove(long id);
+
+    /**
+     * Up to {@code limit} users matching the query, in {@link UserSearchKey} order after {@code after}
+     * ({@code null}: from the start). {@code store} is only read by {@link #NONE}.
+     */
+    List<User> search(UserSearchQuery query, UserSearchKey after, int limit, UserRepository store);
+
+}
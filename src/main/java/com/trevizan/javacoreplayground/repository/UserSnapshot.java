@@ -0,0 +1,69 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * The users as they were when {@link UserRepository#snapshot()} was called: every read answers from that
+ * point in time, whatever was written since, so pages read one by one add up to one consistent listing.
+ * Close it when done, the store keeps the old versions it needs until then.
+ */
+public interface UserSnapshot extends AutoCloseable {
+
+    /**
+     * Keyset page in id order, like {@link UserRepository#findPage(Long, int)}.
+     */
+    List<User> findPage(Long afterId, int limit);
+
+    /**
+     * Lazy scan in id order; close the stream when done.
+     */
+    Stream<User> streamAll();
+
+    @Override
+    void close();
+
+    /**
+     * A snapshot that holds its own copy of the users: what stores without versions answer with.
+     */
+    static UserSnapshot copyOf(List<User> users) {
+        User[] sorted = users.toArray(User[]::new);
+        Arrays.sort(sorted, Comparator.comparing(User::getId));
+
+        return new UserSnapshot() {
+            @Override
+            public List<User> findPage(Long afterId, int limit) {
+                int from = 0;
+                if (afterId != null) {
+                    // first id greater than afterId
+                    int low = 0;
+                    int high = sorted.length;
+                    while (low < high) {
+                        int middle = (low + high) >>> 1;
+                        if (sorted[middle].getId() <= afterId) {
+                            low = middle + 1;
+                        } else {
+                            high = middle;
+                        }
+                    }
+                    from = low;
+                }
+                return List.of(Arrays.copyOfRange(sorted, from, from + Math.min(sorted.length - from, limit)));
+            }
+
+            @Override
+            public Stream<User> streamAll() {
+                return Arrays.stream(sorted);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+}
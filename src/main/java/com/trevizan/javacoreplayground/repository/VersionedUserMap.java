@@ -0,0 +1,313 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+
+/*
+ * showcase:
+ * - multi-version map: each id holds a chain of versions, newest first, and each version is stamped with the
+ *   generation it became visible in; a snapshot is one generation number, so opening one copies nothing
+ * - writers never read the clock they could contend on: opening a snapshot bumps the generation, writes only
+ *   read it; a version is stamped just after it is linked in, and a snapshot reader that meets an unstamped one
+ *   stamps it itself with the current generation (past its own): who stamps first decides, and a snapshot
+ *   reads each version the same way every time
+ * - history is trimmed by the writers themselves: below the newest version every open snapshot can see,
+ *   nothing is reachable; closing a snapshot trims the ids written while it was open
+ *
+ * trade-off:
+ * - one version object per user on top of the map entry (~32 bytes), and a deleted id stays as a tombstone
+ *   while a snapshot older than the delete is open
+ * - a long-lived snapshot keeps every version written after it: snapshots are meant to be closed, or expire
+ * - current reads are unchanged (the newest version, as before); only snapshot reads walk the chain
+ */
+final class VersionedUserMap {
+
+    private static final long UNSTAMPED = Long.MAX_VALUE;
+    private static final VarHandle GENERATION;
+
+    static {
+        try {
+            GENERATION = MethodHandles.lookup().findVarHandle(Version.class, "generation", long.class);
+        } catch (ReflectiveOperationException ex) {
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+
+    private static final class Version {
+
+        // null: deleted
+        final User user;
+        volatile long generation = UNSTAMPED;
+        volatile Version previous;
+
+        Version(User user, Version previous) {
+            this.user = user;
+            this.previous = previous;
+        }
+
+        // the first stamp wins, the value is final from then on
+        long stamp(long candidate) {
+            long current = generation;
+            if (current != UNSTAMPED) {
+                return current;
+            }
+            long witness = (long) GENERATION.compareAndExchange(this, UNSTAMPED, candidate);
+            return witness == UNSTAMPED ? candidate : witness;
+        }
+
+    }
+
+    private final ConcurrentHashMap<Long, Version> versions = new ConcurrentHashMap<>();
+    // ids present in versions (tombstones included), for scans in id order
+    private final NavigableSet<Long> orderedIds = new ConcurrentSkipListSet<>();
+    private final AtomicLong generation;
+    private final Set<Snapshot> openSnapshots = ConcurrentHashMap.newKeySet();
+    // ids whose chain still holds versions for an open snapshot, trimmed again when one closes
+    private final Set<Long> retained = ConcurrentHashMap.newKeySet();
+
+    VersionedUserMap() {
+        this(new AtomicLong(1));
+    }
+
+    /**
+     * Maps built on the same {@code generation} can be snapshotted together, see {@link #snapshot(List)}.
+     */
+    VersionedUserMap(AtomicLong generation) {
+        this.generation = generation;
+    }
+
+    User get(long id) {
+        Version head = versions.get(id);
+        return head == null ? null : head.user;
+    }
+
+    /**
+     * Adds the user under its id unless a live user holds it; returns {@code false} then.
+     */
+    boolean insert(User user) {
+        Version version = new Version(user, null);
+        Version head = versions.compute(user.getId(), (id, current) -> {
+            if (current != null && current.user != null) {
+                return current;
+            }
+            // listed before it is visible, so a snapshot scan can not pass over it
+            orderedIds.add(id);
+            version.previous = stamped(current);
+            return version;
+        });
+        if (head != version) {
+            return false;
+        }
+        publish(user.getId(), version);
+        return true;
+    }
+
+    /**
+     * Replaces the live user with {@code change} applied to it, atomically for this id; {@code null} when
+     * there is none. Exceptions thrown by {@code change} leave the user as it was.
+     */
+    User update(long id, UnaryOperator<User> change) {
+        Version head = versions.computeIfPresent(id, (key, current) -> current.user == null
+            ? current
+            : new Version(change.apply(current.user), stamped(current)));
+        if (head == null || head.user == null) {
+            return null;
+        }
+        publish(id, head);
+        return head.user;
+    }
+
+    /**
+     * Deletes the live user and returns it, {@code null} when there is none.
+     */
+    User remove(long id) {
+        User[] removed = new User[1];
+        Version head = versions.computeIfPresent(id, (key, current) -> {
+            if (current.user == null) {
+                return current;
+            }
+            removed[0] = current.user;
+            return new Version(null, stamped(current));
+        });
+        if (removed[0] == null) {
+            return null;
+        }
+        publish(id, head);
+        return removed[0];
+    }
+
+    List<User> findPage(Long afterId, int limit) {
+        return page(afterId, limit, Long.MAX_VALUE);
+    }
+
+    /**
+     * Lazy and weakly consistent: ids deleted while streaming are skipped.
+     */
+    Stream<User> streamAll() {
+        return orderedIds.stream()
+            .map(this::get)
+            .filter(Objects::nonNull);
+    }
+
+    UserSnapshot snapshot() {
+        return snapshot(List.of(this)).getFirst();
+    }
+
+    /**
+     * One snapshot per map, all at the same generation. Maps that share their generation (shards of one store)
+     * get a consistent cut: a write seen in one of them means every write finished before it is seen in the others.
+     */
+    static List<UserSnapshot> snapshot(List<VersionedUserMap> maps) {
+        List<Snapshot> snapshots = new ArrayList<>(maps.size());
+        for (VersionedUserMap map : maps) {
+            Snapshot snapshot = map.new Snapshot();
+            // registered before it takes its generation: a concurrent trim sees it, and holds back for now
+            map.openSnapshots.add(snapshot);
+            snapshots.add(snapshot);
+        }
+        long at = maps.getFirst().generation.getAndIncrement();
+        for (Snapshot snapshot : snapshots) {
+            snapshot.generation = at;
+        }
+        return List.copyOf(snapshots);
+    }
+
+    // the user as the snapshot at the given generation sees it (null: not there); Long.MAX_VALUE: the newest
+    private User visible(long id, long at) {
+        Version version = versions.get(id);
+        if (at == Long.MAX_VALUE) {
+            return version == null ? null : version.user;
+        }
+        for (; version != null; version = version.previous) {
+            // an unstamped version gets a generation past the snapshot's, the one it would have had anyway
+            long stamp = version.generation;
+            if (stamp == UNSTAMPED) {
+                stamp = version.stamp(generation.get());
+            }
+            if (stamp <= at) {
+                return version.user;
+            }
+        }
+        return null;
+    }
+
+    private List<User> page(Long afterId, int limit, long at) {
+        NavigableSet<Long> ids = afterId == null ? orderedIds : orderedIds.tailSet(afterId, false);
+        List<User> page = new ArrayList<>(Math.min(limit, 1024));
+        for (Long id : ids) {
+            User user = visible(id, at);
+            if (user != null) {
+                page.add(user);
+                if (page.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return page;
+    }
+
+    // a version gets linked below a new one: every version but the newest carries its stamp
+    private Version stamped(Version version) {
+        if (version != null) {
+            version.stamp(generation.get());
+        }
+        return version;
+    }
+
+    private void publish(long id, Version head) {
+        head.stamp(generation.get());
+        trim(id, head);
+    }
+
+    // drops what no open or future snapshot can reach: everything below the newest version stamped at or before
+    // the oldest open snapshot, and the whole id once that version is a delete
+    private void trim(long id, Version head) {
+        long horizon = generation.get();
+        for (Snapshot snapshot : openSnapshots) {
+            horizon = Math.min(horizon, snapshot.generation);
+        }
+
+        for (Version version = head; version != null; version = version.previous) {
+            if (version.generation <= horizon) {
+                version.previous = null;
+                if (version == head && head.user == null) {
+                    versions.computeIfPresent(id, (key, current) -> {
+                        if (current != head) {
+                            return current;
+                        }
+                        orderedIds.remove(key);
+                        return null;
+                    });
+                    return;
+                }
+                break;
+            }
+        }
+        if (head.previous != null || head.user == null) {
+            // only ever added here: a writer that found nothing to keep must not drop another one's mark
+            retained.add(id);
+        }
+    }
+
+    private void close(Snapshot snapshot) {
+        openSnapshots.remove(snapshot);
+        for (Long id : retained) {
+            // unmarked first, a trim that still has to keep versions marks it again
+            retained.remove(id);
+            Version head = versions.get(id);
+            if (head != null) {
+                trim(id, head);
+            }
+        }
+    }
+
+    private final class Snapshot implements UserSnapshot {
+
+        // 0 until taken: holds back every trim meanwhile
+        volatile long generation;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        @Override
+        public List<User> findPage(Long afterId, int limit) {
+            checkOpen();
+            return page(afterId, limit, generation);
+        }
+
+        @Override
+        public Stream<User> streamAll() {
+            checkOpen();
+            long at = generation;
+            return orderedIds.stream()
+                .map(id -> visible(id, at))
+                .filter(Objects::nonNull);
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                VersionedUserMap.this.close(this);
+            }
+        }
+
+        private void checkOpen() {
+            if (closed.get()) {
+                throw new IllegalStateException("Snapshot is closed.");
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,169 @@
+package com.trevizan.javacoreplayground.service;
+
+import com.trevizan.javacoreplayground.exception.UserChangesExpiredException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserChange;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+ * showcase:
+ * - change feed as a ring buffer: a writer claims the next sequence with one atomic increment and publishes
+ *   its change into slot (sequence & mask), no lock and no wait on anybody
+ * - readers copy from the ring by sequence; a slot holding an older sequence is not published yet (stop there),
+ *   a newer one means the ring lapped the reader (the changes it wanted are gone)
+ * - long-poll: a reader with nothing to read parks a future; writers only flag that there is something new,
+ *   one pool task completes the parked readers, coalescing bursts of writes into one pass
+ *
+ * trade-off:
+ * - bounded: a consumer more than capacity changes behind is told to reload instead of being waited for
+ * - recorded after the store write returns, so two writes of one id may reach the feed in either order:
+ *   consumers keep the highest version per id, and a delete is final (ids are never reused)
+ * - in memory: sequences restart at 1 with the process, consumers then see an unknown sequence and reload
+ */
+@Component
+public class UserChangeLog implements MeterBinder {
+
+    private record Waiter(long since, int limit, CompletableFuture<List<UserChange>> result) { }
+
+    private final AtomicReferenceArray<UserChange> ring;
+    private final int mask;
+    private final AtomicLong lastSequence = new AtomicLong();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean wakeUpScheduled = new AtomicBoolean();
+    private final Executor executor;
+
+    @Autowired
+    public UserChangeLog(@Value("${app.user-changes.capacity:65536}") int capacity) {
+        this(capacity, ForkJoinPool.commonPool());
+    }
+
+    UserChangeLog(int capacity, Executor executor) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.executor = executor;
+    }
+
+    public void recordCreate(User user) {
+        append(UserChange.Type.CREATED, user.getId(), user);
+    }
+
+    public void recordUpdate(User user) {
+        append(UserChange.Type.UPDATED, user.getId(), user);
+    }
+
+    public void recordDelete(long id) {
+        append(UserChange.Type.DELETED, id, null);
+    }
+
+    public long lastSequence() {
+        return lastSequence.get();
+    }
+
+    /**
+     * Up to {@code limit} changes after sequence {@code since}, oldest first; empty when there are none yet.
+     * Throws {@link UserChangesExpiredException} when some of them were already overwritten, or when
+     * {@code since} was never handed out (a restart).
+     */
+    public List<UserChange> read(long since, int limit) {
+        long last = lastSequence.get();
+        if (since < 0 || since > last || last - since > ring.length()) {
+            throw new UserChangesExpiredException(since, last);
+        }
+        List<UserChange> changes = new ArrayList<>((int) Math.min(limit, last - since));
+        for (long sequence = since + 1; sequence <= last && changes.size() < limit; sequence++) {
+            UserChange change = ring.get(slot(sequence));
+            if (change == null || change.sequence() < sequence) {
+                // claimed, not published yet: the next read picks it up
+                break;
+            }
+            if (change.sequence() > sequence) {
+                throw new UserChangesExpiredException(since, last);
+            }
+            changes.add(change);
+        }
+        return changes;
+    }
+
+    /**
+     * Like {@link #read(long, int)}, but with nothing to read the future completes once a change arrives,
+     * or empty after {@code timeout}. No thread waits in the meantime.
+     */
+    public CompletableFuture<List<UserChange>> await(long since, int limit, Duration timeout) {
+        List<UserChange> changes = read(since, limit);
+        if (!changes.isEmpty() || timeout.isZero()) {
+            return CompletableFuture.completedFuture(changes);
+        }
+        Waiter waiter = new Waiter(since, limit, new CompletableFuture<>());
+        waiters.add(waiter);
+        waiter.result().whenComplete((result, error) -> waiters.remove(waiter));
+        // a write between the read above and the add found nobody to wake
+        wake(waiter);
+        waiter.result().completeOnTimeout(List.of(), timeout.toNanos(), TimeUnit.NANOSECONDS);
+        return waiter.result();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.changes.sequence", lastSequence, AtomicLong::get)
+            .register(registry);
+        Gauge.builder("user.changes.waiters", waiters, Queue::size)
+            .register(registry);
+    }
+
+    private void append(UserChange.Type type, long id, User user) {
+        long sequence = lastSequence.incrementAndGet();
+        ring.set(slot(sequence), new UserChange(sequence, type, id, user));
+        // the writer's whole share of the long-poll: one flag, the pool does the rest
+        if (!waiters.isEmpty() && wakeUpScheduled.compareAndSet(false, true)) {
+            executor.execute(this::wakeWaiters);
+        }
+    }
+
+    private void wakeWaiters() {
+        // cleared first: a write during this pass schedules the next one
+        wakeUpScheduled.set(false);
+        for (Waiter waiter : waiters) {
+            wake(waiter);
+        }
+    }
+
+    private void wake(Waiter waiter) {
+        if (waiter.result().isDone()) {
+            return;
+        }
+        try {
+            List<UserChange> changes = read(waiter.since(), waiter.limit());
+            if (!changes.isEmpty()) {
+                waiter.result().complete(changes);
+            }
+        } catch (UserChangesExpiredException ex) {
+            waiter.result().completeExceptionally(ex);
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence & mask);
+    }
+
+}
@@ -1,49 +1,341 @@
 package com.trevizan.javacoreplayground.service;
 
+import com.trevizan.javacoreplayground.exception.DuplicateEmailException;
 import com.trevizan.javacoreplayground.exception.InvalidUserException;
 import com.trevizan.javacoreplayground.exception.UserNotFoundException;
+import com.trevizan.javacoreplayground.exception.UserSnapshotExpiredException;
+import com.trevizan.javacoreplayground.exception.UserVersionConflictException;
 import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserBatchResult.Status;
+import com.trevizan.javacoreplayground.model.UserChange;
+import com.trevizan.javacoreplayground.model.UserImportResult;
+import com.trevizan.javacoreplayground.model.UserPage;
+import com.trevizan.javacoreplayground.model.UserSearchKey;
+import com.trevizan.javacoreplayground.model.UserSearchPage;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
+import com.trevizan.javacoreplayground.repository.UserDump;
 import com.trevizan.javacoreplayground.repository.UserRepository;
+import com.trevizan.javacoreplayground.repository.UserSnapshot;
 
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
 
 import org.springframework.stereotype.Service;
 
 @Service
 public class UserService {
 
+    static final int MAX_PAGE_SIZE = 1000;
+    public static final int MAX_BATCH_SIZE = 10_000;
+    static final int IMPORT_BATCH_SIZE = 1000;
+
+    enum Operation {
+        CREATE, CREATE_BATCH, GET_BY_ID, GET_BY_EMAIL, GET_ALL, GET_PAGE, OPEN_SNAPSHOT, GET_SNAPSHOT_PAGE, CLOSE_SNAPSHOT,
+        SEARCH, UPDATE, UPDATE_BATCH, DELETE, DELETE_BATCH, AWAIT_CHANGES, STREAM_ALL, EXPORT, IMPORT
+    }
+
     private final UserRepository userRepository;
+    private final UserChangeLog changeLog;
+    private final UserSnapshots snapshots;
+    private final LayerTimers<Operation> timers;
 
-    public UserService(UserRepository userRepository) {
+    public UserService(
+        UserRepository userRepository,
+        UserChangeLog changeLog,
+        UserSnapshots snapshots,
+        MeterRegistry meterRegistry
+    ) {
         this.userRepository = userRepository;
+        this.changeLog = changeLog;
+        this.snapshots = snapshots;
+        this.timers = new LayerTimers<>(meterRegistry, "service", Operation.class);
     }
 
     public User createUser(User user) {
-        if (user.getName() == null || user.getEmail() == null) {
-            throw new InvalidUserException("User name and email are required.");
-        }
-        return userRepository.save(user);
+        return timers.time(Operation.CREATE, () -> {
+            validate(user);
+            User created = userRepository.save(user);
+            changeLog.recordCreate(created);
+            return created;
+        });
+    }
+
+    public List<UserBatchResult> createUsers(List<User> users) {
+        return timers.time(Operation.CREATE_BATCH, () -> {
+            checkBatchSize(users);
+            if (users.isEmpty()) {
+                return List.of();
+            }
+
+            // one allocator call for the whole batch instead of one per user; ids of rejected items are skipped
+            long firstId = userRepository.reserveIds(users.size());
+            UserBatchResult[] results = new UserBatchResult[users.size()];
+            List<User> validUsers = new ArrayList<>(users.size());
+            int[] positions = new int[users.size()];
+
+            for (int i = 0; i < users.size(); i++) {
+                User user = users.get(i);
+                try {
+                    validate(user);
+                    positions[validUsers.size()] = i;
+                    validUsers.add(new User(firstId + i, user.getName(), user.getEmail()));
+                } catch (InvalidUserException ex) {
+                    results[i] = UserBatchResult.failure(i, Status.INVALID, ex.getMessage());
+                }
+            }
+
+            List<UserBatchResult> inserted = userRepository.insertAll(validUsers);
+            for (int j = 0; j < inserted.size(); j++) {
+                UserBatchResult result = inserted.get(j);
+                int index = positions[j];
+                results[index] = new UserBatchResult(index, result.status(), result.user(), result.error());
+                if (result.status() == Status.CREATED) {
+                    changeLog.recordCreate(result.user());
+                }
+            }
+            return List.of(results);
+        });
     }
 
     public User getUserById(Long id) {
-        return userRepository.findById(id).orElseThrow(
+        return timers.time(Operation.GET_BY_ID, () -> userRepository.findById(id).orElseThrow(
             () -> new UserNotFoundException(id)
-        );
+        ));
+    }
+
+    public User getUserByEmail(String email) {
+        return timers.time(Operation.GET_BY_EMAIL, () -> userRepository.findByEmail(email).orElseThrow(
+            () -> new UserNotFoundException(email)
+        ));
     }
 
     public List<User> getAllUsers() {
-        return userRepository.findAll();
+        return timers.time(Operation.GET_ALL, userRepository::findAll);
+    }
+
+    public UserPage getUsersPage(Long afterId, int limit) {
+        return timers.time(Operation.GET_PAGE, () -> {
+            int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+            List<User> users = userRepository.findPage(afterId, pageSize);
+
+            // a full page means there may be more; the last id is the cursor for the next one
+            Long nextCursor = users.size() == pageSize ? users.getLast().getId() : null;
+            return new UserPage(users, nextCursor);
+        });
+    }
+
+    /**
+     * Opens a point-in-time view of the users and returns its token, for {@link #getSnapshotPage}.
+     */
+    public String openSnapshot() {
+        return timers.time(Operation.OPEN_SNAPSHOT, () -> snapshots.open(userRepository::snapshot));
+    }
+
+    /**
+     * Like {@link #getUsersPage(Long, int)}, but every page of one token reads the users as they were
+     * when it was opened.
+     */
+    public UserPage getSnapshotPage(String token, Long afterId, int limit) {
+        return timers.time(Operation.GET_SNAPSHOT_PAGE, () -> {
+            int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+            List<User> users;
+            try {
+                users = snapshots.get(token).findPage(afterId, pageSize);
+            } catch (IllegalStateException ex) {
+                // closed between the lookup and the read
+                throw new UserSnapshotExpiredException(token);
+            }
+
+            Long nextCursor = users.size() == pageSize ? users.getLast().getId() : null;
+            return new UserPage(users, nextCursor);
+        });
+    }
+
+    public void closeSnapshot(String token) {
+        timers.time(Operation.CLOSE_SNAPSHOT, () -> snapshots.close(token));
+    }
+
+    /**
+     * One page of users matching the query, by name then id. {@code after} is the {@code nextCursor}
+     * of the previous page, as {@link UserSearchKey#encode()} wrote it.
+     */
+    public UserSearchPage searchUsers(UserSearchQuery query, String after, int limit) {
+        return timers.time(Operation.SEARCH, () -> {
+            if (query.isEmpty()) {
+                throw new InvalidUserException("Search needs a name prefix, a domain or words.");
+            }
+            int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+            List<User> users = userRepository.search(query, parseSearchCursor(after), pageSize);
+
+            UserSearchKey nextCursor = users.size() == pageSize ? UserSearchKey.of(users.getLast()) : null;
+            return new UserSearchPage(users, nextCursor);
+        });
+    }
+
+    /**
+     * Long-poll on the change feed: changes after {@code since} at once if there are any, otherwise
+     * the first ones written within {@code wait}, or none.
+     */
+    public CompletableFuture<List<UserChange>> awaitChanges(long since, int limit, Duration wait) {
+        return timers.timeAsync(
+            Operation.AWAIT_CHANGES,
+            () -> changeLog.await(since, Math.clamp(limit, 1, MAX_PAGE_SIZE), wait)
+        );
+    }
+
+    /**
+     * Every user, read lazily. Recorded when the stream is closed, so the time covers the whole read.
+     */
+    public Stream<User> streamAllUsers() {
+        long start = System.nanoTime();
+        return userRepository.streamAll().onClose(() -> timers.record(Operation.STREAM_ALL, start));
+    }
+
+    /**
+     * Writes every user to the channel in {@link UserDump} format and returns the count. The users are read
+     * from a snapshot: the dump is one point in time, and writers do not wait for it.
+     */
+    public long exportUsers(WritableByteChannel channel) throws IOException {
+        return timers.time(Operation.EXPORT, () -> {
+            try (UserSnapshot snapshot = userRepository.snapshot(); Stream<User> users = snapshot.streamAll()) {
+                return UserDump.write(users.iterator(), channel);
+            }
+        });
+    }
+
+    /**
+     * Loads a {@link UserDump} into the store, ids and versions included, {@value #IMPORT_BATCH_SIZE} users
+     * per {@link UserRepository#importAll(List)} call. Users whose id or email is taken are counted as
+     * conflicts. A damaged dump is an {@link InvalidUserException}; the batches read before the damage stay loaded.
+     */
+    public UserImportResult importUsers(ReadableByteChannel channel) throws IOException {
+        return timers.time(Operation.IMPORT, () -> {
+            long[] counts = new long[2];
+            try {
+                UserDump.read(channel, IMPORT_BATCH_SIZE, batch -> {
+                    for (UserBatchResult result : userRepository.importAll(batch)) {
+                        if (result.status() == Status.CREATED) {
+                            counts[0]++;
+                            changeLog.recordCreate(result.user());
+                        } else {
+                            counts[1]++;
+                        }
+                    }
+                });
+                return new UserImportResult(counts[0], counts[1]);
+            } catch (StreamCorruptedException | EOFException ex) {
+                throw new InvalidUserException(ex.getMessage() + " " + counts[0] + " users were imported before it.");
+            }
+        });
     }
 
     public User updateUser(Long id, User user) {
-        return userRepository.update(id, user)
-            .orElseThrow(() -> new UserNotFoundException(id));
+        return updateUser(id, user, null);
+    }
+
+    public User updateUser(Long id, User user, Long expectedVersion) {
+        return timers.time(Operation.UPDATE, () -> {
+            User updated = userRepository.update(id, user, expectedVersion)
+                .orElseThrow(() -> new UserNotFoundException(id));
+            changeLog.recordUpdate(updated);
+            return updated;
+        });
+    }
+
+    /**
+     * Updates each user by its id. A version greater than zero makes that item conditional,
+     * zero keeps last-writer-wins, like {@link #updateUser(Long, User)}.
+     */
+    public List<UserBatchResult> updateUsers(List<User> users) {
+        return timers.time(Operation.UPDATE_BATCH, () -> {
+            checkBatchSize(users);
+            List<UserBatchResult> results = new ArrayList<>(users.size());
+            for (int i = 0; i < users.size(); i++) {
+                results.add(updateItem(i, users.get(i)));
+            }
+            return results;
+        });
+    }
+
+    public List<UserBatchResult> deleteUsers(List<Long> ids) {
+        return timers.time(Operation.DELETE_BATCH, () -> {
+            checkBatchSize(ids);
+            List<UserBatchResult> results = new ArrayList<>(ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                Long id = ids.get(i);
+                if (id == null) {
+                    results.add(UserBatchResult.failure(i, Status.INVALID, "User id is required."));
+                } else if (userRepository.deleteById(id)) {
+                    changeLog.recordDelete(id);
+                    results.add(UserBatchResult.success(i, Status.DELETED, null));
+                } else {
+                    results.add(UserBatchResult.failure(
+                        i, Status.NOT_FOUND, new UserNotFoundException(id).getMessage()));
+                }
+            }
+            return results;
+        });
     }
 
     public void deleteUser(Long id) {
-        boolean userDeleted = userRepository.deleteById(id);
-        if (!userDeleted) {
-            throw new UserNotFoundException(id);
+        timers.time(Operation.DELETE, () -> {
+            boolean userDeleted = userRepository.deleteById(id);
+            if (!userDeleted) {
+                throw new UserNotFoundException(id);
+            }
+            changeLog.recordDelete(id);
+        });
+    }
+
+    private UserBatchResult updateItem(int index, User user) {
+        if (user == null || user.getId() == null) {
+            return UserBatchResult.failure(index, Status.INVALID, "User id is required.");
+        }
+        Long expectedVersion = user.getVersion() > 0 ? user.getVersion() : null;
+        try {
+            return userRepository.update(user.getId(), user, expectedVersion)
+                .map(updated -> {
+                    changeLog.recordUpdate(updated);
+                    return UserBatchResult.success(index, Status.UPDATED, updated);
+                })
+                .orElseGet(() -> UserBatchResult.failure(
+                    index, Status.NOT_FOUND, new UserNotFoundException(user.getId()).getMessage()));
+        } catch (UserVersionConflictException | DuplicateEmailException ex) {
+            return UserBatchResult.failure(index, Status.CONFLICT, ex.getMessage());
+        }
+    }
+
+    private static void validate(User user) {
+        if (user == null || user.getName() == null || user.getEmail() == null) {
+            throw new InvalidUserException("User name and email are required.");
+        }
+    }
+
+    private static UserSearchKey parseSearchCursor(String after) {
+        if (after == null || after.isBlank()) {
+            return null;
+        }
+        try {
+            return UserSearchKey.decode(after);
+        } catch (IllegalArgumentException ex) {
+            throw new InvalidUserException("Invalid search cursor: " + after);
+        }
+    }
+
+    private static void checkBatchSize(List<?> items) {
+        if (items.size() > MAX_BATCH_SIZE) {
+            throw new InvalidUserException("Batch size must not exceed " + MAX_BATCH_SIZE + " items.");
         }
     }
 
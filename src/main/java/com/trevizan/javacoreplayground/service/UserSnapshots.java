@@ -0,0 +1,115 @@
+package com.trevizan.javacoreplayground.service;
+
+import com.trevizan.javacoreplayground.exception.UserSnapshotExpiredException;
+import com.trevizan.javacoreplayground.repository.UserSnapshot;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Open repository snapshots by token, so one export can be read page by page over several requests.
+ * <ul>
+ *   <li>a snapshot idle for longer than {@code idle-timeout} is closed, every read restarts the clock</li>
+ *   <li>at most {@code max-open} at once: opening one more closes the longest idle, since the store keeps
+ *       the old versions every open snapshot needs</li>
+ * </ul>
+ */
+@Component
+public class UserSnapshots implements MeterBinder {
+
+    private static final class Entry {
+
+        final UserSnapshot snapshot;
+        volatile long lastUsed;
+
+        Entry(UserSnapshot snapshot, long lastUsed) {
+            this.snapshot = snapshot;
+            this.lastUsed = lastUsed;
+        }
+
+    }
+
+    private final Map<String, Entry> open = new ConcurrentHashMap<>();
+    private final long idleTimeoutNanos;
+    private final int maxOpen;
+    private final LongSupplier clock;
+
+    @Autowired
+    public UserSnapshots(
+        @Value("${app.user-snapshots.idle-timeout:5m}") Duration idleTimeout,
+        @Value("${app.user-snapshots.max-open:16}") int maxOpen
+    ) {
+        this(idleTimeout, maxOpen, System::nanoTime);
+    }
+
+    UserSnapshots(Duration idleTimeout, int maxOpen, LongSupplier clock) {
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.maxOpen = Math.max(maxOpen, 1);
+        this.clock = clock;
+    }
+
+    /**
+     * Opens a snapshot and returns its token.
+     */
+    public String open(Supplier<UserSnapshot> opener) {
+        closeIdle();
+        while (open.size() >= maxOpen) {
+            open.entrySet().stream()
+                .min(Comparator.comparingLong(entry -> entry.getValue().lastUsed))
+                .ifPresent(entry -> close(entry.getKey()));
+        }
+        String token = UUID.randomUUID().toString();
+        open.put(token, new Entry(opener.get(), clock.getAsLong()));
+        return token;
+    }
+
+    /**
+     * The snapshot of the token; throws {@link UserSnapshotExpiredException} when it was closed or never opened.
+     */
+    public UserSnapshot get(String token) {
+        closeIdle();
+        Entry entry = open.get(token);
+        if (entry == null) {
+            throw new UserSnapshotExpiredException(token);
+        }
+        entry.lastUsed = clock.getAsLong();
+        return entry.snapshot;
+    }
+
+    public void close(String token) {
+        Entry entry = open.remove(token);
+        if (entry != null) {
+            entry.snapshot.close();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("user.snapshots.open", open, Map::size)
+            .register(registry);
+    }
+
+    // a handful of entries: checked on every call instead of by a scheduler
+    private void closeIdle() {
+        long now = clock.getAsLong();
+        open.forEach((token, entry) -> {
+            if (now - entry.lastUsed > idleTimeoutNanos) {
+                close(token);
+            }
+        });
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.trevizan.javacoreplayground.service.external;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/*
+ * showcase:
+ * - micro-batching: validations submitted within one window are sent as a single bulk call
+ * - the first request of a batch arms the window timer, reaching maxSize sends the batch right away
+ * - callers get a future each, nobody waits on a thread for the window to close
+ *
+ * trade-off:
+ * - up to one window of extra latency per validation, in exchange for far fewer calls under load
+ * - one failed bulk call (after retries) fails every validation of that batch
+ */
+final class ExternalUserValidationBatcher {
+
+    private final Function<List<ExternalUserValidationRequest>, CompletableFuture<List<Boolean>>> bulkCall;
+    private final ScheduledExecutorService scheduler;
+    private final long windowNanos;
+    private final int maxSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // guarded by lock
+    private List<Pending> pending = new ArrayList<>();
+
+    ExternalUserValidationBatcher(
+        Function<List<ExternalUserValidationRequest>, CompletableFuture<List<Boolean>>> bulkCall,
+        ScheduledExecutorService scheduler,
+        Duration window,
+        int maxSize
+    ) {
+        this.bulkCall = bulkCall;
+        this.scheduler = scheduler;
+        this.windowNanos = window.toNanos();
+        this.maxSize = maxSize;
+    }
+
+    private record Pending(ExternalUserValidationRequest request, CompletableFuture<Boolean> result) { }
+
+    CompletableFuture<Boolean> submit(ExternalUserValidationRequest request) {
+        Pending item = new Pending(request, new CompletableFuture<>());
+        List<Pending> fullBatch = null;
+
+        lock.lock();
+        try {
+            pending.add(item);
+            if (pending.size() == 1) {
+                List<Pending> batch = pending;
+                scheduler.schedule(() -> flush(batch), windowNanos, TimeUnit.NANOSECONDS);
+            }
+            if (pending.size() >= maxSize) {
+                fullBatch = pending;
+                pending = new ArrayList<>();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // the HTTP call is started outside the lock
+        if (fullBatch != null) {
+            dispatch(fullBatch);
+        }
+        return item.result();
+    }
+
+    private void flush(List<Pending> batch) {
+        lock.lock();
+        try {
+            if (pending != batch) {
+                // already sent because it filled up before the window closed
+                return;
+            }
+            pending = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        dispatch(batch);
+    }
+
+    private void dispatch(List<Pending> batch) {
+        List<ExternalUserValidationRequest> requests = batch.stream()
+            .map(Pending::request)
+            .toList();
+
+        CompletableFuture<List<Boolean>> results;
+        try {
+            results = bulkCall.apply(requests);
+        } catch (RuntimeException ex) {
+            results = CompletableFuture.failedFuture(ex);
+        }
+
+        results.whenComplete((valid, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                ? error.getCause()
+                : error;
+            for (int i = 0; i < batch.size(); i++) {
+                if (cause != null) {
+                    batch.get(i).result().completeExceptionally(cause);
+                } else {
+                    batch.get(i).result().complete(valid.get(i));
+                }
+            }
+        });
+    }
+
+}
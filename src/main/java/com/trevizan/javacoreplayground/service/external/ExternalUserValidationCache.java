@@ -0,0 +1,167 @@
+package com.trevizan.javacoreplayground.service.external;
+
+import com.trevizan.javacoreplayground.config.ExternalValidationProperties;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Validation results per (name, email), in front of the external service.
+ * <ul>
+ *   <li>bounded to {@code maxSize}, evicting in insertion order (FIFO)</li>
+ *   <li>{@code valid: true} lives for {@code ttl}, {@code valid: false} for the shorter {@code negativeTtl};
+ *       failures are never cached</li>
+ *   <li>single flight: concurrent misses for one key share the same in-flight call</li>
+ * </ul>
+ */
+@Component
+public class ExternalUserValidationCache implements MeterBinder {
+
+    private record Entry(boolean valid, long expiresAtNanos) { }
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier nanoClock;
+
+    private final Map<ExternalUserValidationRequest, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<ExternalUserValidationRequest> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final Map<ExternalUserValidationRequest, CompletableFuture<Boolean>> inFlight = new ConcurrentHashMap<>();
+
+    // LongAdder: bumped on every validation by many threads, read only when metrics are scraped
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @Autowired
+    public ExternalUserValidationCache(ExternalValidationProperties properties) {
+        this(
+            properties.cache().maxSize(),
+            properties.cache().ttl(),
+            properties.cache().negativeTtl(),
+            System::nanoTime
+        );
+    }
+
+    ExternalUserValidationCache(int maxSize, Duration ttl, Duration negativeTtl, LongSupplier nanoClock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Returns the cached result, or joins/starts the load for this key.
+     * The returned future is never the shared one, so a caller cancelling it does not affect the others.
+     */
+    public CompletableFuture<Boolean> get(
+        ExternalUserValidationRequest request,
+        Function<ExternalUserValidationRequest, CompletableFuture<Boolean>> loader
+    ) {
+        Entry entry = entries.get(request);
+        if (entry != null) {
+            if (entry.expiresAtNanos() - nanoClock.getAsLong() > 0) {
+                hits.increment();
+                return CompletableFuture.completedFuture(entry.valid());
+            }
+            expirations.increment();
+        }
+        misses.increment();
+
+        CompletableFuture<Boolean> load = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlight.putIfAbsent(request, load);
+        if (existing != null) {
+            coalesced.increment();
+            return existing.copy();
+        }
+
+        CompletableFuture<Boolean> result;
+        try {
+            result = loader.apply(request);
+        } catch (RuntimeException ex) {
+            result = CompletableFuture.failedFuture(ex);
+        }
+
+        result.whenComplete((valid, error) -> {
+            // cached before the in-flight entry goes away, so no caller slips through to a second call
+            if (error == null) {
+                put(request, valid);
+            }
+            inFlight.remove(request, load);
+            if (error == null) {
+                load.complete(valid);
+            } else {
+                load.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause()
+                    : error);
+            }
+        });
+        return load.copy();
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+        insertionOrder.clear();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("external.validation.cache.gets", hits, LongAdder::sum)
+            .tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("external.validation.cache.gets", misses, LongAdder::sum)
+            .tag("result", "miss")
+            .register(registry);
+        FunctionCounter.builder("external.validation.cache.coalesced", coalesced, LongAdder::sum)
+            .description("misses that joined a call already in flight")
+            .register(registry);
+        FunctionCounter.builder("external.validation.cache.evictions", evictions, LongAdder::sum)
+            .tag("cause", "size")
+            .register(registry);
+        FunctionCounter.builder("external.validation.cache.evictions", expirations, LongAdder::sum)
+            .tag("cause", "expired")
+            .register(registry);
+        Gauge.builder("external.validation.cache.size", entries, Map::size)
+            .register(registry);
+    }
+
+    private void put(ExternalUserValidationRequest request, boolean valid) {
+        if (maxSize == 0) {
+            return;
+        }
+        long expiresAt = nanoClock.getAsLong() + (valid ? ttlNanos : negativeTtlNanos);
+        // a refreshed key keeps its place in the eviction order
+        if (entries.put(request, new Entry(valid, expiresAt)) != null) {
+            return;
+        }
+        insertionOrder.add(request);
+        while (entries.size() > maxSize) {
+            ExternalUserValidationRequest oldest = insertionOrder.poll();
+            if (oldest == null) {
+                return;
+            }
+            if (entries.remove(oldest) != null) {
+                evictions.increment();
+            }
+        }
+    }
+
+}
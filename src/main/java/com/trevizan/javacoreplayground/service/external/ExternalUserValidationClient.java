@@ -1,79 +1,265 @@
 package com.trevizan.javacoreplayground.service.external;
 
+import com.trevizan.javacoreplayground.config.ExternalValidationProperties;
+import com.trevizan.javacoreplayground.exception.ExceptionCounters;
 import com.trevizan.javacoreplayground.exception.ExternalServiceException;
+import com.trevizan.javacoreplayground.exception.ExternalServiceOverloadedException;
+import com.trevizan.javacoreplayground.exception.ExternalServiceRateLimitedException;
+import com.trevizan.javacoreplayground.service.LayerTimers;
 
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import io.github.resilience4j.decorators.Decorators;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.github.resilience4j.ratelimiter.RequestNotPermitted;
 import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
 
-import java.net.SocketTimeoutException;
+import jakarta.annotation.PreDestroy;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
 
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpStatusCodeException;
-import org.springframework.web.client.ResourceAccessException;
-import org.springframework.web.client.RestTemplate;
 
 @Service
 public class ExternalUserValidationClient {
 
-    private final RestTemplate restTemplate;
+    enum Operation {
+        VALIDATE, VALIDATE_ASYNC, VALIDATE_BATCHED, VALIDATE_ALL
+    }
+
+    private static final String VALIDATE_URL = "http://localhost:8099/api/v1/external/users/validate";
+    private static final String VALIDATE_BATCH_URL = "http://localhost:8099/api/v1/external/users/validate:batch";
+    // a bulkhead slot frees up as soon as one in-flight validation ends, there is no better estimate
+    private static final Duration OVERLOADED_RETRY_AFTER = Duration.ofSeconds(1);
+
+    private final ExternalUserValidationTransport transport;
     private final CircuitBreaker circuitBreaker;
     private final Retry retry;
+    private final Bulkhead bulkhead;
+    private final RateLimiter rateLimiter;
+    // retry backoff and batch windows: waiting never holds a thread
+    private final ScheduledExecutorService scheduler;
+    private final ExternalUserValidationBatcher batcher;
+    private final ExternalUserValidationCache cache;
+    // single and bulk calls have different latencies, each is hedged and timed against its own window
+    private final HedgedCalls singleCalls;
+    private final HedgedCalls batchCalls;
+    private final LayerTimers<Operation> timers;
+    private final ExceptionCounters exceptionCounters;
 
     public ExternalUserValidationClient(
-        RestTemplate restTemplate,
+        ExternalUserValidationTransport transport,
         CircuitBreakerRegistry circuitBreakerRegistry,
-        RetryRegistry retryRegistry
+        RetryRegistry retryRegistry,
+        BulkheadRegistry bulkheadRegistry,
+        RateLimiterRegistry rateLimiterRegistry,
+        ExternalValidationProperties properties,
+        ExternalUserValidationCache cache,
+        MeterRegistry meterRegistry,
+        ExceptionCounters exceptionCounters
     ) {
-        this.restTemplate = restTemplate;
+        this.transport = transport;
+        this.cache = cache;
         this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("external-user-validation");
         this.retry = retryRegistry.retry("external-user-validation");
+        this.bulkhead = bulkheadRegistry.bulkhead("external-user-validation");
+        this.rateLimiter = rateLimiterRegistry.rateLimiter("external-user-validation");
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("external-validation-timer").daemon().factory()
+        );
+        this.singleCalls = hedgedCalls(properties);
+        this.batchCalls = hedgedCalls(properties);
+        this.timers = new LayerTimers<>(meterRegistry, "external", Operation.class);
+        this.exceptionCounters = exceptionCounters;
+        this.batcher = new ExternalUserValidationBatcher(
+            this::validateBulk,
+            scheduler,
+            properties.batch().window(),
+            properties.batch().maxSize()
+        );
     }
 
+    /**
+     * Blocking; concurrent callers for the same pair wait on one call instead of each making their own.
+     */
     public boolean validate(String name, String email) {
-        return Decorators.ofSupplier(() -> doValidate(name, email))
-            .withRetry(retry)
-            .withCircuitBreaker(circuitBreaker)
-            .get();
+        return timers.time(Operation.VALIDATE, () -> {
+            try {
+                return validateCached(name, email);
+            } catch (RuntimeException ex) {
+                exceptionCounters.record(ex);
+                throw ex;
+            }
+        });
     }
 
-    private boolean doValidate(String name, String email) {
-        try {
-            ExternalUserValidationResponse response =
-                restTemplate.postForObject(
-                    "http://localhost:8099/api/v1/external/users/validate",
-                    new ExternalUserValidationRequest(name, email),
-                    ExternalUserValidationResponse.class
-                );
-
-            if (response == null) {
-                throw new ExternalServiceException("Empty response from external service.");
+    /**
+     * One call per validation, with retry and circuit breaker applied to that call.
+     * Hedged and given an adaptive timeout once enough latencies were seen (see {@link HedgedCalls}).
+     */
+    public CompletableFuture<Boolean> validateAsync(String name, String email) {
+        return timed(Operation.VALIDATE_ASYNC, () -> cache.get(
+            new ExternalUserValidationRequest(name, email),
+            request -> decorateAsync(singleCalls, () -> validateLater(request))
+        ));
+    }
+
+    /**
+     * Coalesced with other validations submitted within {@code app.external-validation.batch.window}
+     * into one bulk call; retry and circuit breaker apply to the whole batch.
+     */
+    public CompletableFuture<Boolean> validateBatchedAsync(String name, String email) {
+        return timed(
+            Operation.VALIDATE_BATCHED,
+            () -> cache.get(new ExternalUserValidationRequest(name, email), batcher::submit)
+        );
+    }
+
+    /**
+     * One bulk call for all requests, results in request order.
+     */
+    public CompletableFuture<List<Boolean>> validateAllAsync(List<ExternalUserValidationRequest> requests) {
+        return timed(Operation.VALIDATE_ALL, () -> validateBulk(requests));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private boolean validateCached(String name, String email) {
+        CompletableFuture<Boolean> result = cache.get(
+            new ExternalUserValidationRequest(name, email),
+            request -> {
+                try {
+                    return CompletableFuture.completedFuture(
+                        Decorators.ofSupplier(() -> singleCalls.timed(() -> validateNow(request)))
+                            .withRateLimiter(rateLimiter)
+                            .withRetry(retry)
+                            .withCircuitBreaker(circuitBreaker)
+                            .withBulkhead(bulkhead)
+                            .get()
+                    );
+                } catch (RuntimeException ex) {
+                    throw shed(ex);
+                }
+            }
+        );
+        return await(result);
+    }
+
+    // the batcher's bulk call: not timed or counted again, its validations already are (validate_batched)
+    private CompletableFuture<List<Boolean>> validateBulk(List<ExternalUserValidationRequest> requests) {
+        if (requests.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        return decorateAsync(batchCalls, () -> transport
+            .postAsync(VALIDATE_BATCH_URL, requests, ExternalUserValidationResponse[].class)
+            .thenApply(responses -> toResults(requests, responses)));
+    }
+
+    private <T> CompletableFuture<T> timed(Operation operation, Supplier<CompletableFuture<T>> call) {
+        return timers.timeAsync(operation, call).whenComplete((value, error) -> {
+            if (error != null) {
+                exceptionCounters.record(error);
             }
+        });
+    }
 
-            return response.valid();
-        } catch (HttpStatusCodeException ex) {
-            if (ex.getStatusCode().is4xxClientError()) {
-                throw new IllegalArgumentException(
-                    "Invalid request to external service: " + ex.getStatusCode()
-                );
+    private static boolean await(CompletableFuture<Boolean> result) {
+        try {
+            return result.join();
+        } catch (CompletionException ex) {
+            // callers of the blocking API get the same exceptions as before the cache
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
+            throw ex;
+        }
+    }
 
-            throw new ExternalServiceException(
-                "External service returned error: " + ex.getStatusCode(),
-                ex
+    private HedgedCalls hedgedCalls(ExternalValidationProperties properties) {
+        ExternalValidationProperties.Latency window = properties.latency();
+        return new HedgedCalls(
+            new LatencyTracker(window.window(), window.minSamples(), window.refreshInterval(), System::nanoTime),
+            scheduler,
+            properties.hedge(),
+            properties.timeout(),
+            System::nanoTime
+        );
+    }
+
+    /*
+     * outermost first:
+     * - bulkhead: bounds validations in flight, retries and backoff included, rejects at once when full
+     * - circuit breaker, then retry
+     * - rate limiter: every attempt, retries included, takes a permit, so retries cannot multiply the load
+     * - the hedged call: retry wraps it, so each retry attempt is hedged and timed again
+     */
+    private <T> CompletableFuture<T> decorateAsync(HedgedCalls calls, Supplier<CompletionStage<T>> call) {
+        return Decorators.ofCompletionStage(() -> calls.<T>call(call))
+            .withRateLimiter(rateLimiter)
+            .withRetry(retry, scheduler)
+            .withCircuitBreaker(circuitBreaker)
+            .withBulkhead(bulkhead)
+            .get()
+            .toCompletableFuture()
+            .exceptionally(error -> {
+                throw shed(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            });
+    }
+
+    // rejections become domain exceptions that carry when to come back (Retry-After)
+    private RuntimeException shed(Throwable error) {
+        if (error instanceof RequestNotPermitted) {
+            // permits come back with the next period, at the latest one full period from now
+            return new ExternalServiceRateLimitedException(
+                rateLimiter.getRateLimiterConfig().getLimitRefreshPeriod(),
+                error
             );
-        } catch (ResourceAccessException ex) {
-            throw mapResourceAccessException(ex);
         }
+        if (error instanceof BulkheadFullException) {
+            return new ExternalServiceOverloadedException(OVERLOADED_RETRY_AFTER, error);
+        }
+        return error instanceof RuntimeException runtime ? runtime : new CompletionException(error);
+    }
+
+    private boolean validateNow(ExternalUserValidationRequest request) {
+        return transport.post(VALIDATE_URL, request, ExternalUserValidationResponse.class).valid();
+    }
+
+    private CompletableFuture<Boolean> validateLater(ExternalUserValidationRequest request) {
+        return transport.postAsync(VALIDATE_URL, request, ExternalUserValidationResponse.class)
+            .thenApply(ExternalUserValidationResponse::valid);
     }
 
-    private ExternalServiceException mapResourceAccessException(ResourceAccessException ex) {
-        if (ex.getCause() instanceof SocketTimeoutException) {
-            return new ExternalServiceException("External service timeout.", ex);
+    private static List<Boolean> toResults(
+        List<ExternalUserValidationRequest> requests,
+        ExternalUserValidationResponse[] responses
+    ) {
+        if (responses.length != requests.size()) {
+            throw new ExternalServiceException(
+                "External service returned " + responses.length + " results for " + requests.size() + " users."
+            );
         }
-        return new ExternalServiceException("External service unreachable.", ex);
+
+        return Arrays.stream(responses)
+            .map(ExternalUserValidationResponse::valid)
+            .toList();
     }
 
 }
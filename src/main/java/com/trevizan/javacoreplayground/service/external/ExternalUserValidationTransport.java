@@ -0,0 +1,23 @@
+package com.trevizan.javacoreplayground.service.external;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One JSON POST to the validation service, chosen with {@code app.external-validation.transport}.
+ * Failures are reported the same way by every transport:
+ * <ul>
+ *   <li>{@link IllegalArgumentException} for 4xx answers (not retried, not recorded by the circuit breaker)</li>
+ *   <li>{@link com.trevizan.javacoreplayground.exception.ExternalServiceException} for 5xx, timeouts,
+ *       unreachable service and empty or unreadable bodies</li>
+ * </ul>
+ */
+public interface ExternalUserValidationTransport {
+
+    <T> T post(String url, Object request, Class<T> responseType);
+
+    /**
+     * Never throws; failures complete the future exceptionally.
+     */
+    <T> CompletableFuture<T> postAsync(String url, Object request, Class<T> responseType);
+
+}
@@ -0,0 +1,197 @@
+package com.trevizan.javacoreplayground.service.external;
+
+import com.trevizan.javacoreplayground.config.ExternalValidationProperties;
+import com.trevizan.javacoreplayground.exception.ExternalServiceException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * One logical call to the external service, sized by the latencies of the recent ones.
+ * <ul>
+ *   <li>adaptive timeout: each attempt gets {@code multiplier} x the recent p99, clamped to [min, max]</li>
+ *   <li>hedging: when the first attempt has not answered after the recent p95, a second one is sent;
+ *       the first answer wins and the other attempt is abandoned</li>
+ *   <li>hedges are budgeted (a share of calls, at most {@link #MAX_HEDGE_BURST} in a row),
+ *       so a slow backend gets a few more requests, not twice the load</li>
+ * </ul>
+ * Until the window holds enough samples neither applies, and the transport's fixed timeouts are the only bound.
+ * Retry and circuit breaker wrap the whole hedged call: it counts as one attempt, and fails only when every
+ * attempt did.
+ */
+final class HedgedCalls {
+
+    private static final int MAX_HEDGE_BURST = 10;
+    // hedge credit in 1/100 of a hedge: each call earns budgetPercent, each hedge costs 100
+    private static final long HEDGE_COST = 100;
+
+    private final LatencyTracker latency;
+    private final ScheduledExecutorService scheduler;
+    private final ExternalValidationProperties.Hedge hedge;
+    private final ExternalValidationProperties.Timeout timeout;
+    private final LongSupplier nanoClock;
+
+    private final AtomicLong hedgeCredit = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+
+    HedgedCalls(
+        LatencyTracker latency,
+        ScheduledExecutorService scheduler,
+        ExternalValidationProperties.Hedge hedge,
+        ExternalValidationProperties.Timeout timeout,
+        LongSupplier nanoClock
+    ) {
+        this.latency = latency;
+        this.scheduler = scheduler;
+        this.hedge = hedge;
+        this.timeout = timeout;
+        this.nanoClock = nanoClock;
+    }
+
+    <T> CompletableFuture<T> call(Supplier<? extends CompletionStage<T>> attempt) {
+        earnHedgeCredit();
+        long timeoutNanos = timeoutNanos();
+        long hedgeDelayNanos = hedgeDelayNanos();
+
+        CompletableFuture<T> result = new CompletableFuture<>();
+        List<CompletableFuture<T>> attempts = new CopyOnWriteArrayList<>();
+        // attempts not failed yet: the call fails when the last one does
+        AtomicInteger running = new AtomicInteger(1);
+        start(attempt, timeoutNanos, attempts, running, result);
+
+        if (hedgeDelayNanos >= 0 && !result.isDone()) {
+            ScheduledFuture<?> hedgeTimer = scheduler.schedule(() -> {
+                if (result.isDone() || !tryHedge()) {
+                    return;
+                }
+                if (running.getAndIncrement() == 0) {
+                    // the first attempt failed in the meantime, the call is already over
+                    return;
+                }
+                hedges.incrementAndGet();
+                start(attempt, timeoutNanos, attempts, running, result);
+            }, hedgeDelayNanos, TimeUnit.NANOSECONDS);
+            result.whenComplete((value, error) -> hedgeTimer.cancel(false));
+        }
+
+        // the loser is abandoned: its result is dropped, the exchange itself ends within the transport timeout
+        result.whenComplete((value, error) -> attempts.forEach(call -> call.cancel(true)));
+        return result;
+    }
+
+    /**
+     * Blocking calls are not hedged, but their latencies feed the same window.
+     */
+    <T> T timed(Supplier<T> call) {
+        long startedAt = nanoClock.getAsLong();
+        try {
+            return call.get();
+        } finally {
+            latency.record(nanoClock.getAsLong() - startedAt);
+        }
+    }
+
+    long hedges() {
+        return hedges.get();
+    }
+
+    /**
+     * -1 while the window is too small or adaptive timeouts are off.
+     */
+    long timeoutNanos() {
+        if (!timeout.adaptive()) {
+            return -1;
+        }
+        long recent = latency.percentileNanos(timeout.percentile());
+        if (recent < 0) {
+            return -1;
+        }
+        return Math.clamp((long) (recent * timeout.multiplier()), timeout.min().toNanos(), timeout.max().toNanos());
+    }
+
+    /**
+     * -1 while the window is too small or hedging is off.
+     */
+    long hedgeDelayNanos() {
+        if (!hedge.enabled()) {
+            return -1;
+        }
+        long recent = latency.percentileNanos(hedge.percentile());
+        if (recent < 0) {
+            return -1;
+        }
+        return Math.max(recent, hedge.minDelay().toNanos());
+    }
+
+    private <T> void start(
+        Supplier<? extends CompletionStage<T>> attempt,
+        long timeoutNanos,
+        List<CompletableFuture<T>> attempts,
+        AtomicInteger running,
+        CompletableFuture<T> result
+    ) {
+        long startedAt = nanoClock.getAsLong();
+        CompletableFuture<T> call;
+        try {
+            call = attempt.get().toCompletableFuture();
+        } catch (RuntimeException ex) {
+            call = CompletableFuture.failedFuture(ex);
+        }
+        attempts.add(call);
+        if (timeoutNanos > 0) {
+            call.orTimeout(timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+
+        call.whenComplete((value, error) -> {
+            Throwable cause = unwrap(error);
+            if (!(cause instanceof CancellationException)) {
+                // timed out attempts count at their timeout, so a slowing backend raises the next one
+                latency.record(nanoClock.getAsLong() - startedAt);
+            }
+            if (error == null) {
+                result.complete(value);
+            } else if (running.decrementAndGet() == 0) {
+                result.completeExceptionally(mapTimeout(cause, timeoutNanos));
+            }
+        });
+    }
+
+    private void earnHedgeCredit() {
+        hedgeCredit.accumulateAndGet(
+            hedge.budgetPercent(),
+            (credit, earned) -> Math.min(credit + earned, MAX_HEDGE_BURST * HEDGE_COST)
+        );
+    }
+
+    private boolean tryHedge() {
+        return hedgeCredit.getAndUpdate(credit -> credit >= HEDGE_COST ? credit - HEDGE_COST : credit) >= HEDGE_COST;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static Throwable mapTimeout(Throwable cause, long timeoutNanos) {
+        if (cause instanceof TimeoutException) {
+            return new ExternalServiceException(
+                "External service timeout after " + Duration.ofNanos(timeoutNanos).toMillis() + "ms (adaptive).",
+                cause
+            );
+        }
+        return cause;
+    }
+
+}
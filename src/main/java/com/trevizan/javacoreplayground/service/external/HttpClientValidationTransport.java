@@ -0,0 +1,141 @@
+package com.trevizan.javacoreplayground.service.external;
+
+import com.trevizan.javacoreplayground.exception.ExternalServiceException;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpConnectTimeoutException;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+/**
+ * JDK {@link HttpClient} preferring HTTP/2 ({@code transport: http2}).
+ * <ul>
+ *   <li>over https, ALPN negotiates HTTP/2 and many in-flight validations share few connections</li>
+ *   <li>over plain http every call is HTTP/1.1: the client never tries an h2c upgrade on a request with a
+ *       body, and every call here is a POST, so each in-flight call holds its own connection</li>
+ *   <li>{@code sendAsync} is non-blocking: no thread waits on a socket while the service answers</li>
+ *   <li>at most {@code maxInFlight} calls at once; one more fails at once instead of opening another
+ *       connection, like an exhausted pool on the rest-template transport</li>
+ * </ul>
+ */
+public class HttpClientValidationTransport implements ExternalUserValidationTransport, AutoCloseable {
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final Duration responseTimeout;
+    private final Semaphore inFlight;
+
+    public HttpClientValidationTransport(
+        ObjectMapper objectMapper,
+        Duration connectTimeout,
+        Duration responseTimeout,
+        int maxInFlight
+    ) {
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_2)
+            .connectTimeout(connectTimeout)
+            .build();
+        this.objectMapper = objectMapper;
+        this.responseTimeout = responseTimeout;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    @Override
+    public <T> T post(String url, Object request, Class<T> responseType) {
+        try {
+            return postAsync(url, request, responseType).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> postAsync(String url, Object request, Class<T> responseType) {
+        HttpRequest httpRequest;
+        try {
+            httpRequest = HttpRequest.newBuilder(URI.create(url))
+                .timeout(responseTimeout)
+                .header("Content-Type", "application/json")
+                .header("Accept", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(request)))
+                .build();
+        } catch (JacksonException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+
+        if (!inFlight.tryAcquire()) {
+            return CompletableFuture.failedFuture(
+                new ExternalServiceException("Too many in-flight calls to external service."));
+        }
+        CompletableFuture<HttpResponse<byte[]>> exchange;
+        try {
+            exchange = httpClient.sendAsync(httpRequest, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (RuntimeException ex) {
+            inFlight.release();
+            throw ex;
+        }
+
+        return exchange
+            .whenComplete((ignored, error) -> inFlight.release())
+            .handle((response, error) -> {
+                if (error != null) {
+                    throw mapFailure(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error);
+                }
+                return read(response, responseType);
+            });
+    }
+
+    @Override
+    public void close() {
+        httpClient.close();
+    }
+
+    private <T> T read(HttpResponse<byte[]> response, Class<T> responseType) {
+        int status = response.statusCode();
+        if (status >= 400 && status < 500) {
+            throw new IllegalArgumentException("Invalid request to external service: " + status);
+        }
+        if (status >= 500) {
+            throw new ExternalServiceException("External service returned error: " + status);
+        }
+        if (response.body().length == 0) {
+            throw new ExternalServiceException("Empty response from external service.");
+        }
+
+        try {
+            return objectMapper.readValue(response.body(), responseType);
+        } catch (JacksonException ex) {
+            throw new ExternalServiceException("Unreadable response from external service.", ex);
+        }
+    }
+
+    private static RuntimeException mapFailure(Throwable error) {
+        if (error instanceof HttpConnectTimeoutException || error instanceof ConnectException) {
+            return new ExternalServiceException("External service unreachable.", error);
+        }
+        if (error instanceof HttpTimeoutException) {
+            return new ExternalServiceException("External service timeout.", error);
+        }
+        if (error instanceof IOException) {
+            return new ExternalServiceException("External service unreachable.", error);
+        }
+        return error instanceof RuntimeException runtime ? runtime : new CompletionException(error);
+    }
+
+}
@@ -0,0 +1,81 @@
+package com.trevizan.javacoreplayground.service.external;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/*
+ * showcase:
+ * - the last N call latencies in a lock-free ring, percentiles read from a sorted snapshot
+ * - the snapshot is rebuilt at most once per refresh interval, by one thread, the others keep the old one
+ *
+ * trade-off:
+ * - percentiles lag the traffic by up to one refresh interval
+ * - a window of N samples forgets slow calls once N faster ones came in, by design: it follows the backend
+ */
+final class LatencyTracker {
+
+    private record Snapshot(long takenAtNanos, long[] sorted) { }
+
+    private final AtomicLongArray samples;
+    private final int mask;
+    private final AtomicLong recorded = new AtomicLong();
+    private final int minSamples;
+    private final long refreshNanos;
+    private final LongSupplier nanoClock;
+
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile Snapshot snapshot;
+
+    LatencyTracker(int window, int minSamples, Duration refreshInterval, LongSupplier nanoClock) {
+        // power of two, so the slot is a mask instead of a modulo
+        int capacity = Integer.highestOneBit(Math.max(1, window - 1)) << 1;
+        this.samples = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.minSamples = Math.min(minSamples, capacity);
+        this.refreshNanos = refreshInterval.toNanos();
+        this.nanoClock = nanoClock;
+        this.snapshot = new Snapshot(nanoClock.getAsLong() - refreshNanos, new long[0]);
+    }
+
+    void record(long nanos) {
+        samples.set((int) (recorded.getAndIncrement() & mask), nanos);
+    }
+
+    /**
+     * Latency at {@code percentile} (0..1) over the window, or -1 while fewer than {@code minSamples} were recorded.
+     */
+    long percentileNanos(double percentile) {
+        long[] sorted = snapshot().sorted();
+        if (sorted.length < minSamples || sorted.length == 0) {
+            return -1;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.clamp(index, 0, sorted.length - 1)];
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        long now = nanoClock.getAsLong();
+        if (now - current.takenAtNanos() < refreshNanos || !refreshing.compareAndSet(false, true)) {
+            return current;
+        }
+        try {
+            int size = (int) Math.min(recorded.get(), samples.length());
+            long[] sorted = new long[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = samples.get(i);
+            }
+            Arrays.sort(sorted);
+            Snapshot fresh = new Snapshot(now, sorted);
+            snapshot = fresh;
+            return fresh;
+        } finally {
+            refreshing.set(false);
+        }
+    }
+
+}
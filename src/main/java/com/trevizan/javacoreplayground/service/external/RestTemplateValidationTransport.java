@@ -0,0 +1,80 @@
+package com.trevizan.javacoreplayground.service.external;
+
+import com.trevizan.javacoreplayground.exception.ExternalServiceException;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.hc.core5.http.ConnectionRequestTimeoutException;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Blocking httpclient5 behind {@link RestTemplate} ({@code transport: rest-template}, the default).
+ * Async calls still hold a thread for the whole exchange: one of a fixed pool, or a virtual thread.
+ */
+public class RestTemplateValidationTransport implements ExternalUserValidationTransport, AutoCloseable {
+
+    private final RestTemplate restTemplate;
+    private final ExecutorService executor;
+
+    public RestTemplateValidationTransport(RestTemplate restTemplate, int threads, boolean virtualThreads) {
+        this.restTemplate = restTemplate;
+        this.executor = virtualThreads
+            ? Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("external-validation-", 0).factory())
+            : Executors.newFixedThreadPool(
+                threads,
+                Thread.ofPlatform().name("external-validation-", 0).daemon().factory()
+            );
+    }
+
+    @Override
+    public <T> T post(String url, Object request, Class<T> responseType) {
+        try {
+            T response = restTemplate.postForObject(url, request, responseType);
+
+            if (response == null) {
+                throw new ExternalServiceException("Empty response from external service.");
+            }
+
+            return response;
+        } catch (HttpStatusCodeException ex) {
+            if (ex.getStatusCode().is4xxClientError()) {
+                throw new IllegalArgumentException(
+                    "Invalid request to external service: " + ex.getStatusCode()
+                );
+            }
+
+            throw new ExternalServiceException(
+                "External service returned error: " + ex.getStatusCode(),
+                ex
+            );
+        } catch (ResourceAccessException ex) {
+            throw mapResourceAccessException(ex);
+        }
+    }
+
+    @Override
+    public <T> CompletableFuture<T> postAsync(String url, Object request, Class<T> responseType) {
+        return CompletableFuture.supplyAsync(() -> post(url, request, responseType), executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private ExternalServiceException mapResourceAccessException(ResourceAccessException ex) {
+        if (ex.getCause() instanceof ConnectionRequestTimeoutException) {
+            return new ExternalServiceException("No connection to external service available in the pool.", ex);
+        }
+        if (ex.getCause() instanceof SocketTimeoutException) {
+            return new ExternalServiceException("External service timeout.", ex);
+        }
+        return new ExternalServiceException("External service unreachable.", ex);
+    }
+
+}
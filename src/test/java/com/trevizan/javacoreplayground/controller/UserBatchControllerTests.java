@@ -0,0 +1,150 @@
+package com.trevizan.javacoreplayground.controller;
+
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserBatchResult.Status;
+import com.trevizan.javacoreplayground.service.UserService;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserBatchControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private UserService userService;
+
+    @Test
+    void shouldReturnPerItemStatusesWhenCreatingBatch() throws Exception {
+        when(userService.createUsers(anyList())).thenReturn(List.of(
+            UserBatchResult.success(0, Status.CREATED, new User(1L, "Anakin", "anakin@skywalker.com", 1L)),
+            UserBatchResult.failure(1, Status.CONFLICT, "User already exists with email: anakin@skywalker.com")
+        ));
+
+        mockMvc.perform(post("/api/v1/users:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    [{"name":"Anakin","email":"anakin@skywalker.com"},
+                     {"name":"Vader","email":"anakin@skywalker.com"}]
+                    """))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].status").value("CREATED"))
+            .andExpect(jsonPath("$[0].id").value(1))
+            .andExpect(jsonPath("$[1].status").value("CONFLICT"))
+            .andExpect(jsonPath("$[1].error").value("User already exists with email: anakin@skywalker.com"));
+    }
+
+    @Test
+    void shouldStreamResultsWhenCreatingNdjsonBatch() throws Exception {
+        when(userService.createUsers(anyList())).thenReturn(List.of(
+            UserBatchResult.success(0, Status.CREATED, new User(1L, "Anakin", "anakin@skywalker.com", 1L)),
+            UserBatchResult.failure(1, Status.INVALID, "User name and email are required.")
+        ));
+
+        mockMvc.perform(post("/api/v1/users:batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("""
+                    {"name":"Anakin","email":"anakin@skywalker.com"}
+                    not json
+                    """))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string(startsWith(
+                "{\"index\":0,\"status\":\"CREATED\",\"id\":1,\"version\":1,\"error\":null}\n"
+                    + "{\"index\":1,\"status\":\"INVALID\",\"id\":null,\"version\":null,"
+                    + "\"error\":\"Malformed JSON on line 2: Unrecognized token 'not'"
+            )));
+    }
+
+    @Test
+    void shouldRejectOversizedJsonArrayBeforeCallingTheService() throws Exception {
+        String items = String.join(",", Collections.nCopies(
+            UserService.MAX_BATCH_SIZE + 1, "{\"name\":\"Clone\",\"email\":\"ct@kamino.com\"}"));
+
+        mockMvc.perform(post("/api/v1/users:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + items + "]"))
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string("Batch size must not exceed 10000 items."));
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void shouldRejectOversizedUpdateAndDeleteBatchesBeforeCallingTheService() throws Exception {
+        String updates = String.join(",", Collections.nCopies(
+            UserService.MAX_BATCH_SIZE + 1, "{\"id\":1,\"name\":\"Clone\",\"email\":\"ct@kamino.com\"}"));
+        String ids = String.join(",", Collections.nCopies(UserService.MAX_BATCH_SIZE + 1, "1"));
+
+        mockMvc.perform(put("/api/v1/users:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + updates + "]"))
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string("Batch size must not exceed 10000 items."));
+        mockMvc.perform(delete("/api/v1/users:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[" + ids + "]"))
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string("Batch size must not exceed 10000 items."));
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void shouldPassNullUpdateElementsToTheServiceAsInvalidItems() throws Exception {
+        when(userService.updateUsers(argThat(users -> users.size() == 2 && users.get(1) == null))).thenReturn(List.of(
+            UserBatchResult.success(0, Status.UPDATED, new User(1L, "Rex", "rex@kamino.com", 2L)),
+            UserBatchResult.failure(1, Status.INVALID, "User id is required.")
+        ));
+
+        mockMvc.perform(put("/api/v1/users:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("""
+                    [{"id":1,"name":"Rex","email":"rex@kamino.com"}, null]
+                    """))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].status").value("UPDATED"))
+            .andExpect(jsonPath("$[1].status").value("INVALID"))
+            .andExpect(jsonPath("$[1].error").value("User id is required."));
+    }
+
+    @Test
+    void shouldReturnPerItemStatusesWhenDeletingBatch() throws Exception {
+        when(userService.deleteUsers(List.of(1L, 2L))).thenReturn(List.of(
+            UserBatchResult.success(0, Status.DELETED, null),
+            UserBatchResult.failure(1, Status.NOT_FOUND, "User not found with id: 2")
+        ));
+
+        mockMvc.perform(delete("/api/v1/users:batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[1, 2]"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].status").value("DELETED"))
+            .andExpect(jsonPath("$[1].status").value("NOT_FOUND"));
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.trevizan.javacoreplayground.controller;
+
+import com.trevizan.javacoreplayground.exception.UserChangesExpiredException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserChange;
+import com.trevizan.javacoreplayground.service.UserService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserChangeControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private UserService userService;
+
+    @Test
+    void shouldReturnChangesAndTheNextSequence() throws Exception {
+        when(userService.awaitChanges(eq(7L), anyInt(), any())).thenReturn(CompletableFuture.completedFuture(List.of(
+            new UserChange(8, UserChange.Type.UPDATED, 1, new User(1L, "Vader", "vader@empire.gov", 2L)),
+            new UserChange(9, UserChange.Type.DELETED, 2, null)
+        )));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/users/changes").param("since", "7").param("wait", "600"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.changes[0].type").value("UPDATED"))
+            .andExpect(jsonPath("$.changes[0].user.name").value("Vader"))
+            .andExpect(jsonPath("$.changes[1].type").value("DELETED"))
+            .andExpect(jsonPath("$.changes[1].id").value(2))
+            .andExpect(jsonPath("$.changes[1].user").doesNotExist())
+            .andExpect(jsonPath("$.next").value(9));
+        // the wait is capped below the container's async timeout
+        verify(userService).awaitChanges(7L, 100, Duration.ofSeconds(UserChangeController.MAX_WAIT_SECONDS));
+    }
+
+    @Test
+    void shouldReturn410WhenTheChangesAreNoLongerKept() throws Exception {
+        when(userService.awaitChanges(eq(1L), anyInt(), any())).thenThrow(new UserChangesExpiredException(1, 90_000));
+
+        mockMvc.perform(get("/api/v1/users/changes").param("since", "1"))
+            .andExpect(status().isGone());
+    }
+
+}
@@ -1,36 +1,65 @@
 package com.trevizan.javacoreplayground.controller;
 
+import com.trevizan.javacoreplayground.exception.DuplicateEmailException;
+import com.trevizan.javacoreplayground.exception.ExceptionCounters;
+import com.trevizan.javacoreplayground.exception.ExternalServiceOverloadedException;
+import com.trevizan.javacoreplayground.exception.ExternalServiceRateLimitedException;
 import com.trevizan.javacoreplayground.exception.UserNotFoundException;
+import com.trevizan.javacoreplayground.exception.UserVersionConflictException;
 import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserPage;
+import com.trevizan.javacoreplayground.model.UserSearchKey;
+import com.trevizan.javacoreplayground.model.UserSearchPage;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
 import com.trevizan.javacoreplayground.service.UserService;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
 import java.util.List;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import tools.jackson.databind.ObjectMapper;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.when;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest
+// the test application.yaml replaces the main one, so the percentiles the timing test reads are set here;
+// a small JSON cache lets the listing test show that scans do not evict
+@SpringBootTest(properties = {
+    "management.metrics.distribution.percentiles.http.server.requests=0.5, 0.99, 0.999",
+    "management.metrics.distribution.percentiles-histogram.http.server.requests=true",
+    "app.user-json-cache.max-size=8"
+})
 @AutoConfigureMockMvc
 class UserControllerTests {
 
@@ -43,6 +72,12 @@ class UserControllerTests {
     @MockitoBean
     private UserService userService;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserJsonCache userJsonCache;
+
     final private User userCreated = new User(1L, "Anakin", "anakin@skywalker.com");
 
     @Test
@@ -57,6 +92,27 @@ class UserControllerTests {
             .andExpect(header().string("Location", "/api/v1/users/1"));
     }
 
+    @Test
+    void shouldReturn409WhenCreatingUserWithDuplicateEmail() throws Exception {
+        User request = new User(null, "Anakin", "anakin@skywalker.com");
+        when(userService.createUser(any())).thenThrow(new DuplicateEmailException("anakin@skywalker.com"));
+
+        mockMvc.perform(post("/api/v1/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isConflict());
+    }
+
+    @Test
+    void shouldReturn200WhenGettingUserByEmail() throws Exception {
+        when(userService.getUserByEmail("anakin@skywalker.com")).thenReturn(userCreated);
+
+        mockMvc.perform(get("/api/v1/users").param("email", "anakin@skywalker.com"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.id").value(1L))
+            .andExpect(jsonPath("$.email").value("anakin@skywalker.com"));
+    }
+
     @Test
     void shouldReturn200WhenGettingUserById() throws Exception {
         when(userService.getUserById(anyLong())).thenReturn(userCreated);
@@ -65,7 +121,8 @@ class UserControllerTests {
             .andExpect(status().isOk())
             .andExpect(jsonPath("$.id").value(1L))
             .andExpect(jsonPath("$.name").value("Anakin"))
-            .andExpect(jsonPath("$.email").value("anakin@skywalker.com"));
+            .andExpect(jsonPath("$.email").value("anakin@skywalker.com"))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"0\""));
     }
 
     @Test
@@ -76,6 +133,47 @@ class UserControllerTests {
             .andExpect(status().isNotFound());
     }
 
+    @Test
+    void shouldTimeTheEndpointAndCountUserNotFound() throws Exception {
+        when(userService.getUserById(anyLong())).thenThrow(new UserNotFoundException(9999L));
+        double notFoundBefore = meterRegistry.get(ExceptionCounters.METRIC)
+            .tag("exception", "UserNotFoundException").counter().count();
+
+        mockMvc.perform(get("/api/v1/users/{id}", 9999L))
+            .andExpect(status().isNotFound());
+
+        assertThat(meterRegistry.get(ExceptionCounters.METRIC)
+            .tag("exception", "UserNotFoundException").counter().count())
+            .isEqualTo(notFoundBefore + 1);
+        Timer endpoint = meterRegistry.get("http.server.requests")
+            .tag("uri", "/api/v1/users/{id}")
+            .tag("status", "404")
+            .timer();
+        assertThat(endpoint.count()).isPositive();
+        // p50, p99, p999 from management.metrics.distribution.percentiles
+        assertThat(endpoint.takeSnapshot().percentileValues()).hasSize(3);
+    }
+
+    @Test
+    void shouldReturn429WithRetryAfterWhenExternalServiceIsRateLimited() throws Exception {
+        when(userService.getUserById(anyLong()))
+            .thenThrow(new ExternalServiceRateLimitedException(Duration.ofMillis(300), null));
+
+        mockMvc.perform(get("/api/v1/users/{id}", 1L))
+            .andExpect(status().isTooManyRequests())
+            .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+    }
+
+    @Test
+    void shouldReturn503WithRetryAfterWhenExternalServiceIsOverloaded() throws Exception {
+        when(userService.getUserById(anyLong()))
+            .thenThrow(new ExternalServiceOverloadedException(Duration.ofMillis(1500), null));
+
+        mockMvc.perform(get("/api/v1/users/{id}", 1L))
+            .andExpect(status().isServiceUnavailable())
+            .andExpect(header().string(HttpHeaders.RETRY_AFTER, "2"));
+    }
+
     @Test
     void shouldReturn200WhenGettingAllUsers() throws Exception {
         when(userService.getAllUsers()).thenReturn(List.of(userCreated));
@@ -88,11 +186,117 @@ class UserControllerTests {
             .andExpect(jsonPath("$.length()").value(1));
     }
 
+    @Test
+    void shouldReturn200WhenGettingUsersPage() throws Exception {
+        when(userService.getUsersPage(isNull(), anyInt()))
+            .thenReturn(new UserPage(List.of(userCreated), 1L));
+
+        mockMvc.perform(get("/api/v1/users").param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items[0].id").value(1))
+            .andExpect(jsonPath("$.items[0].name").value("Anakin"))
+            .andExpect(jsonPath("$.items.length()").value(1))
+            .andExpect(jsonPath("$.nextCursor").value(1));
+    }
+
+    @Test
+    void shouldWriteAnEmptyLastPageLikeJackson() throws Exception {
+        when(userService.getUsersPage(eq(5L), anyInt())).thenReturn(new UserPage(List.of(), null));
+
+        mockMvc.perform(get("/api/v1/users").param("limit", "10").param("after", "5"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+            .andExpect(content().string("{\"items\":[],\"nextCursor\":null}"));
+    }
+
+    @Test
+    void shouldReturn200WithAnOpaqueCursorWhenSearchingUsers() throws Exception {
+        UserSearchKey last = UserSearchKey.of(userCreated);
+        UserSearchQuery query = new UserSearchQuery("ana", "skywalker.com", List.of("anakin"));
+        when(userService.searchUsers(eq(query), isNull(), eq(1)))
+            .thenReturn(new UserSearchPage(List.of(userCreated), last));
+
+        mockMvc.perform(get("/api/v1/users/search")
+                .param("name", "Ana")
+                .param("domain", "Skywalker.com")
+                .param("q", "anakin")
+                .param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items[0].id").value(1))
+            .andExpect(jsonPath("$.items.length()").value(1))
+            .andExpect(jsonPath("$.nextCursor").value(last.encode()));
+    }
+
+    @Test
+    void shouldServeCachedJsonUntilTheUserChanges() throws Exception {
+        User ahsoka = new User(42L, "Ahsoka", "ahsoka@jedi.com", 1L);
+        User fulcrum = new User(42L, "Fulcrum", "fulcrum@rebels.com", 2L);
+        when(userService.getUserById(42L)).thenReturn(ahsoka, ahsoka, fulcrum);
+        double hitsBefore = jsonCacheHits();
+
+        mockMvc.perform(get("/api/v1/users/{id}", 42L))
+            .andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/users/{id}", 42L))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+            .andExpect(content().string(
+                "{\"id\":42,\"name\":\"Ahsoka\",\"email\":\"ahsoka@jedi.com\",\"version\":1}"
+            ));
+        assertThat(jsonCacheHits()).isEqualTo(hitsBefore + 1);
+
+        // a newer version never gets the cached bytes of the old one
+        mockMvc.perform(get("/api/v1/users/{id}", 42L))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.name").value("Fulcrum"))
+            .andExpect(header().string(HttpHeaders.ETAG, "\"2\""));
+    }
+
+    @Test
+    void shouldNotEvictCachedUsersWhenListingAll() throws Exception {
+        userJsonCache.invalidateAll();
+        User ahsoka = new User(42L, "Ahsoka", "ahsoka@jedi.com", 1L);
+        when(userService.getUserById(42L)).thenReturn(ahsoka);
+        List<User> clones = LongStream.rangeClosed(100, 131)
+            .mapToObj(id -> new User(id, "Clone " + id, "ct" + id + "@kamino.com", 1L))
+            .toList();
+        when(userService.getAllUsers()).thenReturn(clones);
+
+        mockMvc.perform(get("/api/v1/users/{id}", 42L))
+            .andExpect(status().isOk());
+        mockMvc.perform(get("/api/v1/users"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.length()").value(32))
+            .andExpect(jsonPath("$[31].email").value("ct131@kamino.com"));
+        double hitsBefore = jsonCacheHits();
+
+        mockMvc.perform(get("/api/v1/users/{id}", 42L))
+            .andExpect(status().isOk());
+        assertThat(jsonCacheHits()).isEqualTo(hitsBefore + 1);
+    }
+
+    @Test
+    void shouldStreamAllUsersAsNdjson() throws Exception {
+        User secondUser = new User(2L, "Padme", "padme@naboo.com");
+        when(userService.streamAllUsers()).thenReturn(Stream.of(userCreated, secondUser));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/users/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string(
+                "{\"id\":1,\"name\":\"Anakin\",\"email\":\"anakin@skywalker.com\",\"version\":0}\n"
+                    + "{\"id\":2,\"name\":\"Padme\",\"email\":\"padme@naboo.com\",\"version\":0}\n"
+            ));
+    }
+
     @Test
     void shouldReturn200WhenUpdatingUser() throws Exception {
         User updated = new User(1L, "Vader", "vader@empire.com");
 
-        when(userService.updateUser(eq(1L), any(User.class)))
+        when(userService.updateUser(eq(1L), any(User.class), isNull()))
             .thenReturn(updated);
 
         mockMvc.perform(put("/api/v1/users/{id}", 1L)
@@ -105,7 +309,7 @@ class UserControllerTests {
 
     @Test
     void shouldReturn404WhenUpdatingNonExistingUser() throws Exception {
-        when(userService.updateUser(eq(9999L), any(User.class)))
+        when(userService.updateUser(eq(9999L), any(User.class), isNull()))
             .thenThrow(new UserNotFoundException(9999L));
 
         mockMvc.perform(put("/api/v1/users/{id}", 9999L)
@@ -115,6 +319,18 @@ class UserControllerTests {
             .andExpect(status().isNotFound());
     }
 
+    @Test
+    void shouldReturn409WhenUpdatingUserWithStaleVersion() throws Exception {
+        when(userService.updateUser(eq(1L), any(User.class), eq(3L)))
+            .thenThrow(new UserVersionConflictException(1L, 3L, 4L));
+
+        mockMvc.perform(put("/api/v1/users/{id}", 1L)
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new User(null, "Vader", "vader@empire.com"))))
+            .andExpect(status().isConflict());
+    }
+
     @Test
     void shouldReturn204WhenDeletingUser() throws Exception {
         doNothing().when(userService).deleteUser(1L);
@@ -131,4 +347,8 @@ class UserControllerTests {
             .andExpect(status().isNotFound());
     }
 
+    private double jsonCacheHits() {
+        return meterRegistry.get("user.json.cache.gets").tag("result", "hit").functionCounter().count();
+    }
+
 }
@@ -0,0 +1,53 @@
+package com.trevizan.javacoreplayground.controller;
+
+import com.trevizan.javacoreplayground.exception.InvalidUserException;
+import com.trevizan.javacoreplayground.model.UserImportResult;
+import com.trevizan.javacoreplayground.service.UserService;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserDumpControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private UserService userService;
+
+    @Test
+    void shouldImportADumpAndReportTheCounts() throws Exception {
+        when(userService.importUsers(any())).thenReturn(new UserImportResult(3, 1));
+
+        mockMvc.perform(post("/api/v1/users:import")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(new byte[] {1, 2, 3}))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.created").value(3))
+            .andExpect(jsonPath("$.conflicts").value(1));
+    }
+
+    @Test
+    void shouldReturn400ForADamagedDump() throws Exception {
+        when(userService.importUsers(any())).thenThrow(new InvalidUserException("Damaged user dump after 0 users."));
+
+        mockMvc.perform(post("/api/v1/users:import")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .content(new byte[] {1, 2, 3}))
+            .andExpect(status().isBadRequest());
+    }
+
+}
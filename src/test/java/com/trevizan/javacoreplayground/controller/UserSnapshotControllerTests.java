@@ -0,0 +1,64 @@
+package com.trevizan.javacoreplayground.controller;
+
+import com.trevizan.javacoreplayground.exception.UserSnapshotExpiredException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserPage;
+import com.trevizan.javacoreplayground.service.UserService;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserSnapshotControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private UserService userService;
+
+    @Test
+    void shouldOpenPageAndCloseASnapshot() throws Exception {
+        when(userService.openSnapshot()).thenReturn("c0ffee");
+        when(userService.getSnapshotPage("c0ffee", 1L, 1))
+            .thenReturn(new UserPage(List.of(new User(2L, "Boba", "boba@mandalore.net", 3L)), 2L));
+
+        mockMvc.perform(post("/api/v1/users/snapshots"))
+            .andExpect(status().isCreated())
+            .andExpect(header().string("Location", "/api/v1/users/snapshots/c0ffee"))
+            .andExpect(jsonPath("$.snapshot").value("c0ffee"));
+        mockMvc.perform(get("/api/v1/users/snapshots/c0ffee").param("after", "1").param("limit", "1"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.items[0].name").value("Boba"))
+            .andExpect(jsonPath("$.nextCursor").value(2));
+        mockMvc.perform(delete("/api/v1/users/snapshots/c0ffee"))
+            .andExpect(status().isNoContent());
+
+        verify(userService).closeSnapshot("c0ffee");
+    }
+
+    @Test
+    void shouldReturn410ForAClosedSnapshot() throws Exception {
+        when(userService.getSnapshotPage("gone", null, 1000)).thenThrow(new UserSnapshotExpiredException("gone"));
+
+        mockMvc.perform(get("/api/v1/users/snapshots/gone"))
+            .andExpect(status().isGone());
+    }
+
+}
@@ -0,0 +1,43 @@
+package com.trevizan.javacoreplayground.core.metrics;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedGaugeTests {
+
+    @Test
+    void shouldKeepTheLargestValueAcrossThreads() throws InterruptedException {
+        ShardedGauge gauge = ShardedGauge.max(4);
+
+        StripedLongCounterTests.runConcurrently(() -> gauge.record(ThreadLocalRandom.current().nextLong(1_000)));
+        gauge.record(5_000);
+
+        assertThat(gauge.get()).isEqualTo(5_000);
+    }
+
+    @Test
+    void shouldKeepTheSmallestValue() {
+        ShardedGauge gauge = ShardedGauge.min(0);
+        gauge.record(42);
+        gauge.record(-7);
+        gauge.record(13);
+
+        assertThat(gauge.get()).isEqualTo(-7);
+    }
+
+    @Test
+    void shouldStartOverAfterGetThenReset() {
+        ShardedGauge gauge = ShardedGauge.max(0);
+        gauge.record(10);
+
+        assertThat(gauge.getThenReset()).isEqualTo(10);
+        assertThat(gauge.get()).isEqualTo(Long.MIN_VALUE);
+
+        gauge.record(3);
+        assertThat(gauge.get()).isEqualTo(3);
+    }
+
+}
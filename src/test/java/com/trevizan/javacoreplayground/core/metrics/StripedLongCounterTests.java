@@ -0,0 +1,48 @@
+package com.trevizan.javacoreplayground.core.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StripedLongCounterTests {
+
+    private static final int THREADS = 8;
+    private static final int INCREMENTS = 100_000;
+
+    @Test
+    void shouldNotLoseIncrementsUnderContention() throws InterruptedException {
+        StripedLongCounter counter = new StripedLongCounter(4);
+
+        runConcurrently(counter::increment);
+
+        assertThat(counter.sum()).isEqualTo((long) THREADS * INCREMENTS);
+    }
+
+    @Test
+    void shouldStartOverAfterSumThenReset() {
+        StripedLongCounter counter = new StripedLongCounter();
+        counter.add(5);
+        counter.increment();
+
+        assertThat(counter.sumThenReset()).isEqualTo(6);
+        assertThat(counter.sum()).isZero();
+    }
+
+    static void runConcurrently(Runnable increment) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < INCREMENTS; i++) {
+                    increment.run();
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+}
@@ -0,0 +1,58 @@
+package com.trevizan.javacoreplayground.core.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class WindowedRateCounterTests {
+
+    private final AtomicLong now = new AtomicLong();
+    private final WindowedRateCounter counter = new WindowedRateCounter(Duration.ofSeconds(10), 10, 4, now::get);
+
+    @Test
+    void shouldRateEventsOverTheTimeCoveredSoFar() {
+        counter.add(10);
+        advance(Duration.ofSeconds(5));
+        counter.add(10);
+
+        assertThat(counter.count()).isEqualTo(20);
+        assertThat(counter.ratePerSecond()).isCloseTo(4.0, within(0.001));
+    }
+
+    @Test
+    void shouldForgetEventsThatSlidOutOfTheWindow() {
+        counter.add(10);
+        advance(Duration.ofSeconds(5));
+        counter.add(10);
+        advance(Duration.ofMillis(5_500));
+
+        assertThat(counter.count()).isEqualTo(10);
+        // nine full buckets plus half of the current one
+        assertThat(counter.ratePerSecond()).isCloseTo(10 / 9.5, within(0.001));
+    }
+
+    @Test
+    void shouldCountIntoAReusedBucketFromZero() {
+        counter.add(7);
+        advance(Duration.ofSeconds(10));
+        counter.increment();
+
+        assertThat(counter.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotLoseIncrementsUnderContention() throws InterruptedException {
+        StripedLongCounterTests.runConcurrently(counter::increment);
+
+        assertThat(counter.count()).isEqualTo(8L * 100_000);
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+
+}
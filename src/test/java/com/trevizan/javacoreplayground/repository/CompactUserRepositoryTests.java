@@ -0,0 +1,138 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.exception.DuplicateEmailException;
+import com.trevizan.javacoreplayground.exception.UserVersionConflictException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserBatchResult.Status;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompactUserRepositoryTests {
+
+    private final CompactUserRepository repository = new CompactUserRepository();
+
+    @Test
+    void shouldSaveAndFindByIdAndEmail() {
+        User saved = repository.save(new User(null, "Padmé", "padme@naboo.com"));
+
+        assertThat(saved.getVersion()).isEqualTo(UserRepository.INITIAL_VERSION);
+        assertThat(repository.findById(saved.getId())).get().usingRecursiveComparison().isEqualTo(saved);
+        assertThat(repository.findByEmail(" PADME@naboo.com ")).get().usingRecursiveComparison().isEqualTo(saved);
+    }
+
+    @Test
+    void shouldKeepNullAndDomainlessFields() {
+        User noEmail = repository.save(new User(null, "Chewbacca", null));
+        User noDomain = repository.save(new User(null, null, "r2d2"));
+
+        assertThat(repository.findById(noEmail.getId())).get().usingRecursiveComparison().isEqualTo(noEmail);
+        assertThat(repository.findById(noDomain.getId())).get().usingRecursiveComparison().isEqualTo(noDomain);
+        assertThat(repository.findByEmail("R2D2")).get().extracting(User::getId).isEqualTo(noDomain.getId());
+    }
+
+    @Test
+    void shouldRejectDuplicateEmail() {
+        repository.save(new User(null, "Obi-Wan", "kenobi@jedi.com"));
+
+        assertThatThrownBy(() -> repository.save(new User(null, "Ben", "Kenobi@jedi.com")))
+            .isInstanceOf(DuplicateEmailException.class);
+    }
+
+    @Test
+    void shouldUpdateWithVersionCheckAndMoveEmail() {
+        User saved = repository.save(new User(null, "Ahsoka", "ahsoka@jedi.com"));
+        User other = repository.save(new User(null, "Rex", "rex@kamino.com"));
+
+        User updated = repository.update(saved.getId(), new User(null, "Fulcrum", "fulcrum@rebels.com"), 1L)
+            .orElseThrow();
+
+        assertThat(updated.getVersion()).isEqualTo(2L);
+        assertThat(repository.findByEmail("ahsoka@jedi.com")).isEmpty();
+        assertThat(repository.findByEmail("fulcrum@rebels.com")).get().usingRecursiveComparison().isEqualTo(updated);
+        assertThatThrownBy(() -> repository.update(saved.getId(), new User(null, "Ahsoka", "ahsoka@jedi.com"), 1L))
+            .isInstanceOf(UserVersionConflictException.class);
+        assertThatThrownBy(() -> repository.update(other.getId(), new User(null, "Rex", "FULCRUM@rebels.com")))
+            .isInstanceOf(DuplicateEmailException.class);
+        assertThat(repository.update(404L, new User(null, "Nobody", "nobody@void.com"))).isEmpty();
+    }
+
+    @Test
+    void shouldDeleteAndReuseTheEmail() {
+        User saved = repository.save(new User(null, "Jango", "jango@kamino.com"));
+
+        assertThat(repository.deleteById(saved.getId())).isTrue();
+        assertThat(repository.deleteById(saved.getId())).isFalse();
+        assertThat(repository.findById(saved.getId())).isEmpty();
+        assertThat(repository.save(new User(null, "Boba", "jango@kamino.com")).getId()).isNotEqualTo(saved.getId());
+    }
+
+    @Test
+    void shouldPageInIdOrderAcrossDeletesAndOutOfOrderInserts() {
+        for (int i = 0; i < 10; i++) {
+            repository.save(new User(null, "clone" + i, "clone" + i + "@kamino.com"));
+        }
+        repository.deleteById(3L);
+        repository.deleteById(4L);
+        // ids reserved earlier by a batch writer land below the last one
+        repository.insert(4L, new User(null, "Echo", "echo@kamino.com"));
+
+        assertThat(repository.findPage(null, 4)).extracting(User::getId).containsExactly(1L, 2L, 4L, 5L);
+        assertThat(repository.findPage(5L, 3)).extracting(User::getId).containsExactly(6L, 7L, 8L);
+        assertThat(repository.findAll()).hasSize(9);
+        assertThat(repository.streamAll()).extracting(User::getId).isSorted();
+    }
+
+    @Test
+    void shouldAnswerSnapshotsWithACopyInIdOrder() {
+        User vader = repository.save(new User(null, "Vader", "vader@empire.gov"));
+        User tarkin = repository.save(new User(null, "Tarkin", "tarkin@empire.gov"));
+
+        try (UserSnapshot snapshot = repository.snapshot()) {
+            repository.deleteById(vader.getId());
+            repository.save(new User(null, "Krennic", "krennic@empire.gov"));
+
+            assertThat(snapshot.findPage(null, 1)).extracting(User::getName).containsExactly("Vader");
+            assertThat(snapshot.findPage(vader.getId(), 10)).extracting(User::getId).containsExactly(tarkin.getId());
+            assertThat(snapshot.streamAll()).hasSize(2);
+        }
+    }
+
+    @Test
+    void shouldInsertBatchAndReportConflicts() {
+        repository.save(new User(null, "Rex", "rex@kamino.com"));
+        long firstId = repository.reserveIds(3);
+
+        var results = repository.insertAll(List.of(
+            new User(firstId, "Cody", "cody@kamino.com"),
+            new User(firstId + 1, "Rex again", "REX@kamino.com"),
+            new User(firstId + 2, "Wolffe", "wolffe@kamino.com")
+        ));
+
+        assertThat(results).extracting(UserBatchResult::status)
+            .containsExactly(Status.CREATED, Status.CONFLICT, Status.CREATED);
+        assertThat(repository.size()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldStayConsistentAcrossTableResizes() {
+        for (int i = 0; i < 5_000; i++) {
+            repository.save(new User(null, "trooper" + i, "tk" + i + "@empire" + (i % 7) + ".com"));
+        }
+        for (long id = 2; id <= 5_000; id += 2) {
+            repository.deleteById(id);
+        }
+
+        assertThat(repository.size()).isEqualTo(2_500);
+        assertThat(repository.findById(4_999L)).get().extracting(User::getEmail).isEqualTo("tk4998@empire0.com");
+        assertThat(repository.findByEmail("tk4997@empire6.com")).isEmpty();
+        assertThat(repository.findAll()).hasSize(2_500);
+        assertThat(repository.footprintBytes()).isPositive();
+    }
+
+}
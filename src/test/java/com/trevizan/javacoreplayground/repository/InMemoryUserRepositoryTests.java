@@ -0,0 +1,75 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InMemoryUserRepositoryTests {
+
+    private final InMemoryUserRepository repository = new InMemoryUserRepository();
+
+    @Test
+    void shouldNotHandOutImportedIdsFromBlocksTakenBeforeTheImport() {
+        InMemoryUserRepository striped = new InMemoryUserRepository(new StripedIdAllocator(16, 4), UserJournal.NONE);
+        User finn = striped.save(new User(null, "Finn", "finn@resistance.org"));
+
+        List<UserBatchResult> imported = striped.importAll(List.of(
+            new User(finn.getId() + 1, "Poe", "poe@resistance.org", 3L),
+            new User(finn.getId() + 5, "Rose", "rose@resistance.org", 1L)
+        ));
+        User bb8 = striped.save(new User(null, "BB-8", "bb8@resistance.org"));
+
+        assertThat(imported).extracting(UserBatchResult::status).containsOnly(UserBatchResult.Status.CREATED);
+        assertThat(bb8.getId()).isGreaterThan(finn.getId() + 5);
+        assertThat(striped.findAll()).hasSize(4);
+    }
+
+    @Test
+    void shouldReadTheUsersAsTheyWereWhenTheSnapshotWasOpened() {
+        User luke = repository.save(new User(null, "Luke", "luke@tatooine.org"));
+        User leia = repository.save(new User(null, "Leia", "leia@alderaan.gov"));
+        User han = repository.save(new User(null, "Han", "han@corellia.org"));
+
+        try (UserSnapshot snapshot = repository.snapshot()) {
+            repository.update(luke.getId(), new User(null, "Jedi Luke", "luke@tatooine.org"));
+            repository.deleteById(leia.getId());
+            repository.save(new User(null, "Lando", "lando@bespin.org"));
+
+            assertThat(names(snapshot.findPage(null, 10))).containsExactly("Luke", "Leia", "Han");
+            assertThat(names(snapshot.findPage(leia.getId(), 10))).containsExactly("Han");
+            assertThat(names(snapshot.streamAll().toList())).containsExactly("Luke", "Leia", "Han");
+            // the store itself moved on
+            assertThat(names(repository.findAll())).containsExactly("Jedi Luke", "Han", "Lando");
+            assertThat(repository.findById(han.getId())).contains(han);
+        }
+    }
+
+    @Test
+    void shouldKeepEverySnapshotAtItsOwnPointInTime() {
+        User rey = repository.save(new User(null, "Rey", "rey@jakku.net"));
+        UserSnapshot first = repository.snapshot();
+        repository.update(rey.getId(), new User(null, "Rey Skywalker", "rey@jakku.net"));
+        UserSnapshot second = repository.snapshot();
+        repository.deleteById(rey.getId());
+
+        assertThat(names(first.findPage(null, 10))).containsExactly("Rey");
+        first.close();
+        // closing the older one trims only what nobody reads anymore
+        assertThat(names(second.findPage(null, 10))).containsExactly("Rey Skywalker");
+        second.close();
+
+        assertThat(repository.findAll()).isEmpty();
+        assertThatThrownBy(() -> second.findPage(null, 10)).isInstanceOf(IllegalStateException.class);
+    }
+
+    private static List<String> names(List<User> users) {
+        return users.stream().map(User::getName).toList();
+    }
+
+}
@@ -0,0 +1,107 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.exception.DuplicateEmailException;
+import com.trevizan.javacoreplayground.exception.UserVersionConflictException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserBatchResult.Status;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.NONE,
+    properties = "app.user-store.mode=jpa"
+)
+class JpaUserRepositoryTests {
+
+    @Autowired
+    private UserRepository repository;
+
+    @Test
+    void shouldBeWiredForJpaMode() {
+        assertThat(repository).isInstanceOf(JpaUserRepository.class);
+    }
+
+    @Test
+    void shouldSaveAndFindByIdAndEmail() {
+        User saved = repository.save(new User(null, "Padme", "padme@naboo.com"));
+
+        assertThat(saved.getId()).isNotNull();
+        assertThat(saved.getVersion()).isEqualTo(UserRepository.INITIAL_VERSION);
+        assertThat(repository.findById(saved.getId())).get().usingRecursiveComparison().isEqualTo(saved);
+        assertThat(repository.findByEmail(" PADME@naboo.com ")).get().usingRecursiveComparison().isEqualTo(saved);
+    }
+
+    @Test
+    void shouldRejectDuplicateEmail() {
+        repository.save(new User(null, "Obi-Wan", "kenobi@jedi.com"));
+
+        assertThatThrownBy(() -> repository.save(new User(null, "Ben", "Kenobi@jedi.com")))
+            .isInstanceOf(DuplicateEmailException.class);
+    }
+
+    @Test
+    void shouldUpdateWithVersionCheckAndRefreshCache() {
+        User saved = repository.save(new User(null, "Ahsoka", "ahsoka@jedi.com"));
+        repository.findById(saved.getId());
+
+        User updated = repository.update(saved.getId(), new User(null, "Fulcrum", "fulcrum@rebels.com"), 1L)
+            .orElseThrow();
+
+        assertThat(updated.getVersion()).isEqualTo(2L);
+        assertThat(repository.findById(saved.getId())).get().usingRecursiveComparison().isEqualTo(updated);
+        assertThat(repository.findByEmail("ahsoka@jedi.com")).isEmpty();
+        assertThatThrownBy(() -> repository.update(saved.getId(), new User(null, "Ahsoka", "ahsoka@jedi.com"), 1L))
+            .isInstanceOf(UserVersionConflictException.class);
+    }
+
+    @Test
+    void shouldHideDeletedUserFromCachedReads() {
+        User saved = repository.save(new User(null, "Jango", "jango@kamino.com"));
+        repository.findById(saved.getId());
+
+        assertThat(repository.deleteById(saved.getId())).isTrue();
+
+        assertThat(repository.findById(saved.getId())).isEmpty();
+        assertThat(repository.deleteById(saved.getId())).isFalse();
+    }
+
+    @Test
+    void shouldInsertBatchAndReportConflicts() {
+        repository.save(new User(null, "Rex", "rex@kamino.com"));
+        long firstId = repository.reserveIds(3);
+
+        List<UserBatchResult> results = repository.insertAll(List.of(
+            new User(firstId, "Cody", "cody@kamino.com"),
+            new User(firstId + 1, "Rex again", "rex@kamino.com"),
+            new User(firstId + 2, "Cody again", "CODY@kamino.com")
+        ));
+
+        assertThat(results).extracting(UserBatchResult::status)
+            .containsExactly(Status.CREATED, Status.CONFLICT, Status.CONFLICT);
+        assertThat(repository.findById(firstId)).isPresent();
+        assertThat(repository.findById(firstId + 1)).isEmpty();
+    }
+
+    @Test
+    void shouldPageInIdOrder() {
+        long firstId = repository.reserveIds(3);
+        repository.insertAll(List.of(
+            new User(firstId, "Fives", "fives@kamino.com"),
+            new User(firstId + 1, "Echo", "echo@kamino.com"),
+            new User(firstId + 2, "Hevy", "hevy@kamino.com")
+        ));
+
+        List<User> page = repository.findPage(firstId, 2);
+
+        assertThat(page).extracting(User::getId).containsExactly(firstId + 1, firstId + 2);
+    }
+
+}
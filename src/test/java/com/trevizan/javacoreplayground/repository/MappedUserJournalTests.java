@@ -0,0 +1,109 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MappedUserJournalTests {
+
+    private static final int SEGMENT_SIZE = 4096;
+
+    @TempDir
+    private Path directory;
+
+    private MappedUserJournal journal;
+
+    @Test
+    void shouldRestoreUsersAfterRestart() {
+        InMemoryUserRepository repository = open();
+        User anakin = repository.save(new User(null, "Anakin", "anakin@skywalker.com"));
+        User luke = repository.save(new User(null, "Luke", "luke@jedi.com"));
+        repository.update(anakin.getId(), new User(null, "Darth Vader", "vader@empire.com"));
+        repository.deleteById(luke.getId());
+        journal.close();
+
+        InMemoryUserRepository restarted = open();
+
+        assertThat(restarted.findAll()).hasSize(1);
+        User restored = restarted.findById(anakin.getId()).orElseThrow();
+        assertThat(restored.getName()).isEqualTo("Darth Vader");
+        assertThat(restored.getVersion()).isEqualTo(2L);
+        assertThat(restarted.findByEmail("vader@empire.com")).isPresent();
+        assertThat(restarted.save(new User(null, "Leia", "leia@alderaan.com")).getId())
+            .isGreaterThan(luke.getId());
+    }
+
+    @Test
+    void shouldReplaySnapshotPlusNewerSegmentsAfterCompaction() throws IOException {
+        InMemoryUserRepository repository = open();
+        for (int i = 0; i < 200; i++) {
+            repository.save(new User(null, "Clone " + i, "clone" + i + "@kamino.com"));
+        }
+        journal.compact(repository::streamAll);
+        repository.update(1L, new User(null, "Rex", "rex@kamino.com"));
+        repository.deleteById(2L);
+        journal.close();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(path -> path.getFileName().toString()))
+                .anyMatch(name -> name.startsWith("snapshot-"))
+                .noneMatch(name -> name.equals("segment-00000000000000000001.wal"));
+        }
+
+        InMemoryUserRepository restarted = open();
+
+        assertThat(restarted.findAll()).hasSize(199);
+        assertThat(restarted.findById(1L).orElseThrow().getName()).isEqualTo("Rex");
+        assertThat(restarted.findById(2L)).isEmpty();
+    }
+
+    @Test
+    void shouldNotReuseIdsOfDeletedUsersAfterCompaction() {
+        InMemoryUserRepository repository = open();
+        repository.save(new User(null, "Obi-Wan", "obiwan@jedi.com"));
+        User qui = repository.save(new User(null, "Qui-Gon", "quigon@jedi.com"));
+        repository.deleteById(qui.getId());
+        journal.compact(repository::streamAll);
+        journal.close();
+
+        InMemoryUserRepository restarted = open();
+        User ahsoka = restarted.save(new User(null, "Ahsoka", "ahsoka@jedi.com"));
+        journal.close();
+
+        assertThat(ahsoka.getId()).isGreaterThan(qui.getId());
+        assertThat(open().findById(ahsoka.getId())).get().extracting(User::getName).isEqualTo("Ahsoka");
+    }
+
+    @Test
+    void shouldKeepUserDeletedBeforeALateUpdateAppendDeleted() {
+        journal = MappedUserJournal.open(
+            directory, SEGMENT_SIZE, MappedUserJournal.SyncMode.GROUP, Duration.ofMillis(100)
+        );
+        // an update whose append lost the race against the delete of the version it wrote
+        journal.recordSave(new User(1L, "Dooku", "dooku@sith.org", 1L));
+        journal.recordDelete(1L, 2L);
+        journal.recordSave(new User(1L, "Tyranus", "dooku@sith.org", 2L));
+        journal.close();
+
+        assertThat(open().findAll()).isEmpty();
+    }
+
+    private InMemoryUserRepository open() {
+        journal = MappedUserJournal.open(
+            directory, SEGMENT_SIZE, MappedUserJournal.SyncMode.GROUP, Duration.ofMillis(100)
+        );
+        InMemoryUserRepository repository = new InMemoryUserRepository(new SequentialIdAllocator(), journal);
+        repository.recover();
+        return repository;
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.exception.DuplicateEmailException;
+import com.trevizan.javacoreplayground.model.User;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class OffHeapUserRepositoryTests {
+
+    // tiny slabs, so a few hundred users span many of them and rewrites trigger compaction
+    private static final int SLAB_SIZE = 1024;
+
+    private final OffHeapUserRepository repository = new OffHeapUserRepository(new SequentialIdAllocator(), SLAB_SIZE);
+
+    @Test
+    void shouldMaterializeUsersFromOffHeapRecords() {
+        User saved = repository.save(new User(null, "Mon Mothma", "mothma@chandrila.gov"));
+
+        assertThat(repository.findById(saved.getId())).get().usingRecursiveComparison().isEqualTo(saved);
+        assertThat(repository.findByEmail("MOTHMA@chandrila.gov")).get().usingRecursiveComparison().isEqualTo(saved);
+        assertThat(repository.findPage(null, 10)).singleElement().usingRecursiveComparison().isEqualTo(saved);
+        assertThatThrownBy(() -> repository.save(new User(null, "Mon", "mothma@chandrila.gov")))
+            .isInstanceOf(DuplicateEmailException.class);
+    }
+
+    @Test
+    void shouldKeepEveryUserReadableAcrossRewritesAndCompaction() {
+        for (int i = 0; i < 500; i++) {
+            repository.save(new User(null, "pilot" + i, "pilot" + i + "@rebels.org"));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (long id = 1; id <= 500; id++) {
+                String sameEmail = "pilot" + (id - 1) + "@rebels.org";
+                repository.update(id, new User(null, "pilot" + id + "-r" + round, sameEmail));
+            }
+        }
+        long liveAfterRewrites = repository.offHeapLiveBytes();
+        for (long id = 1; id <= 500; id += 2) {
+            repository.deleteById(id);
+        }
+
+        assertThat(repository.size()).isEqualTo(250);
+        assertThat(repository.findById(500L)).get()
+            .extracting(User::getName, User::getVersion)
+            .containsExactly("pilot500-r4", 6L);
+        assertThat(repository.findAll()).hasSize(250)
+            .allSatisfy(user -> assertThat(user.getName()).endsWith("-r4"));
+        // six versions of every record were written, compaction keeps the slabs within a few times the live data
+        assertThat(repository.offHeapBytes()).isLessThan(3 * liveAfterRewrites);
+    }
+
+    @Test
+    void shouldReportOffHeapBytesAsGauges() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        repository.bindTo(registry);
+
+        repository.save(new User(null, "Hera", "hera@ghost.io"));
+
+        assertThat(registry.get("app.user-store.off-heap").tag("state", "reserved").gauge().value())
+            .isEqualTo(SLAB_SIZE);
+        assertThat(registry.get("app.user-store.off-heap").tag("state", "live").gauge().value())
+            .isPositive()
+            .isEqualTo((double) repository.offHeapLiveBytes());
+    }
+
+}
@@ -0,0 +1,143 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.exception.DuplicateEmailException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserBatchResult.Status;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class ShardedUserRepositoryTests {
+
+    private final ShardedUserRepository repository = new ShardedUserRepository(
+        8, new SequentialIdAllocator(), shard -> UserJournal.NONE, SkipListUserSearchIndex::new
+    );
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void shouldKeepEmailsUniqueAcrossShards() {
+        User vader = repository.save(new User(null, "Vader", "vader@empire.gov"));
+        User tarkin = repository.save(new User(null, "Tarkin", "tarkin@empire.gov"));
+
+        assertThat(ShardedUserRepository.shardIndex(vader.getId(), 8))
+            .isNotEqualTo(ShardedUserRepository.shardIndex(tarkin.getId(), 8));
+        assertThat(repository.findByEmail(" VADER@empire.gov")).contains(vader);
+        assertThatThrownBy(() -> repository.save(new User(null, "Anakin", "Vader@empire.gov")))
+            .isInstanceOf(DuplicateEmailException.class);
+        assertThatThrownBy(() -> repository.update(tarkin.getId(), new User(null, "Tarkin", "vader@empire.gov")))
+            .isInstanceOf(DuplicateEmailException.class);
+
+        repository.deleteById(vader.getId());
+        assertThat(repository.findByEmail("vader@empire.gov")).isEmpty();
+        assertThat(repository.save(new User(null, "Anakin", "vader@empire.gov")).getEmail())
+            .isEqualTo("vader@empire.gov");
+    }
+
+    @Test
+    void shouldPageAndStreamEveryShardInIdOrder() {
+        IntStream.range(0, 3_000).forEach(i -> repository.save(new User(null, "Droid " + i, "d" + i + "@droids.com")));
+        repository.deleteById(42L);
+        List<Long> expected = LongStream.rangeClosed(1, 3_000).filter(id -> id != 42).boxed().toList();
+
+        List<Long> paged = new ArrayList<>();
+        for (List<User> page = repository.findPage(null, 128); !page.isEmpty();
+             page = repository.findPage(page.getLast().getId(), 128)) {
+            page.forEach(user -> paged.add(user.getId()));
+        }
+
+        assertThat(paged).isEqualTo(expected);
+        assertThat(repository.streamAll().map(User::getId).toList()).isEqualTo(expected);
+        assertThat(repository.findAll()).extracting(User::getId).containsExactlyInAnyOrderElementsOf(expected);
+    }
+
+    @Test
+    void shouldMergeSearchesAndBatchResultsAcrossShards() {
+        IntStream.range(0, 40).forEach(i -> repository.save(new User(null, "Clone " + i, "ct" + i + "@kamino.com")));
+        long first = repository.reserveIds(3);
+
+        List<UserBatchResult> results = repository.insertAll(List.of(
+            new User(first, "Rex", "rex@kamino.com"),
+            new User(first + 1, "Copy", "ct7@kamino.com"),
+            new User(first + 2, "Cody", "cody@kamino.com")
+        ));
+
+        assertThat(results).extracting(UserBatchResult::index, UserBatchResult::status).containsExactly(
+            tuple(0, Status.CREATED),
+            tuple(1, Status.CONFLICT),
+            tuple(2, Status.CREATED));
+        assertThat(repository.search(new UserSearchQuery("clone 1", null, null), null, 4))
+            .extracting(User::getName)
+            .containsExactly("Clone 1", "Clone 10", "Clone 11", "Clone 12");
+    }
+
+    @Test
+    void shouldSnapshotEveryShardAtOnePointInTime() {
+        List<User> users = IntStream.range(0, 16)
+            .mapToObj(i -> repository.save(new User(null, "Jawa " + i, "jawa" + i + "@tatooine.org")))
+            .toList();
+
+        try (UserSnapshot snapshot = repository.snapshot()) {
+            users.forEach(user -> repository.deleteById(user.getId()));
+            repository.save(new User(null, "Tusken", "tusken@tatooine.org"));
+
+            assertThat(snapshot.streamAll().toList()).isEqualTo(users);
+            assertThat(snapshot.findPage(users.get(9).getId(), 4)).isEqualTo(users.subList(10, 14));
+        }
+
+        User tusken = repository.findByEmail("tusken@tatooine.org").orElseThrow();
+        try (UserSnapshot shard = repository.snapshotShard(ShardedUserRepository.shardIndex(tusken.getId(), 8))) {
+            repository.deleteById(tusken.getId());
+
+            assertThat(shard.streamAll()).containsExactly(tusken);
+            assertThat(repository.findAll()).isEmpty();
+        }
+    }
+
+    @Test
+    void shouldCompactOneShardAndRecoverEveryShardFromItsJournal() {
+        ShardedUserRepository durable = durable();
+        IntStream.range(0, 500).forEach(i -> durable.save(new User(null, "Ewok " + i, "ewok" + i + "@endor.org")));
+        durable.update(7L, new User(null, "Wicket", "ewok6@endor.org"));
+        durable.deleteById(8L);
+        durable.compactShard(ShardedUserRepository.shardIndex(7L, 4));
+        durable.close();
+
+        ShardedUserRepository recovered = durable();
+        recovered.recover();
+
+        assertThat(recovered.findAll()).hasSize(499);
+        assertThat(recovered.findById(7L)).get().extracting(User::getName, User::getVersion)
+            .containsExactly("Wicket", 2L);
+        assertThat(recovered.findById(8L)).isEmpty();
+        assertThat(recovered.findByEmail("ewok499@endor.org")).get().extracting(User::getId).isEqualTo(500L);
+        assertThat(recovered.save(new User(null, "Teebo", "teebo@endor.org")).getId()).isEqualTo(501L);
+        recovered.close();
+    }
+
+    private ShardedUserRepository durable() {
+        return new ShardedUserRepository(
+            4,
+            new SequentialIdAllocator(),
+            shard -> MappedUserJournal.open(
+                directory.resolve("shard-" + shard), 1 << 20, MappedUserJournal.SyncMode.GROUP, Duration.ofMillis(100)
+            ),
+            () -> UserSearchIndex.NONE
+        );
+    }
+
+}
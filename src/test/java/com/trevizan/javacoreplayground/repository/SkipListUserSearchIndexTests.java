@@ -0,0 +1,90 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserSearchKey;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SkipListUserSearchIndexTests {
+
+    private final InMemoryUserRepository repository =
+        new InMemoryUserRepository(new SequentialIdAllocator(), UserJournal.NONE, new SkipListUserSearchIndex());
+
+    @Test
+    void shouldMatchNamePrefixDomainAndWordsInNameOrder() {
+        repository.save(new User(null, "Luke Skywalker", "luke@tatooine.org"));
+        repository.save(new User(null, "leia Organa", "leia.organa@alderaan.gov"));
+        repository.save(new User(null, "Lando Calrissian", "lando@bespin.org"));
+        repository.save(new User(null, "Han Solo", "han.solo@corellia.org"));
+
+        assertThat(names(UserSearchQuery.of("L", null, null)))
+            .containsExactly("Lando Calrissian", "leia Organa", "Luke Skywalker");
+        assertThat(names(UserSearchQuery.of("l", "TATOOINE.org", null)))
+            .containsExactly("Luke Skywalker");
+        // words come from the name and the email local part
+        assertThat(names(UserSearchQuery.of(null, null, "solo")))
+            .containsExactly("Han Solo");
+        assertThat(names(UserSearchQuery.of(null, "alderaan.gov", "Organa leia")))
+            .containsExactly("leia Organa");
+        assertThat(names(UserSearchQuery.of(null, "kamino.org", null))).isEmpty();
+    }
+
+    @Test
+    void shouldFollowUpdatesAndDeletes() {
+        User rey = repository.save(new User(null, "Rey", "rey@jakku.net"));
+        User finn = repository.save(new User(null, "FN-2187", "fn2187@first-order.mil"));
+
+        repository.update(rey.getId(), new User(null, "Rey Skywalker", "rey@jakku.net"));
+        repository.update(finn.getId(), new User(null, "Finn", "finn@resistance.org"));
+        repository.deleteById(rey.getId());
+
+        assertThat(names(UserSearchQuery.of("rey", null, null))).isEmpty();
+        assertThat(names(UserSearchQuery.of(null, "first-order.mil", null))).isEmpty();
+        assertThat(names(UserSearchQuery.of(null, "resistance.org", "finn"))).containsExactly("Finn");
+    }
+
+    @Test
+    void shouldIgnoreWritesThatArriveAfterANewerOneOrADelete() {
+        SkipListUserSearchIndex index = new SkipListUserSearchIndex();
+        index.put(new User(1L, "Poe", "poe@resistance.org", 3));
+        index.put(new User(1L, "Poe Dameron", "poe@resistance.org", 2));
+        index.put(new User(2L, "Zorii", "zorii@kijimi.net", 1));
+        index.remove(2L);
+        index.put(new User(2L, "Zorii Bliss", "zorii@kijimi.net", 2));
+
+        assertThat(index.search(UserSearchQuery.of("poe", null, null), null, 10, repository))
+            .singleElement()
+            .extracting(User::getName)
+            .isEqualTo("Poe");
+        assertThat(index.search(UserSearchQuery.of("zorii", null, null), null, 10, repository)).isEmpty();
+    }
+
+    @Test
+    void shouldPageWithTheLastKeyAsCursor() {
+        for (int i = 0; i < 25; i++) {
+            repository.save(new User(null, "Clone " + (char) ('A' + i % 5), "ct" + i + "@kamino.org"));
+        }
+        UserSearchQuery query = UserSearchQuery.of("clone", "kamino.org", null);
+
+        List<User> all = repository.search(query, null, 100);
+        List<User> firstPage = repository.search(query, null, 10);
+        UserSearchKey cursor = UserSearchKey.decode(UserSearchKey.of(firstPage.getLast()).encode());
+        List<User> secondPage = repository.search(query, cursor, 10);
+
+        assertThat(all).hasSize(25).isSortedAccordingTo((a, b) -> UserSearchKey.of(a).compareTo(UserSearchKey.of(b)));
+        assertThat(firstPage).containsExactlyElementsOf(all.subList(0, 10));
+        assertThat(secondPage).containsExactlyElementsOf(all.subList(10, 20));
+        // the scan used without an index pages the same way
+        assertThat(UserSearchIndex.NONE.search(query, cursor, 10, repository)).containsExactlyElementsOf(secondPage);
+    }
+
+    private List<String> names(UserSearchQuery query) {
+        return repository.search(query, null, 100).stream().map(User::getName).toList();
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.trevizan.javacoreplayground.repository;
+
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserBatchResult.Status;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserDumpTests {
+
+    @Test
+    void shouldReloadTheSameUsersWithIdsAndVersions() throws IOException {
+        CompactUserRepository source = new CompactUserRepository();
+        IntStream.range(0, 2_500).forEach(i -> source.save(new User(null, "Trooper " + i, "tk" + i + "@empire.gov")));
+        User updated = source.update(7L, new User(null, "Finn", "fn2187@resistance.org")).orElseThrow();
+        source.deleteById(8L);
+        // bigger than the dump buffer on its own
+        source.save(new User(null, "x".repeat(UserDump.BUFFER_SIZE * 2), "long@names.com"));
+
+        byte[] dump = export(source);
+        CompactUserRepository target = new CompactUserRepository();
+        List<UserBatchResult> results = new ArrayList<>();
+        long count = UserDump.read(Channels.newChannel(new ByteArrayInputStream(dump)), 1000,
+            batch -> results.addAll(target.importAll(batch)));
+
+        assertThat(count).isEqualTo(2_500);
+        assertThat(results).extracting(UserBatchResult::status).containsOnly(Status.CREATED);
+        assertThat(target.findAll()).usingRecursiveFieldByFieldElementComparator()
+            .containsExactlyInAnyOrderElementsOf(source.findAll());
+        assertThat(target.findById(updated.getId())).get().extracting(User::getVersion).isEqualTo(2L);
+        assertThat(target.findById(8L)).isEmpty();
+        // new ids go past the imported ones
+        assertThat(target.save(new User(null, "Rey", "rey@jakku.com")).getId()).isEqualTo(2_502L);
+        // a second import runs into the same ids
+        assertThat(target.importAll(source.findAll())).extracting(UserBatchResult::status).containsOnly(Status.CONFLICT);
+    }
+
+    @Test
+    void shouldRejectATruncatedOrDamagedDump() throws IOException {
+        InMemoryUserRepository source = new InMemoryUserRepository();
+        IntStream.range(0, 100).forEach(i -> source.save(new User(null, "Clone " + i, "ct" + i + "@kamino.com")));
+        byte[] dump = export(source);
+        List<User> loaded = new ArrayList<>();
+
+        byte[] truncated = Arrays.copyOf(dump, dump.length - 20);
+        assertThatThrownBy(() -> UserDump.read(Channels.newChannel(new ByteArrayInputStream(truncated)), 1000,
+            loaded::addAll))
+            .isInstanceOf(EOFException.class);
+
+        byte[] damaged = dump.clone();
+        damaged[dump.length / 2] ^= 0x5A;
+        assertThatThrownBy(() -> UserDump.read(Channels.newChannel(new ByteArrayInputStream(damaged)), 1000,
+            loaded::addAll))
+            .isInstanceOf(StreamCorruptedException.class);
+
+        assertThatThrownBy(() -> UserDump.read(Channels.newChannel(new ByteArrayInputStream(new byte[64])), 1000,
+            loaded::addAll))
+            .isInstanceOf(StreamCorruptedException.class);
+        // the last batch waits for the trailer
+        assertThat(loaded).isEmpty();
+    }
+
+    private static byte[] export(UserRepository repository) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (UserSnapshot snapshot = repository.snapshot()) {
+            UserDump.write(snapshot.streamAll().iterator(), Channels.newChannel(out));
+        }
+        return out.toByteArray();
+    }
+
+}
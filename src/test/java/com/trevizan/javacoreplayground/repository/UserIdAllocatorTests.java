@@ -0,0 +1,57 @@
+package com.trevizan.javacoreplayground.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UserIdAllocatorTests {
+
+    @Test
+    void shouldStartSequentialIdsAtOne() {
+        SequentialIdAllocator allocator = new SequentialIdAllocator();
+
+        assertThat(allocator.next()).isEqualTo(1L);
+        assertThat(allocator.reserve(10)).isEqualTo(2L);
+        assertThat(allocator.next()).isEqualTo(12L);
+    }
+
+    @Test
+    void shouldNeverHandOutTheSameStripedIdTwice() throws Exception {
+        StripedIdAllocator allocator = new StripedIdAllocator(16, 4);
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        try {
+            List<Future<?>> tasks = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                tasks.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        ids.add(allocator.next());
+                        if (i % 1000 == 0) {
+                            long first = allocator.reserve(5);
+                            for (long id = first; id < first + 5; id++) {
+                                ids.add(id);
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(ids).hasSize(8 * (10_000 + 10 * 5));
+    }
+
+}
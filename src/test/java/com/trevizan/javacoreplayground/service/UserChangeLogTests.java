@@ -0,0 +1,66 @@
+package com.trevizan.javacoreplayground.service;
+
+import com.trevizan.javacoreplayground.exception.UserChangesExpiredException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserChange;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+class UserChangeLogTests {
+
+    // wake-ups run on the calling thread: no timing in the assertions
+    private final UserChangeLog changeLog = new UserChangeLog(8, Runnable::run);
+
+    @Test
+    void shouldReadChangesInSequenceOrderFromAnyPoint() {
+        changeLog.recordCreate(new User(1L, "Din Djarin", "din@mandalore.net", 1));
+        changeLog.recordUpdate(new User(1L, "Mando", "din@mandalore.net", 2));
+        changeLog.recordDelete(1L);
+
+        assertThat(changeLog.read(0, 10))
+            .extracting(UserChange::sequence, UserChange::type)
+            .containsExactly(
+                tuple(1L, UserChange.Type.CREATED),
+                tuple(2L, UserChange.Type.UPDATED),
+                tuple(3L, UserChange.Type.DELETED));
+        assertThat(changeLog.read(1, 1)).extracting(UserChange::sequence).containsExactly(2L);
+        assertThat(changeLog.read(3, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldTellAConsumerThatFellAFullRingBehindToReload() {
+        for (long id = 1; id <= 10; id++) {
+            changeLog.recordCreate(new User(id, "Trooper", "tk" + id + "@empire.gov", 1));
+        }
+
+        // capacity 8: changes 3 to 10 are kept
+        assertThat(changeLog.read(2, 100)).hasSize(8);
+        assertThatThrownBy(() -> changeLog.read(1, 100))
+            .isInstanceOf(UserChangesExpiredException.class)
+            .hasMessageContaining("from sequence 10");
+        // never handed out: a restart reset the sequence
+        assertThatThrownBy(() -> changeLog.read(11, 100))
+            .isInstanceOf(UserChangesExpiredException.class);
+    }
+
+    @Test
+    void shouldCompleteALongPollOnTheNextWriteOrEmptyOnTimeout() throws Exception {
+        CompletableFuture<List<UserChange>> parked = changeLog.await(0, 10, Duration.ofSeconds(30));
+        assertThat(parked).isNotDone();
+
+        changeLog.recordCreate(new User(1L, "Grogu", "grogu@jedi.org", 1));
+
+        assertThat(parked.get(1, TimeUnit.SECONDS)).extracting(UserChange::id).containsExactly(1L);
+        assertThat(changeLog.await(1, 10, Duration.ofMillis(10)).get(1, TimeUnit.SECONDS)).isEmpty();
+    }
+
+}
@@ -1,17 +1,44 @@
 package com.trevizan.javacoreplayground.service;
 
+import com.trevizan.javacoreplayground.exception.DuplicateEmailException;
 import com.trevizan.javacoreplayground.exception.InvalidUserException;
 import com.trevizan.javacoreplayground.exception.UserNotFoundException;
+import com.trevizan.javacoreplayground.exception.UserSnapshotExpiredException;
+import com.trevizan.javacoreplayground.exception.UserVersionConflictException;
 import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.model.UserBatchResult;
+import com.trevizan.javacoreplayground.model.UserBatchResult.Status;
+import com.trevizan.javacoreplayground.model.UserChange;
+import com.trevizan.javacoreplayground.model.UserImportResult;
+import com.trevizan.javacoreplayground.model.UserPage;
+import com.trevizan.javacoreplayground.model.UserSearchPage;
+import com.trevizan.javacoreplayground.model.UserSearchQuery;
+import com.trevizan.javacoreplayground.repository.InMemoryUserRepository;
 import com.trevizan.javacoreplayground.repository.UserRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
 
 class UserServiceTests {
 
@@ -20,8 +47,8 @@ class UserServiceTests {
 
     @BeforeEach
     void setUp() {
-        userRepository = new UserRepository();
-        userService = new UserService(userRepository);
+        userRepository = new InMemoryUserRepository();
+        userService = newService(userRepository, new SimpleMeterRegistry());
     }
 
     @Test
@@ -61,6 +88,50 @@ class UserServiceTests {
         assertThat(retrievedUser.getId()).isNotNull();
     }
 
+    @Test
+    void shouldGetUserByEmailIgnoringCase() {
+        User savedUser = userService.createUser(new User(null, "Amuro Ray", "amuro@ray.ef"));
+
+        User retrievedUser = userService.getUserByEmail("Amuro@Ray.ef");
+
+        assertThat(retrievedUser.getId()).isEqualTo(savedUser.getId());
+    }
+
+    @Test
+    void shouldRejectDuplicateEmailOnCreate() {
+        userService.createUser(new User(null, "Amuro Ray", "amuro@ray.ef"));
+
+        assertThatThrownBy(() -> userService.createUser(new User(null, "Fake Amuro", "AMURO@ray.ef")))
+            .isInstanceOf(DuplicateEmailException.class);
+        assertThat(userService.getAllUsers()).hasSize(1);
+    }
+
+    @Test
+    void shouldMoveEmailIndexOnUpdateAndReleaseItOnDelete() {
+        User created = userService.createUser(new User(null, "Anakin", "anakin@skywalker.com"));
+
+        userService.updateUser(created.getId(), new User(null, "Darth Vader", "vader@empire.com"));
+
+        assertThat(userService.getUserByEmail("vader@empire.com").getId()).isEqualTo(created.getId());
+        assertThatThrownBy(() -> userService.getUserByEmail("anakin@skywalker.com"))
+            .isInstanceOf(UserNotFoundException.class);
+
+        userService.deleteUser(created.getId());
+
+        User reused = userService.createUser(new User(null, "Vader Clone", "vader@empire.com"));
+        assertThat(userService.getUserByEmail("vader@empire.com").getId()).isEqualTo(reused.getId());
+    }
+
+    @Test
+    void shouldRejectUpdateToEmailOwnedByAnotherUser() {
+        userService.createUser(new User(null, "Char", "char@aznable.ze"));
+        User amuro = userService.createUser(new User(null, "Amuro", "amuro@ray.ef"));
+
+        assertThatThrownBy(() -> userService.updateUser(amuro.getId(), new User(null, "Amuro", "char@aznable.ze")))
+            .isInstanceOf(DuplicateEmailException.class);
+        assertThat(userService.getUserById(amuro.getId()).getEmail()).isEqualTo("amuro@ray.ef");
+    }
+
     @Test
     void shouldGetAllUsersSuccessfully() {
         User user = new User(null, "Char", "char@aznable.ze");
@@ -79,6 +150,144 @@ class UserServiceTests {
         assertThat(savedUsers.get(1).getId()).isNotNull();
     }
 
+    @Test
+    void shouldPageThroughUsersWithCursor() {
+        User first = userService.createUser(new User(null, "Char", "char@aznable.ze"));
+        User second = userService.createUser(new User(null, "Amuro", "amuro@ray.ef"));
+        User third = userService.createUser(new User(null, "Kamille", "kamille@bidan.ef"));
+
+        UserPage firstPage = userService.getUsersPage(null, 2);
+        assertThat(firstPage.users()).extracting(User::getId)
+            .containsExactly(first.getId(), second.getId());
+        assertThat(firstPage.nextCursor()).isEqualTo(second.getId());
+
+        UserPage lastPage = userService.getUsersPage(firstPage.nextCursor(), 2);
+        assertThat(lastPage.users()).extracting(User::getId)
+            .containsExactly(third.getId());
+        assertThat(lastPage.nextCursor()).isNull();
+    }
+
+    @Test
+    void shouldSkipDeletedUsersWhenPaging() {
+        User first = userService.createUser(new User(null, "Char", "char@aznable.ze"));
+        User second = userService.createUser(new User(null, "Amuro", "amuro@ray.ef"));
+        User third = userService.createUser(new User(null, "Kamille", "kamille@bidan.ef"));
+
+        userService.deleteUser(second.getId());
+
+        assertThat(userService.getUsersPage(first.getId(), 10).users())
+            .extracting(User::getId)
+            .containsExactly(third.getId());
+        assertThat(userService.streamAllUsers()).extracting(User::getId)
+            .containsExactly(first.getId(), third.getId());
+    }
+
+    @Test
+    void shouldCreateBatchWithConsecutiveIdsAndPerItemStatuses() {
+        userService.createUser(new User(null, "Char", "char@aznable.ze"));
+
+        List<UserBatchResult> results = userService.createUsers(List.of(
+            new User(null, "Amuro", "amuro@ray.ef"),
+            new User(null, "Fake Char", "char@aznable.ze"),
+            new User(null, null, "nameless@ray.ef"),
+            new User(null, "Kamille", "kamille@bidan.ef")
+        ));
+
+        assertThat(results).extracting(UserBatchResult::status)
+            .containsExactly(Status.CREATED, Status.CONFLICT, Status.INVALID, Status.CREATED);
+        assertThat(results.get(3).user().getId()).isEqualTo(results.get(0).user().getId() + 3);
+        assertThat(userService.getAllUsers()).hasSize(3);
+    }
+
+    @Test
+    void shouldUpdateAndDeleteBatchWithPerItemStatuses() {
+        User char1 = userService.createUser(new User(null, "Char", "char@aznable.ze"));
+        User amuro = userService.createUser(new User(null, "Amuro", "amuro@ray.ef"));
+
+        List<UserBatchResult> updates = userService.updateUsers(List.of(
+            new User(char1.getId(), "Quattro", "quattro@aeug.ef", char1.getVersion()),
+            new User(amuro.getId(), "Amuro", "amuro@ray.ef", 99L),
+            new User(999L, "Nobody", "nobody@ray.ef")
+        ));
+
+        assertThat(updates).extracting(UserBatchResult::status)
+            .containsExactly(Status.UPDATED, Status.CONFLICT, Status.NOT_FOUND);
+
+        List<UserBatchResult> deletes = userService.deleteUsers(List.of(char1.getId(), 999L));
+
+        assertThat(deletes).extracting(UserBatchResult::status)
+            .containsExactly(Status.DELETED, Status.NOT_FOUND);
+    }
+
+    @Test
+    void shouldFeedEverySuccessfulWriteToTheChangeLog() throws Exception {
+        User char1 = userService.createUser(new User(null, "Char", "char@aznable.ze"));
+        userService.updateUser(char1.getId(), new User(null, "Quattro", "quattro@aeug.ef"));
+        userService.createUsers(List.of(
+            new User(null, "Amuro", "amuro@ray.ef"),
+            new User(null, "Copycat", "quattro@aeug.ef")
+        ));
+        userService.deleteUsers(List.of(char1.getId(), 999L));
+
+        List<UserChange> changes = userService.awaitChanges(0, 100, Duration.ZERO).get();
+
+        assertThat(changes).extracting(UserChange::type, UserChange::id).containsExactly(
+            tuple(UserChange.Type.CREATED, char1.getId()),
+            tuple(UserChange.Type.UPDATED, char1.getId()),
+            tuple(UserChange.Type.CREATED, char1.getId() + 1),
+            tuple(UserChange.Type.DELETED, char1.getId()));
+        assertThat(changes.get(1).user().getName()).isEqualTo("Quattro");
+        assertThat(changes).extracting(UserChange::sequence).containsExactly(1L, 2L, 3L, 4L);
+    }
+
+    @Test
+    void shouldPageASnapshotAsItWasWhenOpenedUntilItIsClosed() {
+        User char1 = userService.createUser(new User(null, "Char", "char@aznable.ze"));
+        User amuro = userService.createUser(new User(null, "Amuro", "amuro@ray.ef"));
+        String token = userService.openSnapshot();
+
+        UserPage firstPage = userService.getSnapshotPage(token, null, 1);
+        userService.deleteUser(amuro.getId());
+        userService.createUser(new User(null, "Kamille", "kamille@aeug.ef"));
+        UserPage secondPage = userService.getSnapshotPage(token, firstPage.nextCursor(), 1);
+        UserPage lastPage = userService.getSnapshotPage(token, secondPage.nextCursor(), 1);
+
+        assertThat(firstPage.users()).extracting(User::getId).containsExactly(char1.getId());
+        assertThat(secondPage.users()).extracting(User::getName).containsExactly("Amuro");
+        assertThat(lastPage.users()).isEmpty();
+        assertThat(lastPage.nextCursor()).isNull();
+
+        userService.closeSnapshot(token);
+        assertThatThrownBy(() -> userService.getSnapshotPage(token, null, 10))
+            .isInstanceOf(UserSnapshotExpiredException.class);
+    }
+
+    @Test
+    void shouldExportAndImportUsersKeepingIdsAndVersions() throws Exception {
+        User char1 = userService.createUser(new User(null, "Char", "char@aznable.ze"));
+        userService.updateUser(char1.getId(), new User(null, "Quattro", "quattro@aeug.ef"));
+        userService.createUser(new User(null, "Amuro", "amuro@ray.ef"));
+        ByteArrayOutputStream dump = new ByteArrayOutputStream();
+
+        long exported = userService.exportUsers(Channels.newChannel(dump));
+        UserService target = newService(new InMemoryUserRepository(), new SimpleMeterRegistry());
+        UserImportResult imported = target.importUsers(Channels.newChannel(new ByteArrayInputStream(dump.toByteArray())));
+        UserImportResult again = target.importUsers(Channels.newChannel(new ByteArrayInputStream(dump.toByteArray())));
+
+        assertThat(exported).isEqualTo(2);
+        assertThat(imported).isEqualTo(new UserImportResult(2, 0));
+        assertThat(again).isEqualTo(new UserImportResult(0, 2));
+        assertThat(target.getAllUsers()).usingRecursiveFieldByFieldElementComparator()
+            .containsExactlyInAnyOrderElementsOf(userService.getAllUsers());
+        assertThat(target.getUserById(char1.getId()).getVersion()).isEqualTo(2L);
+        assertThat(target.awaitChanges(0, 100, Duration.ZERO).get()).extracting(UserChange::type)
+            .containsExactly(UserChange.Type.CREATED, UserChange.Type.CREATED);
+
+        byte[] truncated = Arrays.copyOf(dump.toByteArray(), dump.size() - 1);
+        assertThatThrownBy(() -> target.importUsers(Channels.newChannel(new ByteArrayInputStream(truncated))))
+            .isInstanceOf(InvalidUserException.class);
+    }
+
     @Test
     void shouldThrowExceptionWhenUserWasNotFound() {
         assertThatThrownBy(() -> userService.getUserById(999L))
@@ -99,6 +308,61 @@ class UserServiceTests {
         assertThat(updated.getEmail()).isEqualTo("vader@empire.com");
     }
 
+    @Test
+    void shouldIncrementVersionOnEveryUpdate() {
+        User created = userService.createUser(new User(null, "Anakin", "anakin@skywalker.com"));
+
+        User updated = userService.updateUser(created.getId(), new User(null, "Darth Vader", "vader@empire.com"));
+
+        assertThat(created.getVersion()).isEqualTo(1L);
+        assertThat(updated.getVersion()).isEqualTo(2L);
+    }
+
+    @Test
+    void shouldRejectUpdateWithStaleVersion() {
+        User created = userService.createUser(new User(null, "Anakin", "anakin@skywalker.com"));
+        userService.updateUser(created.getId(), new User(null, "Darth Vader", "vader@empire.com"), created.getVersion());
+
+        assertThatThrownBy(() -> userService.updateUser(
+                created.getId(), new User(null, "Anakin", "anakin@skywalker.com"), created.getVersion()))
+            .isInstanceOf(UserVersionConflictException.class);
+        assertThat(userService.getUserById(created.getId()).getName()).isEqualTo("Darth Vader");
+    }
+
+    @Test
+    void shouldNotResurrectUserDeletedDuringConcurrentUpdates() throws Exception {
+        User created = userService.createUser(new User(null, "Luke", "luke@jedi.com"));
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+
+        try {
+            List<Future<?>> updates = IntStream.range(0, 4)
+                .<Future<?>>mapToObj(i -> executor.submit(() -> {
+                    start.await();
+                    for (int n = 0; n < 1000; n++) {
+                        try {
+                            userService.updateUser(created.getId(), new User(null, "Luke " + n, "luke@jedi.com"));
+                        } catch (UserNotFoundException ignored) {
+                            // deleted: every later attempt must fail the same way
+                        }
+                    }
+                    return null;
+                }))
+                .toList();
+
+            start.countDown();
+            userService.deleteUser(created.getId());
+            for (Future<?> update : updates) {
+                update.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThatThrownBy(() -> userService.getUserById(created.getId()))
+            .isInstanceOf(UserNotFoundException.class);
+    }
+
     @Test
     void shouldThrowExceptionWhenUpdatingNonExistingUser() {
         assertThatThrownBy(() ->
@@ -123,4 +387,59 @@ class UserServiceTests {
             .isInstanceOf(UserNotFoundException.class);
     }
 
+    @Test
+    void shouldSearchPageByPageAndRejectBadQueries() {
+        userService.createUser(new User(null, "Kira Yamato", "kira@orb.gov"));
+        userService.createUser(new User(null, "Kira Yamato", "kira.yamato@plant.net"));
+        userService.createUser(new User(null, "Athrun Zala", "athrun@plant.net"));
+        UserSearchQuery query = UserSearchQuery.of("kira", null, "yamato");
+
+        UserSearchPage firstPage = userService.searchUsers(query, null, 1);
+        UserSearchPage lastPage = userService.searchUsers(query, firstPage.nextCursor().encode(), 1);
+
+        assertThat(firstPage.users()).extracting(User::getEmail).containsExactly("kira@orb.gov");
+        assertThat(lastPage.users()).extracting(User::getEmail).containsExactly("kira.yamato@plant.net");
+        assertThat(userService.searchUsers(query, lastPage.nextCursor().encode(), 1).users()).isEmpty();
+        assertThatThrownBy(() -> userService.searchUsers(UserSearchQuery.of(" ", null, null), null, 10))
+            .isInstanceOf(InvalidUserException.class);
+        assertThatThrownBy(() -> userService.searchUsers(query, "not a cursor", 10))
+            .isInstanceOf(InvalidUserException.class);
+    }
+
+    @Test
+    void shouldTimeEveryOperationFailuresIncluded() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        UserService timedService = newService(userRepository, registry);
+
+        User created = timedService.createUser(new User(null, "Amuro Ray", "amuro@ray.ef"));
+        timedService.getUserById(created.getId());
+        assertThatThrownBy(() -> timedService.getUserById(9999L))
+            .isInstanceOf(UserNotFoundException.class);
+        CompletableFuture<List<UserChange>> pending = timedService.awaitChanges(1, 100, Duration.ofSeconds(5));
+
+        assertThat(registry.get(LayerTimers.METRIC).tag("layer", "service").tag("operation", "create").timer().count())
+            .isEqualTo(1);
+        assertThat(registry.get(LayerTimers.METRIC).tag("layer", "service").tag("operation", "get_by_id").timer().count())
+            .isEqualTo(2);
+        // a long poll is recorded when it answers, wait included
+        assertThat(registry.get(LayerTimers.METRIC).tag("operation", "await_changes").timer().count()).isZero();
+        timedService.createUser(new User(null, "Kai Shiden", "kai@shiden.ef"));
+        assertThat(pending).succeedsWithin(Duration.ofSeconds(5));
+        assertThat(registry.get(LayerTimers.METRIC).tag("operation", "await_changes").timer().count()).isEqualTo(1);
+
+        timedService.closeSnapshot(timedService.openSnapshot());
+        Stream<User> users = timedService.streamAllUsers();
+        assertThat(users.count()).isEqualTo(2);
+        // a stream is recorded when it is closed, the read included
+        assertThat(registry.get(LayerTimers.METRIC).tag("operation", "stream_all").timer().count()).isZero();
+        users.close();
+        assertThat(registry.get(LayerTimers.METRIC).tag("operation", "open_snapshot").timer().count()).isEqualTo(1);
+        assertThat(registry.get(LayerTimers.METRIC).tag("operation", "close_snapshot").timer().count()).isEqualTo(1);
+        assertThat(registry.get(LayerTimers.METRIC).tag("operation", "stream_all").timer().count()).isEqualTo(1);
+    }
+
+    private static UserService newService(UserRepository repository, MeterRegistry registry) {
+        return new UserService(repository, new UserChangeLog(1024), new UserSnapshots(Duration.ofMinutes(5), 16), registry);
+    }
+
 }
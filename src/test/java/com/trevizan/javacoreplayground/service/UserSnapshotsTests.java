@@ -0,0 +1,53 @@
+package com.trevizan.javacoreplayground.service;
+
+import com.trevizan.javacoreplayground.exception.UserSnapshotExpiredException;
+import com.trevizan.javacoreplayground.model.User;
+import com.trevizan.javacoreplayground.repository.UserSnapshot;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UserSnapshotsTests {
+
+    private final AtomicLong now = new AtomicLong();
+    private final UserSnapshots snapshots = new UserSnapshots(Duration.ofNanos(100), 2, now::get);
+    private final UserSnapshot snapshot = UserSnapshot.copyOf(List.of(new User(1L, "Yoda", "yoda@dagobah.org")));
+
+    @Test
+    void shouldCloseASnapshotLeftIdleForTooLong() {
+        String token = snapshots.open(() -> snapshot);
+
+        now.set(90);
+        assertThat(snapshots.get(token)).isSameAs(snapshot);
+        // the read restarted the idle clock
+        now.set(180);
+        assertThat(snapshots.get(token)).isSameAs(snapshot);
+
+        now.set(300);
+        assertThatThrownBy(() -> snapshots.get(token))
+            .isInstanceOf(UserSnapshotExpiredException.class)
+            .hasMessageContaining(token);
+    }
+
+    @Test
+    void shouldCloseTheLongestIdleWhenTooManyAreOpen() {
+        String first = snapshots.open(() -> snapshot);
+        now.set(10);
+        String second = snapshots.open(() -> snapshot);
+        now.set(20);
+        snapshots.get(first);
+
+        String third = snapshots.open(() -> snapshot);
+
+        assertThat(snapshots.get(first)).isSameAs(snapshot);
+        assertThat(snapshots.get(third)).isSameAs(snapshot);
+        assertThatThrownBy(() -> snapshots.get(second)).isInstanceOf(UserSnapshotExpiredException.class);
+    }
+
+}
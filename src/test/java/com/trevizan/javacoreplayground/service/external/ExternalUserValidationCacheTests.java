@@ -0,0 +1,98 @@
+package com.trevizan.javacoreplayground.service.external;
+
+import com.trevizan.javacoreplayground.exception.ExternalServiceException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExternalUserValidationCacheTests {
+
+    private static final ExternalUserValidationRequest PAULO =
+        new ExternalUserValidationRequest("Paulo", "paulo@trevizan.com");
+    private static final ExternalUserValidationRequest SPAM =
+        new ExternalUserValidationRequest("Spam", "spam@bots.com");
+
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final ExternalUserValidationCache cache = new ExternalUserValidationCache(
+        2, Duration.ofMinutes(10), Duration.ofMinutes(1), now::get
+    );
+
+    @Test
+    void shouldServeRepeatedValidationFromCache() {
+        assertThat(cache.get(PAULO, answer(true))).isCompletedWithValue(true);
+        assertThat(cache.get(PAULO, answer(true))).isCompletedWithValue(true);
+
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void shouldExpireNegativeResultsBeforePositiveOnes() {
+        cache.get(PAULO, answer(true));
+        cache.get(SPAM, answer(false));
+
+        now.addAndGet(Duration.ofMinutes(2).toNanos());
+        cache.get(PAULO, answer(true));
+        cache.get(SPAM, answer(false));
+
+        assertThat(calls).hasValue(3);
+    }
+
+    @Test
+    void shouldShareOneInFlightCallBetweenConcurrentMisses() {
+        CompletableFuture<Boolean> pending = new CompletableFuture<>();
+
+        CompletableFuture<Boolean> first = cache.get(PAULO, request -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<Boolean> second = cache.get(PAULO, answer(false));
+        pending.complete(true);
+
+        assertThat(calls).hasValue(1);
+        assertThat(first).isCompletedWithValue(true);
+        assertThat(second).isCompletedWithValue(true);
+    }
+
+    @Test
+    void shouldNotCacheFailures() {
+        CompletableFuture<Boolean> failed = cache.get(PAULO, request -> {
+            calls.incrementAndGet();
+            return CompletableFuture.failedFuture(new ExternalServiceException("down"));
+        });
+
+        assertThat(failed).failsWithin(Duration.ZERO)
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(ExternalServiceException.class);
+        assertThat(cache.get(PAULO, answer(true))).isCompletedWithValue(true);
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void shouldEvictOldestEntryWhenFull() {
+        cache.get(PAULO, answer(true));
+        cache.get(SPAM, answer(false));
+        cache.get(new ExternalUserValidationRequest("Ana", "ana@trevizan.com"), answer(true));
+
+        cache.get(SPAM, answer(false));
+        cache.get(PAULO, answer(true));
+
+        assertThat(calls).hasValue(4);
+    }
+
+    private Function<ExternalUserValidationRequest, CompletableFuture<Boolean>> answer(boolean valid) {
+        return request -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture(valid);
+        };
+    }
+
+}
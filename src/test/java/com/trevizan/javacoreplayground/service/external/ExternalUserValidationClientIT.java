@@ -1,12 +1,26 @@
 package com.trevizan.javacoreplayground.service.external;
 
+import com.trevizan.javacoreplayground.exception.ExceptionCounters;
 import com.trevizan.javacoreplayground.exception.ExternalServiceException;
+import com.trevizan.javacoreplayground.exception.ExternalServiceOverloadedException;
+import com.trevizan.javacoreplayground.exception.ExternalServiceRateLimitedException;
+import com.trevizan.javacoreplayground.service.LayerTimers;
 
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 
 import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
@@ -18,6 +32,8 @@ import org.wiremock.spring.ConfigureWireMock;
 import org.wiremock.spring.EnableWireMock;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.matchingJsonPath;
 import static com.github.tomakehurst.wiremock.client.WireMock.post;
 import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
 import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
@@ -25,7 +41,13 @@ import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 import static com.github.tomakehurst.wiremock.stubbing.Scenario.STARTED;
 
-@SpringBootTest
+// a wide batch window keeps the coalescing tests deterministic on slow machines;
+// hedging and adaptive timeouts (HedgedCallsTests) are off so request counts stay exact
+@SpringBootTest(properties = {
+    "app.external-validation.batch.window=200ms",
+    "app.external-validation.hedge.enabled=false",
+    "app.external-validation.timeout.adaptive=false"
+})
 @EnableWireMock(
     @ConfigureWireMock(port = 8099)
 )
@@ -37,12 +59,26 @@ class ExternalUserValidationClientIT {
     @Autowired
     private CircuitBreakerRegistry circuitBreakerRegistry;
 
+    @Autowired
+    private ExternalUserValidationCache validationCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private BulkheadRegistry bulkheadRegistry;
+
+    @Autowired
+    private RateLimiterRegistry rateLimiterRegistry;
+
     private CircuitBreaker circuitBreaker;
 
     @BeforeEach
     void setup() {
         circuitBreaker = circuitBreakerRegistry.circuitBreaker("external-user-validation");
         circuitBreaker.reset();
+        // results cached by a previous test would hide the stubs of the next one
+        validationCache.invalidateAll();
     }
 
     @Test
@@ -293,4 +329,247 @@ class ExternalUserValidationClientIT {
             .isEqualTo(0);
     }
 
+    @Test
+    void shouldValidateAsync() {
+        stubFor(post("/api/v1/external/users/validate")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"valid\": true}")
+            )
+        );
+
+        CompletableFuture<Boolean> result = client.validateAsync("Paulo", "paulo@trevizan.com");
+
+        Assertions.assertThat(result).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(true);
+    }
+
+    @Test
+    void shouldRetryAsyncAndFailWithExternalServiceException() {
+        stubFor(post("/api/v1/external/users/validate")
+            .willReturn(aResponse()
+                .withStatus(500)
+            )
+        );
+
+        CompletableFuture<Boolean> result = client.validateAsync("Paulo", "paulo@trevizan.com");
+
+        Assertions.assertThat(result).failsWithin(Duration.ofSeconds(10))
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(ExternalServiceException.class);
+        verify(3, postRequestedFor(
+            urlEqualTo("/api/v1/external/users/validate")
+        ));
+    }
+
+    @Test
+    void shouldCoalesceConcurrentValidationsIntoOneBulkCall() {
+        stubFor(post("/api/v1/external/users/validate:batch")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("[{\"valid\": true}, {\"valid\": false}, {\"valid\": true}]")
+            )
+        );
+
+        List<CompletableFuture<Boolean>> results = List.of(
+            client.validateBatchedAsync("Paulo", "paulo@trevizan.com"),
+            client.validateBatchedAsync("Spam", "spam@bots.com"),
+            client.validateBatchedAsync("Ana", "ana@trevizan.com")
+        );
+
+        Assertions.assertThat(results.get(0)).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(true);
+        Assertions.assertThat(results.get(1)).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(false);
+        Assertions.assertThat(results.get(2)).succeedsWithin(Duration.ofSeconds(5)).isEqualTo(true);
+        verify(1, postRequestedFor(urlEqualTo("/api/v1/external/users/validate:batch"))
+            .withRequestBody(matchingJsonPath("$[1].email", equalTo("spam@bots.com"))));
+        verify(0, postRequestedFor(urlEqualTo("/api/v1/external/users/validate")));
+    }
+
+    @Test
+    void shouldRetryBatchAsAWholeAndFailEveryValidationInIt() {
+        stubFor(post("/api/v1/external/users/validate:batch")
+            .willReturn(aResponse()
+                .withStatus(500)
+            )
+        );
+
+        List<CompletableFuture<Boolean>> results = List.of(
+            client.validateBatchedAsync("Paulo", "paulo@trevizan.com"),
+            client.validateBatchedAsync("Ana", "ana@trevizan.com")
+        );
+
+        for (CompletableFuture<Boolean> result : results) {
+            Assertions.assertThat(result).failsWithin(Duration.ofSeconds(10))
+                .withThrowableOfType(ExecutionException.class)
+                .withCauseInstanceOf(ExternalServiceException.class);
+        }
+        verify(3, postRequestedFor(
+            urlEqualTo("/api/v1/external/users/validate:batch")
+        ));
+        Assertions.assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldFailBatchWhenResultCountDoesNotMatch() {
+        stubFor(post("/api/v1/external/users/validate:batch")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("[{\"valid\": true}]")
+            )
+        );
+
+        CompletableFuture<List<Boolean>> result = client.validateAllAsync(List.of(
+            new ExternalUserValidationRequest("Paulo", "paulo@trevizan.com"),
+            new ExternalUserValidationRequest("Ana", "ana@trevizan.com")
+        ));
+
+        Assertions.assertThat(result).failsWithin(Duration.ofSeconds(10))
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(ExternalServiceException.class);
+    }
+
+    @Test
+    void shouldRejectAsyncCallsWhileCircuitIsOpen() {
+        circuitBreaker.transitionToOpenState();
+
+        CompletableFuture<Boolean> result = client.validateAsync("Paulo", "paulo@trevizan.com");
+
+        Assertions.assertThat(result).failsWithin(Duration.ofSeconds(5))
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(CallNotPermittedException.class);
+        verify(0, postRequestedFor(
+            urlEqualTo("/api/v1/external/users/validate")
+        ));
+    }
+
+    @Test
+    void shouldServeRepeatedValidationFromCache() {
+        stubFor(post("/api/v1/external/users/validate")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"valid\": true}")
+            )
+        );
+
+        Assertions.assertThat(client.validate("Paulo", "paulo@trevizan.com")).isTrue();
+        Assertions.assertThat(client.validateAsync("Paulo", "paulo@trevizan.com"))
+            .succeedsWithin(Duration.ofSeconds(5)).isEqualTo(true);
+
+        verify(1, postRequestedFor(
+            urlEqualTo("/api/v1/external/users/validate")
+        ));
+    }
+
+    @Test
+    void shouldExposeConnectionPoolMetrics() {
+        stubFor(post("/api/v1/external/users/validate")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"valid\": true}")
+            )
+        );
+
+        client.validate("Paulo", "paulo@trevizan.com");
+
+        Assertions.assertThat(meterRegistry.get("httpcomponents.httpclient.pool.lease.wait").timer().count())
+            .isPositive();
+        Assertions.assertThat(meterRegistry.get("httpcomponents.httpclient.pool.total.max").gauge().value())
+            .isEqualTo(200);
+    }
+
+    @Test
+    void shouldRejectAtOnceWhenTheBulkheadIsFull() {
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead("external-user-validation");
+        int slots = bulkhead.getBulkheadConfig().getMaxConcurrentCalls();
+        for (int i = 0; i < slots; i++) {
+            bulkhead.acquirePermission();
+        }
+
+        try {
+            Assertions.assertThatThrownBy(() ->
+                    client.validate("Paulo", "paulo@trevizan.com"))
+                .isInstanceOf(ExternalServiceOverloadedException.class);
+            Assertions.assertThat(client.validateAsync("Ana", "ana@trevizan.com"))
+                .failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(ExecutionException.class)
+                .withCauseInstanceOf(ExternalServiceOverloadedException.class);
+        } finally {
+            for (int i = 0; i < slots; i++) {
+                bulkhead.releasePermission();
+            }
+        }
+
+        verify(0, postRequestedFor(
+            urlEqualTo("/api/v1/external/users/validate")
+        ));
+        Assertions.assertThat(circuitBreaker.getState())
+            .isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void shouldRejectAtOnceWhenRateLimited() throws InterruptedException {
+        RateLimiter rateLimiter = rateLimiterRegistry.rateLimiter("external-user-validation");
+        rateLimiter.drainPermissions();
+
+        try {
+            Assertions.assertThatThrownBy(() ->
+                    client.validate("Paulo", "paulo@trevizan.com"))
+                .isInstanceOfSatisfying(ExternalServiceRateLimitedException.class, ex ->
+                    Assertions.assertThat(ex.getRetryAfter()).isEqualTo(Duration.ofSeconds(1)));
+        } finally {
+            // let the next period start, so the following tests get their permits back
+            while (rateLimiter.getMetrics().getAvailablePermissions() <= 0) {
+                Thread.sleep(50);
+            }
+        }
+
+        verify(0, postRequestedFor(
+            urlEqualTo("/api/v1/external/users/validate")
+        ));
+        Assertions.assertThat(circuitBreaker.getState())
+            .isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void shouldTimeValidationsAndExportCircuitBreakerState() {
+        stubFor(post("/api/v1/external/users/validate")
+            .willReturn(aResponse()
+                .withStatus(500)
+            )
+        );
+        long timedBefore = validateTimer().count();
+        double failuresBefore = externalServiceFailures();
+
+        Assertions.assertThatThrownBy(() ->
+                client.validate("Paulo", "paulo@trevizan.com"))
+            .isInstanceOf(ExternalServiceException.class);
+
+        Assertions.assertThat(validateTimer().count()).isEqualTo(timedBefore + 1);
+        Assertions.assertThat(externalServiceFailures()).isEqualTo(failuresBefore + 1);
+        Assertions.assertThat(meterRegistry.get("resilience4j.circuitbreaker.state")
+                .tag("name", "external-user-validation")
+                .tag("state", "closed")
+                .gauge()
+                .value())
+            .isEqualTo(1.0);
+    }
+
+    private Timer validateTimer() {
+        return meterRegistry.get(LayerTimers.METRIC)
+            .tag("layer", "external")
+            .tag("operation", "validate")
+            .timer();
+    }
+
+    private double externalServiceFailures() {
+        return meterRegistry.get(ExceptionCounters.METRIC)
+            .tag("exception", "ExternalServiceException")
+            .counter()
+            .count();
+    }
+
 }
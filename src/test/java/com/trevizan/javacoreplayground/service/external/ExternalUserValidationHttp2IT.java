@@ -0,0 +1,136 @@
+package com.trevizan.javacoreplayground.service.external;
+
+import com.trevizan.javacoreplayground.exception.ExternalServiceException;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.wiremock.spring.ConfigureWireMock;
+import org.wiremock.spring.EnableWireMock;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.verify;
+
+@SpringBootTest(properties = "app.external-validation.transport=http2")
+@EnableWireMock(
+    @ConfigureWireMock(port = 8099)
+)
+class ExternalUserValidationHttp2IT {
+
+    @Autowired
+    private ExternalUserValidationClient client;
+
+    @Autowired
+    private ExternalUserValidationTransport transport;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private ExternalUserValidationCache validationCache;
+
+    @BeforeEach
+    void setup() {
+        circuitBreakerRegistry.circuitBreaker("external-user-validation").reset();
+        validationCache.invalidateAll();
+    }
+
+    @Test
+    void shouldUseHttpClientTransport() {
+        Assertions.assertThat(transport).isInstanceOf(HttpClientValidationTransport.class);
+    }
+
+    @Test
+    void shouldReturnTrueWhenExternalServiceReturnsValidUser() {
+        stubFor(post("/api/v1/external/users/validate")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"valid\": true}")
+            )
+        );
+
+        Assertions.assertThat(client.validate("Paulo", "paulo@trevizan.com")).isTrue();
+        Assertions.assertThat(client.validateAsync("Ana", "ana@trevizan.com"))
+            .succeedsWithin(Duration.ofSeconds(5)).isEqualTo(true);
+    }
+
+    @Test
+    void shouldRetryAsyncOnServerErrorAndFail() {
+        stubFor(post("/api/v1/external/users/validate")
+            .willReturn(aResponse()
+                .withStatus(500)
+            )
+        );
+
+        Assertions.assertThat(client.validateAsync("Paulo", "paulo@trevizan.com"))
+            .failsWithin(Duration.ofSeconds(10))
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(ExternalServiceException.class);
+        verify(3, postRequestedFor(
+            urlEqualTo("/api/v1/external/users/validate")
+        ));
+    }
+
+    @Test
+    void shouldNotRetryOnClientBadRequestError() {
+        stubFor(post("/api/v1/external/users/validate")
+            .willReturn(aResponse()
+                .withStatus(400)
+            )
+        );
+
+        Assertions.assertThatThrownBy(() ->
+                client.validate("Paulo", "paulo@trevizan.com")
+            ).isInstanceOf(IllegalArgumentException.class);
+        verify(1, postRequestedFor(
+            urlEqualTo("/api/v1/external/users/validate")
+        ));
+    }
+
+    @Test
+    void shouldThrowExceptionWhenExternalServiceReturnsEmptyBody() {
+        stubFor(post("/api/v1/external/users/validate")
+            .willReturn(aResponse()
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("")
+            )
+        );
+
+        Assertions.assertThatThrownBy(() ->
+                client.validate("Paulo", "paulo@trevizan.com"))
+            .isInstanceOf(ExternalServiceException.class)
+            .hasMessageContaining("Empty");
+    }
+
+    @Test
+    void shouldTimeoutWhenExternalServiceIsSlow() {
+        stubFor(post("/api/v1/external/users/validate")
+            .willReturn(aResponse()
+                .withFixedDelay(5000)
+                .withStatus(200)
+                .withHeader("Content-Type", "application/json")
+                .withBody("{\"valid\": true}")
+            )
+        );
+
+        Assertions.assertThatThrownBy(() ->
+                client.validate("Paulo", "paulo@trevizan.com"))
+            .isInstanceOf(ExternalServiceException.class)
+            .hasCauseInstanceOf(HttpTimeoutException.class);
+    }
+
+}
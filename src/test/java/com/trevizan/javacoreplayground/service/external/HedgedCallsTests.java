@@ -0,0 +1,113 @@
+package com.trevizan.javacoreplayground.service.external;
+
+import com.trevizan.javacoreplayground.config.ExternalValidationProperties;
+import com.trevizan.javacoreplayground.exception.ExternalServiceException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HedgedCallsTests {
+
+    private static final Duration RECENT_LATENCY = Duration.ofMillis(20);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final LatencyTracker latency = new LatencyTracker(64, 10, Duration.ZERO, System::nanoTime);
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    @AfterEach
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void shouldNeitherHedgeNorTimeOutBeforeEnoughLatenciesWereSeen() {
+        HedgedCalls calls = hedgedCalls(100);
+
+        CompletableFuture<Boolean> result = calls.call(this::neverAnswers);
+
+        assertThat(result).failsWithin(Duration.ofMillis(300))
+            .withThrowableOfType(TimeoutException.class);
+        assertThat(attempts).hasValue(1);
+        assertThat(calls.hedges()).isZero();
+    }
+
+    @Test
+    void shouldTakeTheHedgeWhenTheFirstAttemptIsSlow() {
+        HedgedCalls calls = warmedUp(hedgedCalls(100));
+
+        CompletableFuture<Boolean> result = calls.call(() ->
+            attempts.getAndIncrement() == 0
+                ? new CompletableFuture<>()
+                : CompletableFuture.completedFuture(true)
+        );
+
+        assertThat(result).succeedsWithin(Duration.ofSeconds(1)).isEqualTo(true);
+        assertThat(attempts).hasValue(2);
+        assertThat(calls.hedges()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldFailWithAnAdaptiveTimeoutOnceEveryAttemptTimedOut() {
+        HedgedCalls calls = warmedUp(hedgedCalls(100));
+        // 3 x the 20ms p99, raised to the 100ms minimum
+        assertThat(calls.timeoutNanos()).isEqualTo(Duration.ofMillis(100).toNanos());
+
+        CompletableFuture<Boolean> result = calls.call(this::neverAnswers);
+
+        assertThat(result).failsWithin(Duration.ofSeconds(1))
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(ExternalServiceException.class)
+            .withMessageContaining("adaptive");
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void shouldNotHedgeWithoutBudget() {
+        HedgedCalls calls = warmedUp(hedgedCalls(0));
+
+        CompletableFuture<Boolean> result = calls.call(this::neverAnswers);
+
+        assertThat(result).failsWithin(Duration.ofSeconds(1))
+            .withThrowableOfType(ExecutionException.class)
+            .withCauseInstanceOf(ExternalServiceException.class);
+        assertThat(attempts).hasValue(1);
+        assertThat(calls.hedges()).isZero();
+    }
+
+    private HedgedCalls hedgedCalls(int budgetPercent) {
+        return new HedgedCalls(
+            latency,
+            scheduler,
+            new ExternalValidationProperties.Hedge(true, 0.95, Duration.ofMillis(5), budgetPercent),
+            new ExternalValidationProperties.Timeout(true, 0.99, 3, Duration.ofMillis(100), Duration.ofSeconds(2)),
+            System::nanoTime
+        );
+    }
+
+    private HedgedCalls warmedUp(HedgedCalls calls) {
+        for (int i = 0; i < 10; i++) {
+            latency.record(RECENT_LATENCY.toNanos());
+        }
+        // earn the credit for one hedge
+        for (int i = 0; i < 10; i++) {
+            calls.call(() -> CompletableFuture.completedFuture(true)).join();
+        }
+        return calls;
+    }
+
+    private CompletableFuture<Boolean> neverAnswers() {
+        attempts.incrementAndGet();
+        return new CompletableFuture<>();
+    }
+
+}